@@ -174,9 +174,7 @@ public class SVGCircle extends SVGShape {
 	 * @return Double.NaN if not set
 	 */
 	public double getRad() {
-		String r = this.getAttributeValue(R);
-		Double d = Double.valueOf(r);
-		return (d == null) ? Double.NaN : d.doubleValue();
+		return getDouble(R);
 	}
 
 	public Ellipse2D.Double createAndSetCircle2D() {
@@ -287,6 +285,11 @@ public class SVGCircle extends SVGShape {
 		return getAttributeValue(CX)+" "+getAttributeValue(CY)+" "+getAttributeValue(R);
 	}
 
+	@Override
+	public double[] getGeometricCoordinates() {
+		return new double[] {getDouble(CX), getDouble(CY), getDouble(R)};
+	}
+
 	public static List<SVGCircle> extractSelfAndDescendantCircles(SVGG g) {
 		return SVGCircle.extractCircles(SVGUtil.getQuerySVGElements(g, ALL_CIRCLE_XPATH));
 	}
@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -42,6 +43,7 @@ import org.xmlcml.euclid.RealRange.Direction;
 import org.xmlcml.euclid.RealRangeArray;
 import org.xmlcml.euclid.RealSquareMatrix;
 import org.xmlcml.euclid.Transform2;
+import org.xmlcml.graphics.svg.linestuff.BoundingBoxIndex;
 import org.xmlcml.graphics.svg.objects.SVGArrow;
 import org.xmlcml.graphics.svg.objects.SVGTriangle;
 import org.xmlcml.graphics.svg.text.SVGWord;
@@ -74,7 +76,7 @@ import nu.xom.canonical.Canonicalizer;
  */
 public class SVGElement extends GraphicsElement {
 
-	private static final int EXTRA_TRANSFORM_PRECISION = 2;
+	protected static final int EXTRA_TRANSFORM_PRECISION = 2;
 
 	private static Logger LOG = Logger.getLogger(SVGElement.class);
 
@@ -104,6 +106,11 @@ public class SVGElement extends GraphicsElement {
 	private Element userElement;
 	private String strokeSave;
 	private String fillSave;
+	// parsed values of numeric attributes; an entry is dropped when its attribute is added or removed
+	// (no initializers; attributes may be added during construction)
+	private String[] numericAttributeNames;
+	private double[] numericAttributeValues;
+	private int numericAttributeCount;
 
 	protected Real2Range boundingBox = null;
 	protected boolean boundingBoxCached = false;
@@ -651,6 +658,10 @@ public class SVGElement extends GraphicsElement {
 	}
 
 	protected double getDouble(String attName) {
+		int index = getNumericAttributeIndex(attName);
+		if (index >= 0) {
+			return numericAttributeValues[index];
+		}
 		String attVal = this.getAttributeValue(attName);
 		double xx = Double.NaN;
 		if (attVal != null) {
@@ -659,10 +670,59 @@ public class SVGElement extends GraphicsElement {
 			} catch (NumberFormatException e) {
 				throw e;
 			}
+			cacheNumericAttribute(attName, xx);
 		}
 		return xx;
 	}
 
+	/** keeps the numeric attribute cache coherent.
+	 * 
+	 * values are parsed once by getDouble() and related getters. Changing an attribute
+	 * through its Attribute object (setValue()) bypasses this; use addAttribute().
+	 */
+	@Override
+	public void addAttribute(Attribute attribute) {
+		super.addAttribute(attribute);
+		clearNumericAttribute(attribute.getLocalName());
+	}
+
+	@Override
+	public Attribute removeAttribute(Attribute attribute) {
+		clearNumericAttribute(attribute.getLocalName());
+		return super.removeAttribute(attribute);
+	}
+
+	private int getNumericAttributeIndex(String attName) {
+		for (int i = 0; i < numericAttributeCount; i++) {
+			if (numericAttributeNames[i].equals(attName)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void cacheNumericAttribute(String attName, double value) {
+		if (numericAttributeNames == null) {
+			numericAttributeNames = new String[4];
+			numericAttributeValues = new double[4];
+		} else if (numericAttributeCount == numericAttributeNames.length) {
+			numericAttributeNames = Arrays.copyOf(numericAttributeNames, 2 * numericAttributeCount);
+			numericAttributeValues = Arrays.copyOf(numericAttributeValues, 2 * numericAttributeCount);
+		}
+		numericAttributeNames[numericAttributeCount] = attName;
+		numericAttributeValues[numericAttributeCount++] = value;
+	}
+
+	private void clearNumericAttribute(String attName) {
+		int index = getNumericAttributeIndex(attName);
+		if (index >= 0) {
+			numericAttributeCount--;
+			numericAttributeNames[index] = numericAttributeNames[numericAttributeCount];
+			numericAttributeValues[index] = numericAttributeValues[numericAttributeCount];
+			numericAttributeNames[numericAttributeCount] = null;
+		}
+	}
+
 	/**
 	 * uses attribute value to calculate transform
 	 * @return current transform or null
@@ -857,6 +917,10 @@ public class SVGElement extends GraphicsElement {
 	 * @return
 	 */
 	public double getCoordinateValueDefaultZero(String attName) {
+		int index = getNumericAttributeIndex(attName);
+		if (index >= 0) {
+			return numericAttributeValues[index];
+		}
 		double d = Double.NaN;
 		String v = this.getAttributeValue(attName);
 		if (v == null) {
@@ -868,6 +932,7 @@ public class SVGElement extends GraphicsElement {
 			} catch (NumberFormatException e) {
 				throw new RuntimeException("Cannot parse SVG coordinate "+v);
 			}
+			cacheNumericAttribute(attName, d);
 		}
 		return d;
 	}
@@ -981,14 +1046,26 @@ public class SVGElement extends GraphicsElement {
 	}
 	
 	public Double getWidth() {
-		String w = this.getAttributeValue("width");
-		w = SVGUtil.convertUnits(w);
-		return (w == null) ? null : Double.valueOf(w);
+		int index = getNumericAttributeIndex("width");
+		if (index >= 0) {
+			return numericAttributeValues[index];
+		}
+		String w0 = this.getAttributeValue("width");
+		String w = SVGUtil.convertUnits(w0);
+		if (w == null) {
+			return null;
+		}
+		Double width = Double.valueOf(w);
+		// only cache plain numbers so getDouble("width") still sees the raw value
+		if (w.equals(w0)) {
+			cacheNumericAttribute("width", width);
+		}
+		return width;
 	}
 	
 	public Double getHeight() {
 		String h = this.getAttributeValue("height");
-		return (h == null) ? null : Double.valueOf(h);
+		return (h == null) ? null : getDouble("height");
 	}
 
 	public void setWidth(double w) {
@@ -1284,6 +1361,10 @@ public class SVGElement extends GraphicsElement {
 	}
 	
 	/** returns elements which are included in mask
+	 * 
+	 * An element is included if its range lies within any single range of the mask 
+	 * (as RealRangeArray.includes()). The mask is sorted once into primitive arrays 
+	 * and each element is tested by binary search, so cost is O((n+m) log m).
 	 * 
 	 * @param elementList
 	 * @param direction
@@ -1291,15 +1372,53 @@ public class SVGElement extends GraphicsElement {
 	 * @return
 	 */
 	public static List<? extends SVGElement> filter(List<? extends SVGElement> elementList, Direction direction, RealRangeArray mask) {
+		int m = mask.size();
+		double[] mins = new double[m];
+		double[] maxs = new double[m];
+		int count = 0;
+		for (RealRange range : mask) {
+			if (range != null) {
+				mins[count] = range.getMin();
+				maxs[count++] = range.getMax();
+			}
+		}
+		mins = Arrays.copyOf(mins, count);
+		int[] sortedIndex = BoundingBoxIndex.createSortedIndex(mins);
+		double[] sortedMins = new double[count];
+		// maximum of range.max over all ranges with min <= sortedMins[i]
+		double[] prefixMaxs = new double[count];
+		for (int i = 0; i < count; i++) {
+			sortedMins[i] = mins[sortedIndex[i]];
+			prefixMaxs[i] = (i == 0) ? maxs[sortedIndex[i]] : Math.max(prefixMaxs[i - 1], maxs[sortedIndex[i]]);
+		}
 		List<SVGElement> eList = new ArrayList<SVGElement>();
 		for (SVGElement element : elementList) {
-			if (element.isIncludedBy(mask, direction)) {
+			RealRange range = getRange(element, direction);
+			int k = countLessThanOrEqual(sortedMins, range.getMin());
+			if (k > 0 && prefixMaxs[k - 1] >= range.getMax()) {
 				eList.add(element);
 			}
 		}
 		return eList;
 	}
 
+	/** number of values <= value in sorted array.
+	 * 
+	 */
+	private static int countLessThanOrEqual(double[] sorted, double value) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted[mid] <= value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
 	public static List<? extends SVGElement> filterHorizontally(List<? extends SVGElement> elementList, RealRangeArray horizontalMask) {
 		return filter(elementList, Direction.HORIZONTAL, horizontalMask);
 	}
@@ -1319,25 +1438,48 @@ public class SVGElement extends GraphicsElement {
 	 * @return RealRange array corresponding to (overlapped) ranges of elements
 	 */
 	public static RealRangeArray createMask(List<? extends SVGElement> elementList, Direction direction) {
-		RealRangeArray realRangeArray = new RealRangeArray();
+		return createMask(elementList, direction, 0.0);
+	}
+
+	/**
+	 * Creates a mask with each element range extended by tolerance at both ends.
+	 * 
+	 * Ranges are collected into primitive arrays, sorted once and merged (overlapping or touching)
+	 * in a single pass; same result as RealRangeArray.sortAndRemoveOverlapping(). 
+	 * The elements' bounding boxes are not altered. Elements without bounding boxes are skipped.
+	 * 
+	 * @param elementList elements to create mask
+	 * @param direction
+	 * @param tolerance
+	 * @return RealRange array corresponding to (overlapped) ranges of elements
+	 */
+	public static RealRangeArray createMask(List<? extends SVGElement> elementList, Direction direction, double tolerance) {
+		int n = elementList.size();
+		double[] mins = new double[n];
+		double[] maxs = new double[n];
+		int count = 0;
 		for (SVGElement element : elementList) {
 			Real2Range bbox = element.getBoundingBox();
-			realRangeArray.add((Direction.HORIZONTAL.equals(direction) ? bbox.getXRange() : bbox.getYRange()));
+			RealRange range = (bbox == null) ? null : 
+				(Direction.HORIZONTAL.equals(direction) ? bbox.getXRange() : bbox.getYRange());
+			if (range != null) {
+				mins[count] = range.getMin() - tolerance;
+				maxs[count++] = range.getMax() + tolerance;
+			}
 		}
-		realRangeArray.sortAndRemoveOverlapping();
-		return realRangeArray;
-	}
-
-	public static RealRangeArray createMask(List<SVGElement> elementList, Direction direction, double tolerance) {
-			RealRangeArray realRangeArray = new RealRangeArray();
-			for (SVGElement element : elementList) {
-				Real2Range bbox = element.getBoundingBox();
-				RealRange range = (Direction.HORIZONTAL.equals(direction) ? bbox.getXRange() : bbox.getYRange());
-				range.extendBothEndsBy(tolerance);
-				realRangeArray.add((Direction.HORIZONTAL.equals(direction) ? bbox.getXRange() : bbox.getYRange()));
+		mins = Arrays.copyOf(mins, count);
+		int[] sortedIndex = BoundingBoxIndex.createSortedIndex(mins);
+		RealRangeArray realRangeArray = new RealRangeArray();
+		int i = 0;
+		while (i < count) {
+			double min = mins[sortedIndex[i]];
+			double max = maxs[sortedIndex[i++]];
+			while (i < count && mins[sortedIndex[i]] <= max) {
+				max = Math.max(max, maxs[sortedIndex[i++]]);
 			}
-			realRangeArray.sortAndRemoveOverlapping();
-			return realRangeArray;
+			realRangeArray.add(new RealRange(min, max));
+		}
+		return realRangeArray;
 	}
 	
 	public final static Real2Range createBoundingBox(List<? extends SVGElement> elementList) {
@@ -183,6 +183,11 @@ public class SVGEllipse extends SVGShape {
 		return getAttributeValue(CX)+" "+getAttributeValue(CY)+" "+getAttributeValue(RX)+" "+getAttributeValue(RY);
 	}
 
+	@Override
+	public double[] getGeometricCoordinates() {
+		return new double[] {getDouble(CX), getDouble(CY), getDouble(RX), getDouble(RY)};
+	}
+
 	public static SVGShape getEllipseOrCircle(SVGPath path, double eps) {
 		SVGShape ellipseOrCircle= null;
 		String signature = path.getSignature();
@@ -16,7 +16,9 @@
 
 package org.xmlcml.graphics.svg;
 
+import nu.xom.Element;
 import nu.xom.Elements;
+import nu.xom.Node;
 import nu.xom.Nodes;
 import org.apache.log4j.Logger;
 import org.xmlcml.euclid.Real2;
@@ -94,11 +96,29 @@ public class SVGGBox extends SVGG {
 		return id;
 	}
 	private SVGRect getRect() {
-		Nodes rects = this.query("./*[local-name()='"+SVGRect.TAG+"']");
-		return (rects.size() == 1) ? (SVGRect) rects.get(0) : null;
+		return getRect(this);
+	}
+	/** the single rect child of g ("./rect" without XPath).
+	 * 
+	 * @return null if none or more than one
+	 */
+	private static SVGRect getRect(Element g) {
+		SVGRect rect = null;
+		int count = 0;
+		for (int i = 0; i < g.getChildCount(); i++) {
+			Node child = g.getChild(i);
+			if (child instanceof Element && SVGRect.TAG.equals(((Element) child).getLocalName())) {
+				rect = (SVGRect) child;
+				count++;
+			}
+		}
+		return (count == 1) ? rect : null;
 	}
 	protected Real2 getOffset(SVGLayout layout) {
-		SVGRect rect = this.getRect();
+		return getOffset(this, layout);
+	}
+	private static Real2 getOffset(Element g, SVGLayout layout) {
+		SVGRect rect = getRect(g);
 		Real2 offset = new Real2();
 		if (rect != null) {
 			if (SVGLayout.LEFT2RIGHT.equals(layout)) {
@@ -110,23 +130,65 @@ public class SVGGBox extends SVGG {
 		return offset;
 	}
 	
+	/** adds a copy of child after the existing g children, translated by the sum of their offsets.
+	 * 
+	 * <p>
+	 * The offsets are read directly from the current children (without XPath or copying them),
+	 * so children changed since earlier calls are taken into account.
+	 * </p>
+	 * 
+	 * @param childSvg
+	 */
 	public void addSVGG(SVGGBox childSvg) {
+		Real2 totalDelta = new Real2();
+		boolean hasBoxes = sumOffsets(totalDelta);
+		addSVGG(childSvg, totalDelta, hasBoxes);
+	}
+	
+	/** adds copies of boxes in order, as repeated addSVGG.
+	 * 
+	 * the existing children are scanned once and the offset then accumulated, so adding n boxes is O(n).
+	 * 
+	 * @param boxList
+	 */
+	public void layout(List<SVGGBox> boxList) {
+		Real2 totalDelta = new Real2();
+		boolean hasBoxes = sumOffsets(totalDelta);
+		for (SVGGBox box : boxList) {
+			SVGGBox g = addSVGG(box, totalDelta, hasBoxes);
+			totalDelta.plusEquals(g.getOffset(this.layout));
+			hasBoxes = true;
+		}
+	}
+	
+	private SVGGBox addSVGG(SVGGBox childSvg, Real2 totalDelta, boolean hasBoxes) {
 		Transform2 childTransform = childSvg.getTransform2FromAttribute();
 		if (childTransform == null) {
 			childTransform = new Transform2();
 		}
-		Real2 totalDelta = new Real2();
-		List<SVGGBox> previousChildSvgs = this.getSVGGBoxChildren();
-		if (previousChildSvgs.size() > 0) {
-			for (SVGGBox previousChildSvg : previousChildSvgs) {
-				Real2 delta = previousChildSvg.getOffset(this.layout);
-				totalDelta.plusEquals(delta);
-			}
+		if (hasBoxes) {
 			childTransform = childTransform.concatenate(new Transform2(new Vector2(totalDelta)));
 		}
 		SVGGBox g = SVGGBox.copy(childSvg);
 		g.setTransform(childTransform);
 		this.appendChild(g);
+		return g;
+	}
+	
+	/** adds the offsets of the g children to totalDelta.
+	 * 
+	 * @return true if there are any g children
+	 */
+	private boolean sumOffsets(Real2 totalDelta) {
+		boolean hasBoxes = false;
+		for (int i = 0; i < this.getChildCount(); i++) {
+			Node child = this.getChild(i);
+			if (child instanceof Element && SVGG.TAG.equals(((Element) child).getLocalName())) {
+				totalDelta.plusEquals(getOffset((Element) child, this.layout));
+				hasBoxes = true;
+			}
+		}
+		return hasBoxes;
 	}
 	
 	public List<SVGGBox> getSVGGBoxChildren() {
@@ -21,11 +21,11 @@ import java.awt.Graphics2D;
 import java.awt.Stroke;
 import java.awt.geom.Line2D;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.log4j.Logger;
 import org.xmlcml.euclid.Angle;
-import org.xmlcml.euclid.EuclidConstants;
 import org.xmlcml.euclid.Line2;
 import org.xmlcml.euclid.Real;
 import org.xmlcml.euclid.Real2;
@@ -33,6 +33,8 @@ import org.xmlcml.euclid.Real2Array;
 import org.xmlcml.euclid.Real2Range;
 import org.xmlcml.euclid.RealRange;
 import org.xmlcml.euclid.Transform2;
+import org.xmlcml.graphics.svg.linestuff.BoundingBoxIndex;
+import org.xmlcml.graphics.svg.linestuff.LineIntersection;
 import org.xmlcml.xml.XMLConstants;
 import org.xmlcml.xml.XMLUtil;
 
@@ -67,6 +69,15 @@ public class SVGLine extends SVGShape {
 
 	private Line2D.Double line2;
 	private Line2 euclidLine;
+	// endpoints and derived geometry, parsed lazily from x1,y1,x2,y2 and reset by addAttribute/removeAttribute
+	// (no initializers; attributes may be added by the superclass constructor)
+	private boolean coordsValid;
+	private double fromX;
+	private double fromY;
+	private double toX;
+	private double toY;
+	private double angle;
+	private double length;
 	
 	/** constructor
 	 */
@@ -157,22 +168,54 @@ public class SVGLine extends SVGShape {
 		} else {
 			this.addAttribute(new Attribute(X+(serial+1), String.valueOf(x12.getX())));
 			this.addAttribute(new Attribute(Y+(serial+1), String.valueOf(x12.getY())));
-			if (euclidLine != null) {
-				euclidLine.setXY(x12, serial);
-			}
-
 		}
 	}
 	
 	public Real2 getXY(int serial) {
 		Real2 xy = null;
+		ensureCoords();
 		if (serial == 0) {
-			xy = new Real2(this.getDouble(X1), this.getDouble(Y1));
+			xy = new Real2(fromX, fromY);
 		} else if (serial == 1) {
-			xy = new Real2(this.getDouble(X2), this.getDouble(Y2));
+			xy = new Real2(toX, toY);
 		}
 		return xy;
 	}
+
+	@Override
+	public void addAttribute(Attribute attribute) {
+		super.addAttribute(attribute);
+		clearCoords(attribute);
+	}
+
+	@Override
+	public Attribute removeAttribute(Attribute attribute) {
+		clearCoords(attribute);
+		return super.removeAttribute(attribute);
+	}
+
+	private void clearCoords(Attribute attribute) {
+		String name = attribute.getLocalName();
+		if (X1.equals(name) || Y1.equals(name) || X2.equals(name) || Y2.equals(name)) {
+			coordsValid = false;
+			euclidLine = null;
+		}
+	}
+
+	private void ensureCoords() {
+		if (!coordsValid) {
+			fromX = getDouble(X1);
+			fromY = getDouble(Y1);
+			toX = getDouble(X2);
+			toY = getDouble(Y2);
+			double dx = toX - fromX;
+			double dy = toY - fromY;
+			// argument order as euclid Vector2.getAngleMadeWith (so zero-length lines behave the same)
+			angle = Math.atan2(dx, dy);
+			length = Math.sqrt(dx * dx + dy * dy);
+			coordsValid = true;
+		}
+	}
 	
 	/**
 	 * @param x12 coordinates of the atom
@@ -185,21 +228,12 @@ public class SVGLine extends SVGShape {
 		} else {
 			this.addAttribute(new Attribute(X+serial, String.valueOf(x12.getX())));
 			this.addAttribute(new Attribute(Y+serial, String.valueOf(x12.getY())));
-			if (euclidLine != null) {
-				euclidLine.setXY(x12, serial);
-			}
 		}
 	}
 	
 	@Deprecated //use getXY
 	public Real2 getX12(int serial) {
-		Real2 xy = null;
-		if (serial == 1) {
-			xy = new Real2(this.getDouble(X1), this.getDouble(Y1));
-		} else if (serial == 2) {
-			xy = new Real2(this.getDouble(X2), this.getDouble(Y2));
-		}
-		return xy;
+		return getXY(serial - 1);
 	}
 	
 //  <g style="stroke-width:0.2;">
@@ -291,11 +325,13 @@ public class SVGLine extends SVGShape {
 	}
 	
 	public boolean isVertical(double eps) {
-		return Real.isEqual(this.getXY(0).getX(), this.getXY(1).getX(), eps);
+		ensureCoords();
+		return Math.abs(fromX - toX) < eps;
 	}
 	
 	public boolean isHorizontal(double eps) {
-		return Real.isEqual(this.getXY(0).getY(), this.getXY(1).getY(), eps);
+		ensureCoords();
+		return Math.abs(fromY - toY) < eps;
 	}
 
 	public boolean isZero(double eps) {
@@ -329,22 +365,21 @@ public class SVGLine extends SVGShape {
 	public boolean makesTJointWith(SVGLine l, double eps) {
 		boolean endsOn = false;
 		if (this.isHorizontal(eps) && l.isVertical(eps)) {
-			RealRange yrange = l.getReal2Range().getYRange();
-			double lx = l.getXY(0).getX();
-			double thisy = this.getXY(0).getY();
-			endsOn = yrange.contains(thisy) && 
-				(Real.isEqual(lx, this.getXY(0).getX(), eps) ||
-				Real.isEqual(lx, this.getXY(1).getX(), eps));
+			double lx = l.fromX;
+			endsOn = isBetween(fromY, l.fromY, l.toY) && 
+				(Math.abs(lx - fromX) < eps || Math.abs(lx - toX) < eps);
 		} else if (this.isVertical(eps) && l.isHorizontal(eps)) {
-			RealRange xrange = l.getReal2Range().getXRange();
-			double ly = l.getXY(0).getY();
-			double thisx = this.getXY(0).getX();
-			endsOn = xrange.contains(thisx) && 
-				(Real.isEqual(ly, this.getXY(0).getY(), eps) ||
-				Real.isEqual(ly, this.getXY(1).getY(), eps));
+			double ly = l.fromY;
+			endsOn = isBetween(fromX, l.fromX, l.toX) && 
+				(Math.abs(ly - fromY) < eps || Math.abs(ly - toY) < eps);
 		}
 		return endsOn;
 	}
+
+	/** inclusive; as RealRange.contains() */
+	private static boolean isBetween(double value, double end0, double end1) {
+		return value >= Math.min(end0, end1) && value <= Math.max(end0, end1);
+	}
 	
 	/** if point is close to one end of line get the other
 	 * 
@@ -434,7 +469,11 @@ public class SVGLine extends SVGShape {
 	 * @return
 	 */
 	public boolean isParallelTo(SVGLine svgLine, Angle angleEps) {
-		return this.getEuclidLine().isParallelTo(svgLine.getEuclidLine(), angleEps);
+		double rad = normalise(getAngleMadeWith(svgLine));
+		if (rad > Math.PI) {
+			rad -= 2.0 * Math.PI;
+		}
+		return Math.abs(rad) < Math.abs(angleEps.getRadian());
 	}
 
 	/**
@@ -444,7 +483,8 @@ public class SVGLine extends SVGShape {
 	 * @return
 	 */
 	public boolean isAntiParallelTo(SVGLine svgLine, Angle angleEps) {
-		return this.getEuclidLine().isAntiParallelTo(svgLine.getEuclidLine(), angleEps);
+		double rad = normalise(getAngleMadeWith(svgLine));
+		return Math.abs(Math.abs(rad) - Math.PI) < Math.abs(angleEps.getRadian());
 	}
 
 
@@ -455,7 +495,7 @@ public class SVGLine extends SVGShape {
 	 * @return
 	 */
 	public boolean isParallelOrAntiParallelTo(SVGLine svgLine, Angle angleEps) {
-		return this.getEuclidLine().isParallelOrAntiParallelTo(svgLine.getEuclidLine(), angleEps);
+		return isParallelTo(svgLine, angleEps) || isAntiParallelTo(svgLine, angleEps);
 	}
 
 	/**
@@ -465,11 +505,30 @@ public class SVGLine extends SVGShape {
 	 * @return
 	 */
 	public boolean isPerpendicularTo(SVGLine svgLine, double eps) {
-		Angle angle = this.getEuclidLine().getAngleMadeWith(svgLine.getEuclidLine());
-		Double dd = Math.abs(angle.cos());
+		double dd = Math.abs(Math.cos(getAngleMadeWith(svgLine)));
 		return (dd < eps && dd > -eps);
 	}
 
+	/** angle from this to svgLine in radians, unnormalised (as Line2.getAngleMadeWith).
+	 * 
+	 */
+	private double getAngleMadeWith(SVGLine svgLine) {
+		ensureCoords();
+		svgLine.ensureCoords();
+		return svgLine.angle - angle;
+	}
+
+	/** to 0-2PI as euclid Angle */
+	private static double normalise(double rad) {
+		while (rad > 2.0 * Math.PI) {
+			rad -= 2.0 * Math.PI;
+		}
+		while (rad < 0.0) {
+			rad += 2.0 * Math.PI;
+		}
+		return rad;
+	}
+
 	public Double calculateUnsignedDistanceBetweenLines(SVGLine line1, Angle eps) {
 		return this.getEuclidLine().calculateUnsignedDistanceBetweenLines(line1.getEuclidLine(), eps);
 	}
@@ -490,8 +549,8 @@ public class SVGLine extends SVGShape {
 	}
 
 	public Double getLength() {
-		Line2 line2 = getEuclidLine();
-		return (line2 == null) ? null : line2.getLength();
+		ensureCoords();
+		return length;
 	}
 
 	/** for horizontal or vertical lines make sure that first coord is smallest
@@ -519,6 +578,11 @@ public class SVGLine extends SVGShape {
 		return getAttributeValue(X1)+" "+getAttributeValue(Y1)+" "+getAttributeValue(X2)+" "+getAttributeValue(Y2);
 	}
 
+	@Override
+	public double[] getGeometricCoordinates() {
+		return new double[] {getDouble(X1), getDouble(Y1), getDouble(X2), getDouble(Y2)};
+	}
+
 	/** convenience method to extract list of svgLines in element
 	 * 
 	 * @param svgElement
@@ -589,6 +653,18 @@ public class SVGLine extends SVGShape {
 		return (line == null ? null : this.getEuclidLine().getIntersection(line.getEuclidLine()));
 	}
 
+	/** all pairs of lines which cross or touch (within eps).
+	 * 
+	 * sweeps horizontal against vertical lines and indexes the rest; see LineIntersection.
+	 * 
+	 * @param lines
+	 * @param eps
+	 * @return crossings sorted by index of lines in list
+	 */
+	public static List<LineIntersection> findAllIntersections(List<SVGLine> lines, double eps) {
+		return LineIntersection.findAllIntersections(lines, eps);
+	}
+
 	/** create set of concatenated lines.
 	 * 
 	 * @param points
@@ -632,9 +708,9 @@ public class SVGLine extends SVGShape {
 
 	public LineDirection getOrCreateDirection(double epsilon) {
 		LineDirection direction = null;
-		if (isHorizontal(EuclidConstants.EPS)) {
+		if (isHorizontal(epsilon)) {
 			direction = LineDirection.HORIZONTAL;
-		} else if (isHorizontal(epsilon)) {
+		} else if (isVertical(epsilon)) {
 			direction = LineDirection.VERTICAL;
 		}
 		return direction;
@@ -691,68 +767,97 @@ public class SVGLine extends SVGShape {
 
 	/** merges touching parallel lines.
 	 * 
-	 * Assumes all lines are parallel; if not will fail messily
+	 * Horizontal and vertical lines are grouped by ordinate (all within eps of the lowest 
+	 * in the group), each group is sorted by start coordinate and runs of overlapping or 
+	 * touching (within eps) lines are merged in one sweep, as createMergedHorizontalOrVerticalLine().
+	 * A merged line takes the attributes of the first line in its run.
+	 * Other lines are returned unchanged. Lines are returned in order of the first 
+	 * (in lineList) line of each run.
+	 * 
+	 * does not check style attributes
 	 * 
 	 * @param lineList
 	 * @param eps
 	 * @return
 	 */
 	public static List<SVGLine> mergeParallelLines(List<SVGLine> lineList, double eps) {
-		
-		/** runs through a list of lines joining where possible to create (smaller) list.
-		 * if lines overlap takes union
-		 * 
-		 * Crude algorithm. 
-		 *   1 start = 0;
-		 *   2 size = number of lines
-		 *   3 iline = start ... size-1
-		 *   4 test (iline, iline+1) for join at either end
-		 *      if join, replace lines with merged line
-		 *      start = iline
-		 *      goto 2
-		 *   5 exit if no change
-		 * 
-		 * does not check style attributes
-		 * 
-		 * @param lineList
-		 * @param eps
-		 * @return
-		 */
+		int n = lineList.size();
+		SVGLine[] mergedLines = new SVGLine[n];
+		int[] horizontals = new int[n];
+		int[] verticals = new int[n];
+		int horizontalCount = 0;
+		int verticalCount = 0;
+		for (int i = 0; i < n; i++) {
+			SVGLine line = lineList.get(i);
+			if (line.isHorizontal(eps)) {
+				horizontals[horizontalCount++] = i;
+			} else if (line.isVertical(eps)) {
+				verticals[verticalCount++] = i;
+			} else {
+				mergedLines[i] = line;
+			}
+		}
+		mergeCollinearRuns(lineList, Arrays.copyOf(horizontals, horizontalCount), true, eps, mergedLines);
+		mergeCollinearRuns(lineList, Arrays.copyOf(verticals, verticalCount), false, eps, mergedLines);
 		List<SVGLine> lineListNew = new ArrayList<SVGLine>();
-		lineListNew.addAll(lineList);
-		boolean change = true;
-		while (change) {
-			change = false;
-			int size = lineListNew.size();
-			for (int iline = 0; iline < size - 1; iline++) {
-				size = lineListNew.size();
-				for (int jline = iline + 1; jline < size; jline++) {
-					SVGLine linei = lineListNew.get(iline);
-					SVGLine linej = lineListNew.get(jline);
-					LOG.trace("merging \n    "+linei.toXML()+"\n--> "+linej.toXML());
-					SVGLine newLine = createMergedHorizontalOrVerticalLine(linei, linej, eps);
-//					if (newLine == null) {
-//						// try the other direction
-//						newLine = createMergedHorizontalOrVerticalLine(linej, linei, eps);
-//					}
-//					LOG.trace("newline: "+newLine.toXML());
-					if (newLine != null) {
-						lineListNew.remove(jline);
-						lineListNew.remove(iline);
-						lineListNew.add(newLine);
-						LOG.trace("after close lines "+lineListNew.size());
-						for (SVGLine line : lineListNew) {
-							LOG.trace(">> "+line.toXML());
-						}
-						change = true;
-						break;
-					}
-				}
+		for (SVGLine line : mergedLines) {
+			if (line != null) {
+				lineListNew.add(line);
 			}
 		}
 		return lineListNew;
 	}
 
+	/** merges runs of collinear lines.
+	 * 
+	 * @param lineList
+	 * @param indexes of horizontal (or vertical) lines in lineList
+	 * @param horizontal
+	 * @param eps
+	 * @param mergedLines result for each run, placed at the lowest index of its lines
+	 */
+	private static void mergeCollinearRuns(List<SVGLine> lineList, int[] indexes, 
+			boolean horizontal, double eps, SVGLine[] mergedLines) {
+		int count = indexes.length;
+		double[] ordinates = new double[count];
+		double[] mins = new double[count];
+		double[] maxs = new double[count];
+		for (int k = 0; k < count; k++) {
+			Real2Range bbox = lineList.get(indexes[k]).getBoundingBox();
+			RealRange along = horizontal ? bbox.getXRange() : bbox.getYRange();
+			ordinates[k] = horizontal ? bbox.getYMin() : bbox.getXMin();
+			mins[k] = along.getMin();
+			maxs[k] = along.getMax();
+		}
+		int[] byOrdinate = BoundingBoxIndex.createSortedIndex(ordinates);
+		int start = 0;
+		while (start < count) {
+			double ordinate0 = ordinates[byOrdinate[start]];
+			int end = start + 1;
+			while (end < count && Real.isEqual(ordinates[byOrdinate[end]], ordinate0, eps)) {
+				end++;
+			}
+			BoundingBoxIndex.sortIndexByKey(byOrdinate, start, end, mins);
+			int i = start;
+			while (i < end) {
+				int first = byOrdinate[i++];
+				SVGLine line0 = lineList.get(indexes[first]);
+				int lowestIndex = indexes[first];
+				double runMax = maxs[first];
+				Real2Range bbox = null;
+				while (i < end && (Real.isEqual(runMax, mins[byOrdinate[i]], eps) || runMax > mins[byOrdinate[i]])) {
+					int next = byOrdinate[i++];
+					Real2Range nextBox = lineList.get(indexes[next]).getBoundingBox();
+					bbox = (bbox == null) ? line0.getBoundingBox().plus(nextBox) : bbox.plusEquals(nextBox);
+					runMax = Math.max(runMax, maxs[next]);
+					lowestIndex = Math.min(lowestIndex, indexes[next]);
+				}
+				mergedLines[lowestIndex] = (bbox == null) ? line0 : createMergedLine(line0, bbox);
+			}
+			start = end;
+		}
+	}
+
 	/** join two horizontal or vertical lines at their ends.
 	 * lines might overlap, in which case the maximum line is taken
 	 * currently ignores attributes of line 1
@@ -782,17 +887,24 @@ public class SVGLine extends SVGShape {
 				)
 			) {
 		
-			Real2Range bbox = line0.getBoundingBox().plus(line1.getBoundingBox());
-			Real2 point00 = bbox.getCorners()[0];
-			Real2 point11 = bbox.getCorners()[1];
-			newLine = new SVGLine();
-			XMLUtil.copyAttributes(line0, newLine);
-			newLine.setXY(point00, 0);
-			newLine.setXY(point11, 1);
+			newLine = createMergedLine(line0, line0.getBoundingBox().plus(line1.getBoundingBox()));
 		}
 		return newLine;
 	}
 
+	/** line spanning bbox with attributes of line0.
+	 * 
+	 */
+	private static SVGLine createMergedLine(SVGLine line0, Real2Range bbox) {
+		Real2 point00 = bbox.getCorners()[0];
+		Real2 point11 = bbox.getCorners()[1];
+		SVGLine newLine = new SVGLine();
+		XMLUtil.copyAttributes(line0, newLine);
+		newLine.setXY(point00, 0);
+		newLine.setXY(point11, 1);
+		return newLine;
+	}
+
 	private static boolean touchesOrOverlaps(double x0, double x1, double eps) {
 		return Real.isEqual(x0, x1, eps) || x0 > x1;
 	}
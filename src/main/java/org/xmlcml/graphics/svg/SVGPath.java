@@ -36,12 +36,15 @@ import org.xmlcml.euclid.RealArray;
 import org.xmlcml.euclid.RealRange;
 import org.xmlcml.euclid.Transform2;
 import org.xmlcml.euclid.Vector2;
+import org.xmlcml.graphics.svg.linestuff.PolylineSimplifier;
 import org.xmlcml.graphics.svg.path.Arc;
 import org.xmlcml.graphics.svg.path.ClosePrimitive;
 import org.xmlcml.graphics.svg.path.CubicPrimitive;
 import org.xmlcml.graphics.svg.path.LinePrimitive;
 import org.xmlcml.graphics.svg.path.MovePrimitive;
 import org.xmlcml.graphics.svg.path.PathPrimitiveList;
+import org.xmlcml.graphics.svg.path.PathSegmentIterator;
+import org.xmlcml.graphics.svg.path.QuadPrimitive;
 import org.xmlcml.xml.XMLConstants;
 import org.xmlcml.xml.XMLUtil;
 
@@ -82,6 +85,7 @@ public class SVGPath extends SVGShape {
 	private Boolean isPolyline;
 	private Real2Array firstCoords;
 	private String signature;
+	private double[] geometricCoordinates;
 
 	/** 
 	 * Constructor
@@ -135,7 +139,7 @@ public class SVGPath extends SVGShape {
 		if (reference != null) {
 			XMLUtil.copyAttributes(reference, this);
 		}
-		setDString(SVGPathPrimitive.createD(primitiveList));
+		setPrimitives(primitiveList);
 	}
 	
 	/**
@@ -206,6 +210,42 @@ public class SVGPath extends SVGShape {
 	public String getDString() {
 		return this.getAttributeValue(D);
 	}
+
+	@Override
+	public void addAttribute(Attribute attribute) {
+		super.addAttribute(attribute);
+		clearPrimitives(attribute);
+	}
+
+	@Override
+	public Attribute removeAttribute(Attribute attribute) {
+		clearPrimitives(attribute);
+		return super.removeAttribute(attribute);
+	}
+
+	private void clearPrimitives(Attribute attribute) {
+		if (D.equals(attribute.getLocalName())) {
+			clearPrimitives();
+		}
+	}
+
+	/** clears everything derived from d.
+	 * 
+	 * primitives, signature, coordinates, bounding box and GeneralPath are recreated lazily
+	 * from d when next needed. Called whenever d is added, changed or removed.
+	 */
+	private void clearPrimitives() {
+		primitiveList = null;
+		signature = null;
+		coords = null;
+		geometricCoordinates = null;
+		polyline = null;
+		allCoords = null;
+		firstCoords = null;
+		isPolyline = null;
+		path2 = null;
+		boundingBox = null;
+	}
 	
 	
 //  <g style="stroke-width:0.2;">
@@ -235,7 +275,7 @@ public class SVGPath extends SVGShape {
 		ensurePrimitives();
 		isPolyline = true;
 		for (SVGPathPrimitive primitive : primitiveList) {
-			if (primitive instanceof CubicPrimitive) {
+			if (primitive instanceof CubicPrimitive || primitive instanceof QuadPrimitive) {
 				isPolyline = false;
 				Real2Array curveCoords = primitive.getCoordArray();
 				allCoords.add(curveCoords);
@@ -260,6 +300,39 @@ public class SVGPath extends SVGShape {
 		return polyline;
 	}
 	
+	/** polyline through the path with curves flattened.
+	 * 
+	 * unlike createPolyline() curves are replaced by segments within tolerance
+	 * (see PathSegmentIterator). A final Z closes the polyline.
+	 * 
+	 * @param tolerance maximum distance of a curve from the polyline
+	 * @return null if fewer than 2 points or more than one subpath
+	 */
+	public SVGPoly createFlattenedPolyline(double tolerance) {
+		PathSegmentIterator iterator = ensurePrimitives().createSegmentIterator(tolerance);
+		Real2Array points = new Real2Array();
+		boolean closed = false;
+		while (iterator.next()) {
+			if (closed || (iterator.isSubpathStart() && points.size() > 0)) {
+				return null;
+			}
+			if (points.size() == 0) {
+				points.add(new Real2(iterator.getX0(), iterator.getY0()));
+			}
+			if (iterator.isClosing()) {
+				closed = true;
+			} else {
+				points.add(new Real2(iterator.getX1(), iterator.getY1()));
+			}
+		}
+		if (points.size() < 2) {
+			return null;
+		}
+		SVGPoly flattened = new SVGPolyline(points);
+		flattened.setClosed(closed);
+		return flattened;
+	}
+	
 	public SVGRect createRectangle(double epsilon) {
 		createPolyline();
 		return polyline == null ? null : polyline.createRect(epsilon);
@@ -302,9 +375,13 @@ public class SVGPath extends SVGShape {
 	 * @return
 	 */
 	public SVGCircle createCircle(double epsilon) {
-		createCoordArray();
 		SVGCircle circle = null;
 		String signature = getSignature();
+		// most paths are not circles; reject on signature before building coordinates and fitting arcs
+		if (!signature.equals("MCCCCZ") && !signature.equals("MCCCC")) {
+			return circle;
+		}
+		createCoordArray();
 		if (signature.equals("MCCCCZ") || signature.equals("MCCCC") && isClosed) {
 			PathPrimitiveList primList = ensurePrimitives();
 			Angle angleEps = new Angle(0.05, Units.RADIANS);
@@ -384,21 +461,25 @@ public class SVGPath extends SVGShape {
 		return r2a.isEqualTo(r2a2, epsilon);
 	}
 	
+	/** first coordinate of each primitive.
+	 * 
+	 * cached until d changes; do not modify.
+	 * 
+	 * @return
+	 */
 	public Real2Array getCoords() {
-		//if (coords == null) {
-		coords = new Real2Array();
-		String ss = getDString().trim()+S_SPACE;
-		PathPrimitiveList primitives = createPathPrimitives();
-		for (SVGPathPrimitive primitive : primitives) {
-			Real2 coord = primitive.getFirstCoord();
-			Real2Array coordArray = primitive.getCoordArray();
-			if (coord != null) {
-				coords.add(coord);
-			} else if (coordArray != null) {
-				coords.add(coordArray);
+		if (coords == null) {
+			coords = new Real2Array();
+			for (SVGPathPrimitive primitive : ensurePrimitives()) {
+				Real2 coord = primitive.getFirstCoord();
+				Real2Array coordArray = primitive.getCoordArray();
+				if (coord != null) {
+					coords.add(coord);
+				} else if (coordArray != null) {
+					coords.add(coordArray);
+				}
 			}
 		}
-		//}
 		return coords;
 	}
 	
@@ -454,13 +535,12 @@ public class SVGPath extends SVGShape {
 	/** 
 	 * Gets bounding box
 	 * <p>
-	 * Uses coordinates given and ignores effect of curves
+	 * Exact for curves (uses their extrema, not their control points); cached until d changes
 	 */
 	@Override
 	public Real2Range getBoundingBox() {
 		if (boundingBox == null) {
-			getCoords();
-			boundingBox = coords.getRange2();
+			boundingBox = ensurePrimitives().getBoundingBox();
 		}
 		return boundingBox;
 	}
@@ -520,18 +600,79 @@ public class SVGPath extends SVGShape {
 	}
 	
 	public void applyTransform(Transform2 t2) {
-		PathPrimitiveList pathPrimitives = this.createPathPrimitives();
-		for (SVGPathPrimitive primitive : pathPrimitives) {
-			primitive.transformBy(t2);
-		}
-		setD(pathPrimitives);
+		applyTransformationToPrimitives(t2);
 	}
 	
 	public void format(int places) {
 		super.format(places);
-		String d = getDString();
-		d = SVGPathPrimitive.formatDString(d, places);
-		this.setDString(d);
+		if (getDString() != null) {
+			PathPrimitiveList primitives = ensurePrimitives();
+			double[] xy = new double[2 * primitives.getCoordinateCount()];
+			primitives.getCoordinates(xy, 0);
+			SVGUtil.formatInterleavedXYArray(xy, places);
+			primitives.setCoordinates(xy, 0);
+			setOwnPrimitives(primitives);
+		}
+	}
+
+	/** transforms all paths with one packed array of their coordinates.
+	 * 
+	 * each d is rewritten once.
+	 * 
+	 * @param pathList
+	 * @param t2
+	 */
+	public static void applyTransform(List<SVGPath> pathList, Transform2 t2) {
+		PathPrimitiveList[] primitivesArray = new PathPrimitiveList[pathList.size()];
+		double[] xy = packCoordinates(pathList, primitivesArray);
+		SVGUtil.transformInterleavedXYArray(xy, t2);
+		unpackCoordinates(pathList, primitivesArray, xy);
+	}
+
+	/** rounds coordinates of all paths with one packed array.
+	 * 
+	 * as format(places) on each path; each d is rewritten once.
+	 * 
+	 * @param pathList
+	 * @param places
+	 */
+	public static void formatPaths(List<SVGPath> pathList, int places) {
+		for (SVGPath path : pathList) {
+			path.formatTransform(places + EXTRA_TRANSFORM_PRECISION);
+		}
+		PathPrimitiveList[] primitivesArray = new PathPrimitiveList[pathList.size()];
+		double[] xy = packCoordinates(pathList, primitivesArray);
+		SVGUtil.formatInterleavedXYArray(xy, places);
+		unpackCoordinates(pathList, primitivesArray, xy);
+	}
+
+	private static double[] packCoordinates(List<SVGPath> pathList, PathPrimitiveList[] primitivesArray) {
+		int count = 0;
+		for (int i = 0; i < pathList.size(); i++) {
+			SVGPath path = pathList.get(i);
+			if (path.getDString() != null) {
+				primitivesArray[i] = path.ensurePrimitives();
+				count += primitivesArray[i].getCoordinateCount();
+			}
+		}
+		double[] xy = new double[2 * count];
+		int start = 0;
+		for (PathPrimitiveList primitives : primitivesArray) {
+			if (primitives != null) {
+				start = primitives.getCoordinates(xy, start);
+			}
+		}
+		return xy;
+	}
+
+	private static void unpackCoordinates(List<SVGPath> pathList, PathPrimitiveList[] primitivesArray, double[] xy) {
+		int start = 0;
+		for (int i = 0; i < pathList.size(); i++) {
+			if (primitivesArray[i] != null) {
+				start = primitivesArray[i].setCoordinates(xy, start);
+				pathList.get(i).setOwnPrimitives(primitivesArray[i]);
+			}
+		}
 	}
 
 	@Override
@@ -554,7 +695,6 @@ public class SVGPath extends SVGShape {
 //	}
 
 	public void normalizeOrigin() {
-		boundingBox = null; // fprce recalculate
 		Real2Range boundingBox = this.getBoundingBox();
 		if (boundingBox == null) {
 			throw new RuntimeException("NULL BoundingBox");
@@ -567,12 +707,84 @@ public class SVGPath extends SVGShape {
 		applyTransformationToPrimitives(t2);
 	}
 
+	/** transforms the cached primitives in place through a packed coordinate array and rewrites d from them.
+	 * 
+	 */
 	private void applyTransformationToPrimitives(Transform2 t2) {
-		PathPrimitiveList primitives = this.parseDString();
-		for (SVGPathPrimitive primitive : primitives) {
-			primitive.transformBy(t2);
+		if (getDString() == null) {
+			return;
 		}
-		this.setD(primitives);
+		PathPrimitiveList primitives = ensurePrimitives();
+		double[] xy = new double[2 * primitives.getCoordinateCount()];
+		primitives.getCoordinates(xy, 0);
+		SVGUtil.transformInterleavedXYArray(xy, t2);
+		primitives.setCoordinates(xy, 0);
+		setOwnPrimitives(primitives);
+	}
+
+	/** removes points in runs of lines which are within tolerance of the simplified run (Douglas-Peucker).
+	 * 
+	 * moves, curves and closes are kept; the d attribute is rewritten (as applyTransform()) only if
+	 * points are removed.
+	 * 
+	 * @param tolerance maximum distance of a removed point from the result
+	 * @return number of line primitives removed
+	 */
+	public int simplify(double tolerance) {
+		PathPrimitiveList primitives = parseDString();
+		if (primitives == null) {
+			return 0;
+		}
+		PathPrimitiveList newPrimitives = new PathPrimitiveList();
+		Real2 current = null;
+		Real2 subpathStart = null;
+		int removed = 0;
+		int i = 0;
+		while (i < primitives.size()) {
+			SVGPathPrimitive primitive = primitives.get(i);
+			if (!(primitive instanceof LinePrimitive)) {
+				newPrimitives.add(primitive);
+				if (primitive instanceof ClosePrimitive) {
+					current = subpathStart;
+				} else {
+					current = primitive.getLastCoord();
+					if (primitive instanceof MovePrimitive) {
+						subpathStart = current;
+					}
+				}
+				i++;
+				continue;
+			}
+			int end = i;
+			while (end < primitives.size() && primitives.get(end) instanceof LinePrimitive) {
+				end++;
+			}
+			// points of run, preceded by the current point if known
+			int offset = (current == null) ? 0 : 1;
+			double[] xy = new double[2 * (end - i + offset)];
+			if (current != null) {
+				xy[0] = current.getX();
+				xy[1] = current.getY();
+			}
+			for (int j = i; j < end; j++) {
+				Real2 point = primitives.get(j).getLastCoord();
+				xy[2 * (j - i + offset)] = point.getX();
+				xy[2 * (j - i + offset) + 1] = point.getY();
+			}
+			int[] kept = PolylineSimplifier.simplify(xy, tolerance);
+			for (int k : kept) {
+				if (k >= offset) {
+					newPrimitives.add(primitives.get(i + k - offset));
+				}
+			}
+			removed += (end - i + offset) - kept.length;
+			current = primitives.get(end - 1).getLastCoord();
+			i = end;
+		}
+		if (removed > 0) {
+			setOwnPrimitives(newPrimitives);
+		}
+		return removed;
 	}
 
 	private void setD(PathPrimitiveList primitives) {
@@ -580,6 +792,28 @@ public class SVGPath extends SVGShape {
 		this.addAttribute(new Attribute(D, d));
 	}
 
+	/** replaces the primitives and rewrites d from them.
+	 *
+	 * a copy of the list becomes the parsed primitives of this path so d is not parsed again
+	 * and later changes to this path (transforms, formatting) do not affect the caller's list;
+	 * values derived from the old primitives (signature, coordinates, bounding box) are cleared.
+	 * If primitives is this path's own list (from ensurePrimitives()), edited in place, it is not copied.
+	 *
+	 * @param primitives
+	 */
+	public void setPrimitives(PathPrimitiveList primitives) {
+		setOwnPrimitives(primitives == primitiveList ? primitives : primitives.copy());
+	}
+
+	/** as setPrimitives() but the list is not copied; it must not be held elsewhere.
+	 *
+	 * @param primitives
+	 */
+	private void setOwnPrimitives(PathPrimitiveList primitives) {
+		setD(primitives);
+		primitiveList = primitives;
+	}
+
 
 	public static String constructDString(GeneralPath generalPath) {
 		PathIterator pathIterator = generalPath.getPathIterator(new AffineTransform());
@@ -701,6 +935,27 @@ public class SVGPath extends SVGShape {
 		return getDString();
 	}
 
+	/** every coordinate of every primitive, in order (control points included).
+	 * 
+	 */
+	@Override
+	public double[] getGeometricCoordinates() {
+		if (geometricCoordinates == null && getDString() != null) {
+			PathPrimitiveList primitives = ensurePrimitives();
+			geometricCoordinates = new double[2 * primitives.getCoordinateCount()];
+			primitives.getCoordinates(geometricCoordinates, 0);
+		}
+		return geometricCoordinates;
+	}
+
+	/** paths with the same coordinates but different commands are different.
+	 * 
+	 */
+	@Override
+	protected String getGeometricTypeKey() {
+		return TAG+" "+getSignature();
+	}
+
 	/** 
 	 * Convenience method to extract list of svgPaths in element
 	 * 
@@ -854,9 +1109,7 @@ public class SVGPath extends SVGShape {
 	public void makeRelativePathsAbsolute() {
 		String d = getDString();
 		if (d != null) {
-			primitiveList = PathPrimitiveList.createPrimitiveList(d);
-			String d1 = primitiveList.getDString();
-			this.setDString(d1);
+			setOwnPrimitives(PathPrimitiveList.createPrimitiveList(d));
 		}
 	}
 
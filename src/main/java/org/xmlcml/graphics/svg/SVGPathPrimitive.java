@@ -260,7 +260,9 @@ public abstract class SVGPathPrimitive {
 	public void format(int places) {
 		// skip for Z etc
 		if (coordArray != null) {
-			coordArray.format(places);
+			// same rounding as the packed SVGPath.format()
+			SVGUtil.formatInterleavedXYArray(coordArray.getXArray().getArray(), places);
+			SVGUtil.formatInterleavedXYArray(coordArray.getYArray().getArray(), places);
 		}
 	}
 
@@ -290,6 +292,30 @@ public abstract class SVGPathPrimitive {
 
 	public abstract void operateOn(GeneralPath path2);
 
+	/** deep copy; coordinates and zeroth coordinate are not shared with this.
+	 * 
+	 * @return
+	 */
+	public abstract SVGPathPrimitive copy();
+
+	/** copies coordinates and zeroth coordinate of this into a new primitive.
+	 * 
+	 * @param copy new primitive of the same type
+	 * @return copy
+	 */
+	protected <T extends SVGPathPrimitive> T copyCoordsTo(T copy) {
+		copy.coordArray = null;
+		if (coordArray != null) {
+			// not new Real2Array(coordArray) which can share the underlying arrays
+			copy.coordArray = new Real2Array();
+			for (int i = 0; i < coordArray.size(); i++) {
+				copy.coordArray.add(new Real2(coordArray.get(i)));
+			}
+		}
+		copy.zerothCoord = zerothCoord == null ? null : new Real2(zerothCoord);
+		return copy;
+	}
+
 	/** the angle of change of direction (only for curves)
 	 * firstPoint must have been set with setFirstPoint()
 	 * @return change as Angle
@@ -33,9 +33,10 @@ import org.xmlcml.euclid.Real;
 import org.xmlcml.euclid.Real2;
 import org.xmlcml.euclid.Real2Array;
 import org.xmlcml.euclid.Real2Range;
-import org.xmlcml.euclid.RealArray;
 import org.xmlcml.euclid.RealArray.Monotonicity;
 import org.xmlcml.euclid.Transform2;
+import org.xmlcml.graphics.svg.linestuff.PolylineSegments;
+import org.xmlcml.graphics.svg.linestuff.PolylineSimplifier;
 import org.xmlcml.graphics.svg.path.PathPrimitiveList;
 
 import nu.xom.Attribute;
@@ -65,6 +66,12 @@ public abstract class SVGPoly extends SVGShape {
 	public final static List<String> SVG_ATTS = Arrays.asList(POINTS);
 	
 	protected Real2Array real2Array;
+	// x0,y0,x1,y1... of interleavedSource
+	private double[] interleavedXY;
+	private Real2Array interleavedSource;
+	// view of segmentsXY
+	private PolylineSegments segments;
+	private double[] segmentsXY;
 	protected List<SVGLine> lineList;
 	protected List<SVGMarker> markerList;
 
@@ -120,11 +127,10 @@ public abstract class SVGPoly extends SVGShape {
 			System.err.println("null real2Array in polyline: ");
 		} else {
 			String points = r2a.getStringArray();
-			addAttribute(new Attribute(POINTS, points));
 			// copy unless same object
-			if (real2Array != r2a) {
-				real2Array = new Real2Array(r2a);
-			}
+			Real2Array newReal2Array = (real2Array == r2a) ? r2a : new Real2Array(r2a);
+			addAttribute(new Attribute(POINTS, points));
+			real2Array = newReal2Array;
 		}
 	}
 	
@@ -135,6 +141,66 @@ public abstract class SVGPoly extends SVGShape {
 		}
 		return real2Array;
 	}
+
+	/** points as x0,y0,x1,y1...
+	 * 
+	 * cached until points change; do not modify.
+	 * 
+	 * @return null if there are no points
+	 */
+	public double[] getInterleavedXYArray() {
+		Real2Array r2a = getReal2Array();
+		if (r2a == null) {
+			return null;
+		}
+		if (interleavedXY == null || interleavedSource != r2a) {
+			interleavedXY = SVGUtil.createInterleavedXYArray(r2a);
+			interleavedSource = r2a;
+		}
+		return interleavedXY;
+	}
+
+	/** segment view of the points.
+	 * 
+	 * includes the closing segment if isClosed() and there are more than 2 points
+	 * (as createLineList()). Cached until points change.
+	 * 
+	 * @return null if there are no points
+	 */
+	public PolylineSegments getOrCreateSegments() {
+		double[] xy = getInterleavedXYArray();
+		if (xy == null) {
+			return null;
+		}
+		boolean closed = isClosed() && xy.length > 4;
+		if (segments == null || segmentsXY != xy || segments.isClosed() != closed) {
+			segments = new PolylineSegments(xy, closed);
+			segmentsXY = xy;
+		}
+		return segments;
+	}
+
+	/** keeps real2Array coherent with the points attribute.
+	 * 
+	 */
+	@Override
+	public void addAttribute(Attribute attribute) {
+		super.addAttribute(attribute);
+		clearPoints(attribute);
+	}
+
+	@Override
+	public Attribute removeAttribute(Attribute attribute) {
+		clearPoints(attribute);
+		return super.removeAttribute(attribute);
+	}
+
+	private void clearPoints(Attribute attribute) {
+		if (POINTS.equals(attribute.getLocalName())) {
+			real2Array = null;
+			interleavedXY = null;
+		}
+	}
 	
 	
 	/*<g style="stroke-width:0.2;">
@@ -213,9 +279,20 @@ public abstract class SVGPoly extends SVGShape {
     public Real2Range getBoundingBox() {
     	if (boundingBoxNeedsUpdating()) {
 	    	boundingBox = new Real2Range();
-	    	getReal2Array();
-	    	for (int i = 0; i < real2Array.size(); i++) {
-	    		boundingBox.add(real2Array.get(i));
+	    	double[] xy = getInterleavedXYArray();
+	    	if (xy.length > 0) {
+		    	double xmin = Double.POSITIVE_INFINITY;
+		    	double xmax = Double.NEGATIVE_INFINITY;
+		    	double ymin = Double.POSITIVE_INFINITY;
+		    	double ymax = Double.NEGATIVE_INFINITY;
+		    	for (int i = 0; i < xy.length; i += 2) {
+		    		xmin = Math.min(xmin, xy[i]);
+		    		xmax = Math.max(xmax, xy[i]);
+		    		ymin = Math.min(ymin, xy[i + 1]);
+		    		ymax = Math.max(ymax, xy[i + 1]);
+		    	}
+		    	boundingBox.add(new Real2(xmin, ymin));
+		    	boundingBox.add(new Real2(xmax, ymax));
 	    	}
     	}
     	return boundingBox;
@@ -230,13 +307,58 @@ public abstract class SVGPoly extends SVGShape {
     public Monotonicity getMonotonicity(Axis2 axis) {
     	Monotonicity monotonicity = null;
     	if (axis != null) {
-	    	Real2Array real2Array = getReal2Array(); 
-	    	RealArray realArray = (axis.equals(Axis2.X) ? real2Array.getXArray() : real2Array.getYArray());
-	    	monotonicity = realArray.getMonotonicity();
+	    	monotonicity = getOrCreateSegments().getMonotonicity(axis);
     	}
     	return monotonicity;
     }
     
+    /** removes points within tolerance of the simplified polyline (Douglas-Peucker).
+     * 
+     * closed polys keep at least 3 points. Clears lines and markers; monotonicity attributes
+     * are recalculated if present.
+     * 
+     * @param tolerance maximum distance of a removed point from the result
+     * @return number of points removed
+     */
+    public int simplify(double tolerance) {
+    	double[] xy = getInterleavedXYArray();
+    	if (xy == null) {
+    		return 0;
+    	}
+    	int npoints = xy.length / 2;
+    	boolean closed = isClosed() && npoints > 2;
+    	if (closed) {
+    		// treat as open path returning to the first point
+    		xy = Arrays.copyOf(xy, xy.length + 2);
+    		xy[xy.length - 2] = xy[0];
+    		xy[xy.length - 1] = xy[1];
+    	}
+    	int[] kept = PolylineSimplifier.simplify(xy, tolerance);
+    	int nkept = closed ? kept.length - 1 : kept.length;
+    	if (nkept == npoints || (closed && nkept < 3)) {
+    		return 0;
+    	}
+    	Real2Array r2a = new Real2Array();
+    	for (int i = 0; i < nkept; i++) {
+    		r2a.add(new Real2(xy[2 * kept[i]], xy[2 * kept[i] + 1]));
+    	}
+    	boolean hasMonotonicity = getAttribute(MONOTONIC+Axis2.X) != null || getAttribute(MONOTONIC+Axis2.Y) != null;
+    	setReal2Array(r2a);
+    	lineList = null;
+    	markerList = null;
+    	isAligned = null;
+    	if (hasMonotonicity) {
+    		for (Axis2 axis : Axis2.values()) {
+    			Attribute monotonic = getAttribute(MONOTONIC+axis);
+    			if (monotonic != null) {
+    				removeAttribute(monotonic);
+    			}
+    		}
+    		addMonotonicityAttributes();
+    	}
+    	return npoints - nkept;
+    }
+
     public void clearMonotonicities() {
     	removeAttribute(getAttribute(MONOTONIC+Axis2.X));
     	removeAttribute(getAttribute(MONOTONIC+Axis2.Y));
@@ -416,6 +538,12 @@ public abstract class SVGPoly extends SVGShape {
 		return String.valueOf(real2Array);
 	}
 
+	@Override
+	public double[] getGeometricCoordinates() {
+		Real2Array r2a = getReal2Array();
+		return r2a == null ? null : SVGUtil.createInterleavedXYArray(r2a);
+	}
+
 	protected void drawPolylineOrGon(Graphics2D g2d, boolean closed) {
 		saveGraphicsSettingsAndApplyTransform(g2d);
 		getReal2Array();
@@ -461,6 +589,9 @@ public abstract class SVGPoly extends SVGShape {
 	}
 	
 	public void setClosed(boolean isClosed) {
+		if (!Boolean.valueOf(isClosed).equals(this.isClosed)) {
+			geometryChanged();
+		}
 		this.isClosed = isClosed;
 	}
 
@@ -544,6 +675,8 @@ public abstract class SVGPoly extends SVGShape {
 	public void add(Real2 point) {
 		ensureReal2Array();
 		real2Array.add(point);
+		interleavedXY = null;
+		geometryChanged();
 	}
 
 	private void ensureReal2Array() {
@@ -309,17 +309,28 @@ public class SVGPolyline extends SVGPoly {
 	 */
 	public Boolean isAlignedWithAxes(double epsilon) {
 		if (isAligned  == null) {
-			createLineList();
-			isAligned = true;
-			for (SVGLine line : lineList) {
-				if (!line.isHorizontal(epsilon) && !line.isVertical(epsilon)) {
-					isAligned = false;
-					break;
+			if (lineList == null) {
+				isAligned = getOrCreateSegments().isAlignedWithAxes(epsilon);
+			} else {
+				isAligned = true;
+				for (SVGLine line : lineList) {
+					if (!line.isHorizontal(epsilon) && !line.isVertical(epsilon)) {
+						isAligned = false;
+						break;
+					}
 				}
 			}
 		}
 		return isAligned;
 	}
+
+	/** number of lines in createLineList() without creating them.
+	 * 
+	 * @return
+	 */
+	public int getLineCount() {
+		return (lineList != null) ? lineList.size() : getOrCreateSegments().size();
+	}
 	
 	public void removeLastLine() {
 		createLineList();
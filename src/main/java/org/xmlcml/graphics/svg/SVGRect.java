@@ -253,6 +253,11 @@ public class SVGRect extends SVGShape {
 		return getAttributeValue(X)+" "+getAttributeValue(Y)+" "+getAttributeValue(WIDTH)+" "+getAttributeValue(HEIGHT);
 	}
 
+	@Override
+	public double[] getGeometricCoordinates() {
+		return new double[] {getDouble(X), getDouble(Y), getDouble(WIDTH), getDouble(HEIGHT)};
+	}
+
 	public static List<SVGRect> extractSelfAndDescendantRects(SVGElement svgElem) {
 		return SVGRect.extractRects(SVGUtil.getQuerySVGElements(svgElem, ALL_RECT_XPATH));
 	}
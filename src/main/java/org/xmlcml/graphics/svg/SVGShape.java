@@ -25,6 +25,12 @@ public abstract class SVGShape extends SVGElement {
 			".//svg:rect[not(ancestor::svg:defs)]" +
 			"";
 
+	private static final long FINGERPRINT_SEED = 0x9E3779B97F4A7C15L;
+
+	private long geometricFingerprint;
+	private double geometricFingerprintEps = Double.NaN;
+	private int modificationCount;
+
 	protected SVGShape(String name) {
 		super(name);
 	}
@@ -41,6 +47,192 @@ public abstract class SVGShape extends SVGElement {
 	 * @return
 	 */
 	public abstract String getGeometricHash();
+
+	/** the coordinates which define the geometry of the shape.
+	 * 
+	 * Used for numeric fingerprints. Subclasses override; the default (null)
+	 * makes the fingerprint fall back on getGeometricHash().
+	 * 
+	 * @return coordinates or null
+	 */
+	public double[] getGeometricCoordinates() {
+		return null;
+	}
+
+	/** distinguishes shapes with the same coordinates but different geometry.
+	 * 
+	 * Default is the tag.
+	 * 
+	 * @return key to mix into the fingerprint
+	 */
+	protected String getGeometricTypeKey() {
+		return getTag();
+	}
+
+	/** a 64-bit hash of the shape type and coordinates quantised to eps.
+	 * 
+	 * Shapes with the same type and coordinates that fall in the same eps-cells have 
+	 * the same fingerprint. Cached on the element for the last eps used; the cache is cleared
+	 * when attributes are added or removed through this element.
+	 * 
+	 * @param eps size of quantisation cell (must be positive)
+	 * @return fingerprint
+	 */
+	public long getGeometricFingerprint(double eps) {
+		if (eps != geometricFingerprintEps) {
+			geometricFingerprint = createGeometricFingerprint(eps);
+			geometricFingerprintEps = eps;
+		}
+		return geometricFingerprint;
+	}
+
+	/** forces recalculation of fingerprint.
+	 * 
+	 */
+	public void clearGeometricFingerprint() {
+		geometricFingerprintEps = Double.NaN;
+	}
+
+	private long createGeometricFingerprint(double eps) {
+		long hash = mixFingerprint(FINGERPRINT_SEED, String.valueOf(getGeometricTypeKey()).hashCode());
+		double[] coords = getGeometricCoordinates();
+		if (coords == null) {
+			String geometricHash = getGeometricHash();
+			hash = mixFingerprint(hash, geometricHash == null ? 0 : geometricHash.hashCode());
+		} else {
+			hash = mixFingerprint(hash, coords.length);
+			for (int i = 0; i < coords.length; i++) {
+				hash = mixFingerprint(hash, quantise(coords[i], eps));
+			}
+		}
+		return hash;
+	}
+
+	/** hash of the shape type and the eps-cell of the first coordinate pair.
+	 * 
+	 * Used for tolerant lookups; (dx, dy) offset the cell so that neighbouring cells can be probed.
+	 * 
+	 * @param eps size of cell
+	 * @param dx cell offset in x
+	 * @param dy cell offset in y
+	 * @return key
+	 */
+	public long getGeometricAnchorKey(double eps, int dx, int dy) {
+		double[] coords = getGeometricCoordinates();
+		long hash = mixFingerprint(FINGERPRINT_SEED, String.valueOf(getGeometricTypeKey()).hashCode());
+		hash = mixFingerprint(hash, coords == null ? -1 : coords.length);
+		if (coords != null && coords.length > 0) {
+			hash = mixFingerprint(hash, quantise(coords[0], eps) + dx);
+			hash = mixFingerprint(hash, coords.length > 1 ? quantise(coords[1], eps) + dy : dy);
+		}
+		return hash;
+	}
+
+	/** index of the eps-cell containing value.
+	 * 
+	 * @param value
+	 * @param eps
+	 * @return
+	 */
+	public static long quantise(double value, double eps) {
+		return Math.round(value / eps);
+	}
+
+	/** avalanche mix (from SplitMix64) so that neighbouring cells hash far apart.
+	 * 
+	 */
+	static long mixFingerprint(long hash, long value) {
+		long z = hash + value * 0xBF58476D1CE4E5B9L + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/** do the shapes have the same type and the same quantised coordinates.
+	 * 
+	 * Used to confirm fingerprint matches.
+	 * 
+	 * @param shape
+	 * @param eps
+	 * @return
+	 */
+	public boolean hasEqualGeometry(SVGShape shape, double eps) {
+		if (shape == null || !String.valueOf(getGeometricTypeKey()).equals(String.valueOf(shape.getGeometricTypeKey()))) {
+			return false;
+		}
+		double[] coords = getGeometricCoordinates();
+		double[] coords1 = shape.getGeometricCoordinates();
+		if (coords == null || coords1 == null) {
+			return coords == coords1 && String.valueOf(getGeometricHash()).equals(String.valueOf(shape.getGeometricHash()));
+		}
+		if (coords.length != coords1.length) {
+			return false;
+		}
+		for (int i = 0; i < coords.length; i++) {
+			if (quantise(coords[i], eps) != quantise(coords1[i], eps)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** do the shapes have the same type and all coordinates within eps.
+	 * 
+	 * @param shape
+	 * @param eps
+	 * @return
+	 */
+	public boolean isGeometricallyNear(SVGShape shape, double eps) {
+		if (shape == null || !String.valueOf(getGeometricTypeKey()).equals(String.valueOf(shape.getGeometricTypeKey()))) {
+			return false;
+		}
+		double[] coords = getGeometricCoordinates();
+		double[] coords1 = shape.getGeometricCoordinates();
+		if (coords == null || coords1 == null) {
+			return coords == coords1 && String.valueOf(getGeometricHash()).equals(String.valueOf(shape.getGeometricHash()));
+		}
+		if (coords.length != coords1.length) {
+			return false;
+		}
+		for (int i = 0; i < coords.length; i++) {
+			if (!(Math.abs(coords[i] - coords1[i]) <= eps)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void addAttribute(Attribute attribute) {
+		super.addAttribute(attribute);
+		geometryChanged();
+	}
+
+	@Override
+	public Attribute removeAttribute(Attribute attribute) {
+		geometryChanged();
+		return super.removeAttribute(attribute);
+	}
+
+	/** records a change to this shape.
+	 * 
+	 * called for every attribute change; subclasses must also call it when they change
+	 * geometry without changing attributes (e.g. cached coordinate arrays).
+	 */
+	protected void geometryChanged() {
+		clearGeometricFingerprint();
+		modificationCount++;
+	}
+
+	/** number of changes to this shape (attributes and geometry).
+	 * 
+	 * caches of geometry or style (e.g. in HitTester) compare this to detect changes.
+	 * 
+	 * @return
+	 */
+	public int getModificationCount() {
+		return modificationCount;
+	}
 	
 	/** makes a new list composed of the shapes in the list
 	 * 
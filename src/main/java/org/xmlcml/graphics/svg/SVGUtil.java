@@ -5,17 +5,21 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.log4j.Logger;
 import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Array;
 import org.xmlcml.euclid.Real2Range;
 import org.xmlcml.euclid.RealRange;
 import org.xmlcml.euclid.Transform2;
 import org.xmlcml.euclid.Vector2;
 import org.xmlcml.graphics.svg.linestuff.Path2ShapeConverter;
+import org.xmlcml.graphics.svg.util.GeometricHashIndex;
 import org.xmlcml.xml.XMLConstants;
 import org.xmlcml.xml.XMLUtil;
 
@@ -29,6 +33,8 @@ public class SVGUtil {
 
 	private static final String PX = "px";
 	private static final String TRANSFORMS_APPLIED = "transformsApplied";
+	/** default quantisation for removing duplicate shapes. */
+	public static final double DUPLICATE_EPS = 0.000001;
 	private static final Logger LOG = Logger.getLogger(SVGUtil.class);
 
 	/**
@@ -117,9 +123,24 @@ public class SVGUtil {
 	 * @param svgElements
 	 */
 	public static void applyCumulativeTransforms(List<SVGElement> svgElements) {
+		// runs of paths with the same transform (e.g. siblings) are transformed together
+		List<SVGPath> pathRun = new ArrayList<SVGPath>();
+		Transform2 runTransform = null;
 		for (SVGElement svgElement : svgElements) {
 			Transform2 t2 = svgElement.getCumulativeTransform();
-			svgElement.applyTransform(t2);
+			if (svgElement instanceof SVGPath) {
+				if (runTransform != null && !Arrays.equals(runTransform.getMatrixAsArray(), t2.getMatrixAsArray())) {
+					SVGPath.applyTransform(pathRun, runTransform);
+					pathRun.clear();
+				}
+				pathRun.add((SVGPath) svgElement);
+				runTransform = t2;
+			} else {
+				svgElement.applyTransform(t2);
+			}
+		}
+		if (runTransform != null) {
+			SVGPath.applyTransform(pathRun, runTransform);
 		}
 	}
 
@@ -292,81 +313,216 @@ public class SVGUtil {
 		return includedList;
 	}
 	
-	/** crude quick method to create list of non-Overlapping BoundingBoxes
-	 * use only for small number of paths
-	 * will only work if paths a
+	/** create list of non-overlapping BoundingBoxes.
+	 * 
+	 * Boxes which overlap (or touch) are replaced by their union, repeatedly, until no
+	 * two boxes overlap. Uses a sweep over xmin with union-find so can be used on 
+	 * pages with many thousands of elements. Boxes are returned in order of the first element 
+	 * that contributes to them. Elements without bounding boxes are skipped.
+	 * 
 	 * @return
 	 */
 	public static List<Real2Range> createNonOverlappingBoundingBoxList(List<? extends SVGElement> svgElementList) {
 		List<Real2Range> bboxList = new ArrayList<Real2Range>();
 		for (SVGElement element : svgElementList) {
 			Real2Range bbox = element.getBoundingBox();
-			if (bboxList.size() == 0) {
+			if (bbox != null) {
 				bboxList.add(bbox);
-			} else {
-				for (int i = 0; i < bboxList.size(); i++) {
-					Real2Range bbox1 = bboxList.get(i);
-					// merge into existing box
-					if (bbox != null && bbox1 != null && bbox.intersectionWith(bbox1) != null) {
-						bbox1 = bbox1.plus(bbox); 
-						bboxList.set(i, bbox1);
-						bbox = null;
-					}
-				}
-				if (bbox != null) {
-					bboxList.add(bbox);
-				}
 			}
 		}
-		contractOverLappingBoxes(bboxList);
-		return bboxList;
+		return mergeOverlappingBoxes(bboxList);
 	}
 
-	private static void contractOverLappingBoxes(List<Real2Range> bboxList) {
+	/** replaces overlapping or touching boxes by their unions until none overlap.
+	 * 
+	 * Each pass is a sweep-line over xmin; the active boxes (those crossing the sweep line) are pairwise 
+	 * disjoint in y and are held in a TreeMap on ymin, so each box only meets the boxes it can touch.
+	 * A union can grow to overlap a box which has already left the sweep, so passes are 
+	 * repeated until nothing merges; in practice one or two passes.
+	 * 
+	 * @param bboxList not modified
+	 * @return new list of non-overlapping boxes
+	 */
+	public static List<Real2Range> mergeOverlappingBoxes(List<Real2Range> bboxList) {
+		List<Real2Range> mergedList = new ArrayList<Real2Range>(bboxList);
 		while (true) {
-			Real2Range bboxi = null;
-			int detach = -1;
-			outer:
-			for (int i = 1; i < bboxList.size(); i++) {
-				bboxi = bboxList.get(i);
-				for (int j = 0; j < i; j++) {
-					Real2Range bboxj = bboxList.get(j);
-					// merge into existing box
-					if (bboxi.intersectionWith(bboxj) != null) {
-						bboxj = bboxj.plus(bboxi); 
-						bboxList.set(j, bboxj);
-						detach = i;
-						break outer;
+			int size = mergedList.size();
+			mergedList = mergeOverlappingBoxesInSweep(mergedList);
+			if (mergedList.size() == size) {
+				break;
+			}
+		}
+		return mergedList;
+	}
+
+	private static List<Real2Range> mergeOverlappingBoxesInSweep(List<Real2Range> bboxList) {
+		final int n = bboxList.size();
+		final double[] xmin = new double[n];
+		double[] xmax = new double[n];
+		double[] ymin = new double[n];
+		double[] ymax = new double[n];
+		int[] parent = new int[n];
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			Real2Range bbox = bboxList.get(i);
+			xmin[i] = bbox.getXMin();
+			xmax[i] = bbox.getXMax();
+			ymin[i] = bbox.getYMin();
+			ymax[i] = bbox.getYMax();
+			parent[i] = i;
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer i, Integer j) {
+				return Double.compare(xmin[i], xmin[j]);
+			}
+		});
+		// roots of active components keyed on ymin; disjoint in y
+		TreeMap<Double, Integer> active = new TreeMap<Double, Integer>();
+		for (int k = 0; k < n; k++) {
+			int root = order[k];
+			double sweepX = xmin[root];
+			boolean grown = true;
+			while (grown) {
+				grown = false;
+				Map.Entry<Double, Integer> floor = active.floorEntry(ymin[root]);
+				List<Integer> hits = new ArrayList<Integer>();
+				if (floor != null && ymax[floor.getValue()] >= ymin[root]) {
+					hits.add(floor.getValue());
+				}
+				hits.addAll(active.subMap(ymin[root], false, ymax[root], true).values());
+				for (Integer hit : hits) {
+					active.remove(ymin[hit]);
+					if (xmax[hit] >= sweepX) {
+						// union; the lower index becomes the root so document order is kept
+						int newRoot = Math.min(root, hit);
+						int child = Math.max(root, hit);
+						parent[child] = newRoot;
+						xmin[newRoot] = Math.min(xmin[root], xmin[hit]);
+						xmax[newRoot] = Math.max(xmax[root], xmax[hit]);
+						ymin[newRoot] = Math.min(ymin[root], ymin[hit]);
+						ymax[newRoot] = Math.max(ymax[root], ymax[hit]);
+						root = newRoot;
+						grown = true;
 					}
 				}
 			}
-			if (detach >= 0) {
-				bboxList.remove(detach);
-			} else {
-				break;
+			active.put(ymin[root], root);
+		}
+		List<Real2Range> mergedList = new ArrayList<Real2Range>();
+		for (int i = 0; i < n; i++) {
+			if (parent[i] == i) {
+				mergedList.add(new Real2Range(new RealRange(xmin[i], xmax[i]), new RealRange(ymin[i], ymax[i])));
 			}
 		}
+		return mergedList;
 	}
-	
+
+	/** packs coordinates as x0, y0, x1, y1...
+	 * 
+	 * @param r2a
+	 * @return null if r2a is null
+	 */
+	public static double[] createInterleavedXYArray(Real2Array r2a) {
+		if (r2a == null) {
+			return null;
+		}
+		int size = r2a.size();
+		double[] xx = r2a.getXArray().getArray();
+		double[] yy = r2a.getYArray().getArray();
+		double[] xy = new double[2 * size];
+		for (int i = 0; i < size; i++) {
+			xy[2 * i] = xx[i];
+			xy[2 * i + 1] = yy[i];
+		}
+		return xy;
+	}
+
+	/** applies t2 in place to coordinates packed as x0, y0, x1, y1...
+	 * 
+	 * same arithmetic as Real2.transformBy(); a single loop without objects.
+	 * 
+	 * @param xy
+	 * @param t2
+	 */
+	public static void transformInterleavedXYArray(double[] xy, Transform2 t2) {
+		double[][] m = t2.getMatrix();
+		double m00 = m[0][0];
+		double m01 = m[0][1];
+		double m02 = m[0][2];
+		double m10 = m[1][0];
+		double m11 = m[1][1];
+		double m12 = m[1][2];
+		for (int i = 0; i < xy.length - 1; i += 2) {
+			double x = xy[i];
+			double y = xy[i + 1];
+			xy[i] = m00 * x + m01 * y + m02;
+			xy[i + 1] = m10 * x + m11 * y + m12;
+		}
+	}
+
+	/** rounds packed coordinates in place to places decimals.
+	 * 
+	 * as Util.format(double, int) but without its int overflow for places &gt; 9;
+	 * SVGPathPrimitive.format() uses this too.
+	 * 
+	 * @param xy
+	 * @param places
+	 */
+	public static void formatInterleavedXYArray(double[] xy, int places) {
+		double scale = Math.pow(10.0, places);
+		for (int i = 0; i < xy.length; i++) {
+			xy[i] = Math.round(xy[i] * scale) / scale;
+		}
+	}
+
 	/**
 	 * Many shapes / paths are drawn twice; if two or more are equal, remove the later one(s)
 	 * 
+	 * Uses numeric fingerprints quantised to DUPLICATE_EPS.
+	 * 
 	 * @param shapeList
 	 * @return
 	 */
 	public static List<SVGShape> removeDuplicateShapes(List<SVGShape> shapeList) {
+		return removeDuplicateShapes(shapeList, DUPLICATE_EPS);
+	}
+
+	/**
+	 * Many shapes / paths are drawn twice; if two or more are equal, remove the later one(s)
+	 * 
+	 * Shapes are equal if they have the same type and coordinates in the same eps-cells
+	 * (see SVGShape.getGeometricFingerprint()).
+	 * 
+	 * @param shapeList
+	 * @param eps quantisation of coordinates
+	 * @return
+	 */
+	public static List<SVGShape> removeDuplicateShapes(List<SVGShape> shapeList, double eps) {
+		return removeDuplicateShapes(shapeList, new GeometricHashIndex(eps));
+	}
+
+	/**
+	 * Removes later shapes whose coordinates are all within eps of an earlier shape of the same type.
+	 * 
+	 * @param shapeList
+	 * @param eps tolerance
+	 * @return
+	 */
+	public static List<SVGShape> removeNearDuplicateShapes(List<SVGShape> shapeList, double eps) {
+		return removeDuplicateShapes(shapeList, new GeometricHashIndex(eps, true));
+	}
+
+	private static List<SVGShape> removeDuplicateShapes(List<SVGShape> shapeList, GeometricHashIndex index) {
 		if (shapeList != null) {
-			Set<String> dStringSet = new HashSet<String>();
 			int count = 0;
 			List<SVGShape> newPathList = new ArrayList<SVGShape>();
 			for (SVGShape shape : shapeList) {
-				String dString = shape.getGeometricHash();
-				if (dStringSet.contains(dString)) {
-					LOG.trace("Detached a duplicate path "+dString);
+				if (index.addIfAbsent(shape) != null) {
+					LOG.trace("Detached a duplicate path "+shape.getGeometricHash());
 					shape.detach();
 					count++;
 				} else {
-					dStringSet.add(dString);
 					newPathList.add(shape);
 				}
 			}
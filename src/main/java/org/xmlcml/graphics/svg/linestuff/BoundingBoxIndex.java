@@ -0,0 +1,295 @@
+package org.xmlcml.graphics.svg.linestuff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.graphics.svg.SVGElement;
+
+/** static spatial index over a list of bounding boxes.
+ *
+ * <p>
+ * A packed R-tree built by Sort-Tile-Recursive: boxes are sorted into vertical
+ * slices by centre x, each slice is sorted by centre y and runs of NODE_SIZE boxes
+ * become leaves. Upper levels are packed the same way. All coordinates are held
+ * in primitive arrays, so queries do not create Real2Ranges.
+ * </p>
+ * <p>
+ * Queries return the indexes of the boxes in the original list, in ascending order.
+ * Null boxes are never returned. Intersection includes touching edges (as Real2Range.intersectionWith).
+ * The index is immutable; rebuild it if the boxes change.
+ * </p>
+ *
+ * @author pm286
+ *
+ */
+public class BoundingBoxIndex {
+
+	private final static Logger LOG = Logger.getLogger(BoundingBoxIndex.class);
+
+	private static final int NODE_SIZE = 16;
+
+	private int size;
+	/** level 0 holds the boxes in packed order; the last level is the root */
+	private double[][] xmin;
+	private double[][] xmax;
+	private double[][] ymin;
+	private double[][] ymax;
+	/** packed position of level 0 to index in original list */
+	private int[] original;
+
+	public BoundingBoxIndex(List<Real2Range> bboxList) {
+		List<Integer> valid = new ArrayList<Integer>();
+		for (int i = 0; i < bboxList.size(); i++) {
+			Real2Range bbox = bboxList.get(i);
+			if (bbox != null && bbox.getXRange() != null && bbox.getYRange() != null) {
+				valid.add(i);
+			}
+		}
+		size = bboxList.size();
+		int n = valid.size();
+		double[] cx = new double[n];
+		double[] cy = new double[n];
+		double[] x0 = new double[n];
+		double[] x1 = new double[n];
+		double[] y0 = new double[n];
+		double[] y1 = new double[n];
+		for (int i = 0; i < n; i++) {
+			Real2Range bbox = bboxList.get(valid.get(i));
+			x0[i] = bbox.getXMin();
+			x1[i] = bbox.getXMax();
+			y0[i] = bbox.getYMin();
+			y1[i] = bbox.getYMax();
+			cx[i] = (x0[i] + x1[i]) / 2.0;
+			cy[i] = (y0[i] + y1[i]) / 2.0;
+		}
+		int[] packed = createSTROrder(cx, cy);
+		original = new int[n];
+		List<double[][]> levels = new ArrayList<double[][]>();
+		double[][] level = new double[4][n];
+		for (int i = 0; i < n; i++) {
+			int j = packed[i];
+			original[i] = valid.get(j);
+			level[0][i] = x0[j];
+			level[1][i] = x1[j];
+			level[2][i] = y0[j];
+			level[3][i] = y1[j];
+		}
+		levels.add(level);
+		while (level[0].length > NODE_SIZE) {
+			level = createParentLevel(level);
+			levels.add(level);
+		}
+		int nlevels = levels.size();
+		xmin = new double[nlevels][];
+		xmax = new double[nlevels][];
+		ymin = new double[nlevels][];
+		ymax = new double[nlevels][];
+		for (int l = 0; l < nlevels; l++) {
+			xmin[l] = levels.get(l)[0];
+			xmax[l] = levels.get(l)[1];
+			ymin[l] = levels.get(l)[2];
+			ymax[l] = levels.get(l)[3];
+		}
+	}
+
+	/** index of the bounding boxes of elements.
+	 *
+	 * @param elementList
+	 * @return
+	 */
+	public static BoundingBoxIndex createIndex(List<? extends SVGElement> elementList) {
+		return new BoundingBoxIndex(BoundingBoxManager.createBBoxList(elementList));
+	}
+
+	/** number of boxes in the original list (including nulls).
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	/** boxes which intersect (or touch) region.
+	 *
+	 * @param region
+	 * @return indexes into original list
+	 */
+	public List<Integer> findIntersecting(Real2Range region) {
+		List<Integer> indexList = new ArrayList<Integer>();
+		if (region != null && region.getXRange() != null && region.getYRange() != null) {
+			for (int i : findIntersecting(region.getXMin(), region.getXMax(), region.getYMin(), region.getYMax())) {
+				indexList.add(i);
+			}
+		}
+		return indexList;
+	}
+
+	/** boxes which contain point (including on edge).
+	 *
+	 * @param point
+	 * @return indexes into original list
+	 */
+	public List<Integer> findContaining(Real2 point) {
+		List<Integer> indexList = new ArrayList<Integer>();
+		for (int i : findIntersecting(point.getX(), point.getX(), point.getY(), point.getY())) {
+			indexList.add(i);
+		}
+		return indexList;
+	}
+
+	/** boxes which intersect (or touch) the rectangle.
+	 *
+	 * @return indexes into original list, ascending
+	 */
+	public int[] findIntersecting(double qxmin, double qxmax, double qymin, double qymax) {
+		int[] result = new int[8];
+		int count = 0;
+		int top = xmin.length - 1;
+		if (xmin[0].length == 0) {
+			return new int[0];
+		}
+		// stack of (level, node)
+		int[] stackLevel = new int[64];
+		int[] stackNode = new int[64];
+		int sp = 0;
+		for (int i = 0; i < xmin[top].length; i++) {
+			if (overlaps(top, i, qxmin, qxmax, qymin, qymax)) {
+				if (sp == stackLevel.length) {
+					stackLevel = Arrays.copyOf(stackLevel, 2 * sp);
+					stackNode = Arrays.copyOf(stackNode, 2 * sp);
+				}
+				stackLevel[sp] = top;
+				stackNode[sp++] = i;
+			}
+		}
+		while (sp > 0) {
+			int level = stackLevel[--sp];
+			int node = stackNode[sp];
+			if (level == 0) {
+				if (count == result.length) {
+					result = Arrays.copyOf(result, 2 * count);
+				}
+				result[count++] = original[node];
+				continue;
+			}
+			int child = level - 1;
+			int end = Math.min((node + 1) * NODE_SIZE, xmin[child].length);
+			for (int c = node * NODE_SIZE; c < end; c++) {
+				if (overlaps(child, c, qxmin, qxmax, qymin, qymax)) {
+					if (sp == stackLevel.length) {
+						stackLevel = Arrays.copyOf(stackLevel, 2 * sp);
+						stackNode = Arrays.copyOf(stackNode, 2 * sp);
+					}
+					stackLevel[sp] = child;
+					stackNode[sp++] = c;
+				}
+			}
+		}
+		result = Arrays.copyOf(result, count);
+		Arrays.sort(result);
+		return result;
+	}
+
+	private boolean overlaps(int level, int node, double qxmin, double qxmax, double qymin, double qymax) {
+		return xmin[level][node] <= qxmax && xmax[level][node] >= qxmin &&
+				ymin[level][node] <= qymax && ymax[level][node] >= qymin;
+	}
+
+	private static double[][] createParentLevel(double[][] level) {
+		int n = level[0].length;
+		int parents = (n + NODE_SIZE - 1) / NODE_SIZE;
+		double[][] parent = new double[4][parents];
+		for (int p = 0; p < parents; p++) {
+			int start = p * NODE_SIZE;
+			int end = Math.min(start + NODE_SIZE, n);
+			double x0 = Double.POSITIVE_INFINITY;
+			double x1 = Double.NEGATIVE_INFINITY;
+			double y0 = Double.POSITIVE_INFINITY;
+			double y1 = Double.NEGATIVE_INFINITY;
+			for (int i = start; i < end; i++) {
+				x0 = Math.min(x0, level[0][i]);
+				x1 = Math.max(x1, level[1][i]);
+				y0 = Math.min(y0, level[2][i]);
+				y1 = Math.max(y1, level[3][i]);
+			}
+			parent[0][p] = x0;
+			parent[1][p] = x1;
+			parent[2][p] = y0;
+			parent[3][p] = y1;
+		}
+		return parent;
+	}
+
+	/** Sort-Tile-Recursive order of points.
+	 *
+	 */
+	private static int[] createSTROrder(double[] cx, double[] cy) {
+		int n = cx.length;
+		int[] order = createSortedIndex(cx);
+		int leaves = (n + NODE_SIZE - 1) / NODE_SIZE;
+		int slices = (int) Math.ceil(Math.sqrt(leaves));
+		int sliceSize = Math.max(1, slices * NODE_SIZE);
+		for (int start = 0; start < n; start += sliceSize) {
+			int end = Math.min(start + sliceSize, n);
+			sortIndexByKey(order, start, end, cy);
+		}
+		return order;
+	}
+
+	/** indexes of key in ascending order of key; stable.
+	 *
+	 * @param key
+	 * @return
+	 */
+	public static int[] createSortedIndex(double[] key) {
+		int[] index = new int[key.length];
+		for (int i = 0; i < index.length; i++) {
+			index[i] = i;
+		}
+		sortIndexByKey(index, 0, index.length, key);
+		return index;
+	}
+
+	/** stable merge sort of index[from..to) by key[index[i]] without boxing.
+	 *
+	 * @param index
+	 * @param from
+	 * @param to exclusive
+	 * @param key
+	 */
+	public static void sortIndexByKey(int[] index, int from, int to, double[] key) {
+		int n = to - from;
+		if (n < 2) {
+			return;
+		}
+		int[] buffer = new int[n];
+		int[] src = Arrays.copyOfRange(index, from, to);
+		int[] dst = buffer;
+		for (int width = 1; width < n; width *= 2) {
+			for (int lo = 0; lo < n; lo += 2 * width) {
+				int mid = Math.min(lo + width, n);
+				int hi = Math.min(lo + 2 * width, n);
+				int i = lo;
+				int j = mid;
+				int k = lo;
+				while (i < mid && j < hi) {
+					dst[k++] = (Double.compare(key[src[j]], key[src[i]]) < 0) ? src[j++] : src[i++];
+				}
+				while (i < mid) {
+					dst[k++] = src[i++];
+				}
+				while (j < hi) {
+					dst[k++] = src[j++];
+				}
+			}
+			int[] temp = src;
+			src = dst;
+			dst = temp;
+		}
+		System.arraycopy(src, 0, index, from, n);
+	}
+}
@@ -2,8 +2,7 @@ package org.xmlcml.graphics.svg.linestuff;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 
@@ -92,6 +91,11 @@ public class BoundingBoxManager {
 	private List<Real2Range> bboxList;
 	private Real2Range totalBox = null;
 	private List<SVGElement> elementList;
+	/** per-edge indexes of non-null boxes, sorted by that edge */
+	private Map<BoxEdge, int[]> sortedIndexByEdge;
+	/** per-orientation disjoint covered intervals (min0, max0, min1, max1...) */
+	private Map<LineOrientation, double[]> coverageByOrientation;
+	private BoundingBoxIndex boundingBoxIndex;
 
 
 	public BoundingBoxManager() {
@@ -155,11 +159,24 @@ public class BoundingBoxManager {
 	
 	public void setBBoxList(List<Real2Range> bboxList) {
 		this.bboxList = bboxList;
+		clearIndexes();
 	}
 	
 	public void add(Real2Range r2r) {
 		ensureBoundingBoxList();
 		bboxList.add(r2r);
+		clearIndexes();
+	}
+
+	/** clears sorted edges, coverage and spatial index.
+	 * 
+	 * Must be called if boxes in the list are altered directly.
+	 */
+	public void clearIndexes() {
+		sortedIndexByEdge = null;
+		coverageByOrientation = null;
+		boundingBoxIndex = null;
+		totalBox = null;
 	}
 	
 	private void ensureBoundingBoxList() {
@@ -178,37 +195,57 @@ public class BoundingBoxManager {
 	 * @return
 	 */
 	private List<Real2Range> getBoxesSortedByEdge(BoxEdge edge) {
-		if (bboxList == null) {
+		int[] sortedIndex = getSortedIndex(edge);
+		if (sortedIndex == null) {
 			LOG.trace("Null bboxList in BBManager");
 			return null;
 		}
-		List<Real2Range> sortedList = new ArrayList<Real2Range>();
-		Map<Integer, List<Real2Range>> bboxByXmin = new HashMap<Integer, List<Real2Range>>();
-		for (Real2Range bbox : bboxList) {
-			if (bbox != null) {
-				Double dCoord = edge.getCoord(bbox); 
-				if (dCoord != null) {
-					Integer coord = (int) Math.round(dCoord); 
-					List<Real2Range> bList = bboxByXmin.get(coord);
-					if (bList == null) {
-						bList = new ArrayList<Real2Range>();
-						bboxByXmin.put(coord, bList);
-					}
-					bList.add(bbox);
-				}
-			} else {
-//				System.err.println("null bbox");
-			}
+		List<Real2Range> sortedList = new ArrayList<Real2Range>(sortedIndex.length);
+		for (int i : sortedIndex) {
+			sortedList.add(bboxList.get(i));
 		}
-		Integer[] ii = bboxByXmin.keySet().toArray(new Integer[bboxByXmin.size()]);
-		Arrays.sort(ii);
-		for (int i : ii) {
-			List<Real2Range> bList = bboxByXmin.get(i);
-			for (Real2Range bbox : bList) {
-				sortedList.add(bbox);
+		return sortedList;
+	}
+
+	/** indexes of the non-null boxes sorted (stably) by edge.
+	 * 
+	 * Cached until the box list changes.
+	 * 
+	 * @param edge
+	 * @return null if no boxList
+	 */
+	private int[] getSortedIndex(BoxEdge edge) {
+		if (bboxList == null) {
+			return null;
+		}
+		if (sortedIndexByEdge == null) {
+			sortedIndexByEdge = new EnumMap<BoxEdge, int[]>(BoxEdge.class);
+		}
+		int[] sortedIndex = sortedIndexByEdge.get(edge);
+		if (sortedIndex == null) {
+			double[] coords = getCoords(edge);
+			int[] index = BoundingBoxIndex.createSortedIndex(coords);
+			// NaN (null boxes or ranges) sort last; drop them
+			int count = 0;
+			while (count < index.length && !Double.isNaN(coords[index[count]])) {
+				count++;
 			}
+			sortedIndex = Arrays.copyOf(index, count);
+			sortedIndexByEdge.put(edge, sortedIndex);
 		}
-		return sortedList;
+		return sortedIndex;
+	}
+
+	/** coordinate of edge for each box, NaN if box is null.
+	 * 
+	 */
+	private double[] getCoords(BoxEdge edge) {
+		double[] coords = new double[bboxList.size()];
+		for (int i = 0; i < coords.length; i++) {
+			Double coord = edge.getCoord(bboxList.get(i));
+			coords[i] = (coord == null) ? Double.NaN : coord;
+		}
+		return coords;
 	}
 
 	/* sorts elements by the boxEdge
@@ -217,22 +254,10 @@ public class BoundingBoxManager {
 	 */
 	public static List<SVGElement> getElementsSortedByEdge(List<? extends SVGElement> elementList, BoxEdge edge) {
 		List<SVGElement> sortedList = new ArrayList<SVGElement>();
-		List<Real2Range> bboxList = new ArrayList<Real2Range>();
-		Map<Real2Range, SVGElement> elementByBBox = new HashMap<Real2Range, SVGElement>();
-		for (SVGElement element : elementList) {
-			Real2Range bbox = element.getBoundingBox();
-			elementByBBox.put(bbox, element);
-			bboxList.add(bbox);
-		}
 		BoundingBoxManager boundingBoxManager = new BoundingBoxManager();
-		boundingBoxManager.setBBoxList(bboxList);
-		List<Real2Range> bboxList1 = boundingBoxManager.getBoxesSortedByEdge(edge);
-		for (Real2Range bbox : bboxList1) {
-			SVGElement element1 = elementByBBox.get(bbox); 
-			if (element1 == null) {
-				throw new RuntimeException("rewrite!!");
-			}
-			sortedList.add(element1);
+		boundingBoxManager.setBBoxList(createBBoxList(elementList));
+		for (int i : boundingBoxManager.getSortedIndex(edge)) {
+			sortedList.add(elementList.get(i));
 		}
 		return sortedList;
 	}
@@ -245,19 +270,18 @@ public class BoundingBoxManager {
 	 * @return
 	 */
 	public List<Real2Range> createEmptyBoxList(BoxEdge edge) {
-		List<Real2Range> sortedBoxes = getBoxesSortedByEdge(edge);
-		if (sortedBoxes == null) {
+		int[] sortedIndex = getSortedIndex(edge);
+		if (sortedIndex == null) {
 			return null;
 		}
 		RealRange otherEdge = getRangeForOtherEdge(edge);
+		double[] rear = getCoords(edge);
+		double[] front = getCoords(edge.getOppositeEdge());
 		List<Real2Range> emptyBoxList = new ArrayList<Real2Range>();
-		Double frontOfLastBox = 0.;
-		Iterator<Real2Range> boxIterator = sortedBoxes.iterator();
-		while (boxIterator.hasNext()) {
-			Real2Range box = boxIterator.next();
-			RealRange xrange = box.getXRange();
-			Double rearOfCurrentBox = edge.getCoord(box);
-			Double frontOfCurrentBox = edge.getCoordAtOppositeEndOfBox(box);
+		double frontOfLastBox = 0.;
+		for (int i : sortedIndex) {
+			double rearOfCurrentBox = rear[i];
+			double frontOfCurrentBox = front[i];
 			if (frontOfCurrentBox < frontOfLastBox) {
 				// box is behind the dark front
 			} else if (rearOfCurrentBox <= frontOfLastBox) {
@@ -273,6 +297,158 @@ public class BoundingBoxManager {
 		return emptyBoxList;
 	}
 
+	/**
+	 * whitespace ranges along the direction of edge (X for XMIN/XMAX) which lie within range.
+	 * 
+	 * Uses the union of all boxes projected onto the axis; this is computed once and held as 
+	 * a sorted primitive array, so each query is a binary search (O(log n + number of gaps)).
+	 * Gaps are clipped to range; the parts of range before the first box and after the last
+	 * box are included.
+	 * 
+	 * @param edge any edge of the required axis
+	 * @param range limits of the query
+	 * @return empty list if none; null if no boxes
+	 */
+	public List<RealRange> createEmptyRangeList(BoxEdge edge, RealRange range) {
+		double[] coverage = getCoverage(edge.getOrientation());
+		if (coverage == null || range == null) {
+			return null;
+		}
+		List<RealRange> emptyRangeList = new ArrayList<RealRange>();
+		double lo = range.getMin();
+		double hi = range.getMax();
+		int nintervals = coverage.length / 2;
+		// first covered interval whose max >= lo
+		int low = 0;
+		int high = nintervals;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (coverage[2 * mid + 1] < lo) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		double start = lo;
+		for (int i = low; i < nintervals && start < hi; i++) {
+			double min = coverage[2 * i];
+			if (min > hi) {
+				break;
+			}
+			if (min > start) {
+				emptyRangeList.add(new RealRange(start, min));
+			}
+			start = Math.max(start, coverage[2 * i + 1]);
+		}
+		if (start < hi) {
+			emptyRangeList.add(new RealRange(start, hi));
+		}
+		return emptyRangeList;
+	}
+
+	/**
+	 * whitespace corridors within a sub-region of the page.
+	 * 
+	 * Only boxes which intersect region are considered; the boxes are found with a 
+	 * BoundingBoxIndex (packed R-tree) so cost depends on the number of boxes in region,
+	 * not on the page. Corridors span the region in the other direction and include 
+	 * any margins at the ends of region.
+	 * 
+	 * @param edge any edge of the required axis (X for XMIN/XMAX)
+	 * @param region
+	 * @return empty list if none; null if no boxes
+	 */
+	public List<Real2Range> createEmptyBoxList(BoxEdge edge, Real2Range region) {
+		if (bboxList == null || region == null) {
+			return null;
+		}
+		boolean isX = LineOrientation.HORIZONTAL.equals(edge.getOrientation());
+		RealRange range = isX ? region.getXRange() : region.getYRange();
+		RealRange otherRange = isX ? region.getYRange() : region.getXRange();
+		List<Integer> indexList = getBoundingBoxIndex().findIntersecting(region);
+		int n = indexList.size();
+		double[] mins = new double[n];
+		double[] maxs = new double[n];
+		for (int i = 0; i < n; i++) {
+			RealRange boxRange = isX ? bboxList.get(indexList.get(i)).getXRange() : bboxList.get(indexList.get(i)).getYRange();
+			mins[i] = boxRange.getMin();
+			maxs[i] = boxRange.getMax();
+		}
+		double[] coverage = mergeIntervals(mins, maxs);
+		List<Real2Range> emptyBoxList = new ArrayList<Real2Range>();
+		double start = range.getMin();
+		for (int i = 0; i < coverage.length; i += 2) {
+			if (coverage[i] > start) {
+				emptyBoxList.add(createBox(start, Math.min(coverage[i], range.getMax()), edge, otherRange));
+			}
+			start = Math.max(start, coverage[i + 1]);
+		}
+		if (start < range.getMax()) {
+			emptyBoxList.add(createBox(start, range.getMax(), edge, otherRange));
+		}
+		return emptyBoxList;
+	}
+
+	/** spatial index of the boxes; cached until the box list changes.
+	 * 
+	 * @return
+	 */
+	public BoundingBoxIndex getBoundingBoxIndex() {
+		if (boundingBoxIndex == null) {
+			ensureBoundingBoxList();
+			boundingBoxIndex = new BoundingBoxIndex(bboxList);
+		}
+		return boundingBoxIndex;
+	}
+
+	private double[] getCoverage(LineOrientation orientation) {
+		if (bboxList == null) {
+			return null;
+		}
+		if (coverageByOrientation == null) {
+			coverageByOrientation = new EnumMap<LineOrientation, double[]>(LineOrientation.class);
+		}
+		double[] coverage = coverageByOrientation.get(orientation);
+		if (coverage == null) {
+			BoxEdge minEdge = LineOrientation.HORIZONTAL.equals(orientation) ? BoxEdge.XMIN : BoxEdge.YMIN;
+			int[] sortedIndex = getSortedIndex(minEdge);
+			double[] mins = getCoords(minEdge);
+			double[] maxs = getCoords(minEdge.getOppositeEdge());
+			double[] sortedMins = new double[sortedIndex.length];
+			double[] sortedMaxs = new double[sortedIndex.length];
+			for (int i = 0; i < sortedIndex.length; i++) {
+				sortedMins[i] = mins[sortedIndex[i]];
+				sortedMaxs[i] = maxs[sortedIndex[i]];
+			}
+			coverage = mergeIntervals(sortedMins, sortedMaxs);
+			coverageByOrientation.put(orientation, coverage);
+		}
+		return coverage;
+	}
+
+	/** merges intervals into disjoint sorted intervals.
+	 * 
+	 * touching intervals are merged.
+	 * 
+	 * @param mins
+	 * @param maxs
+	 * @return min0, max0, min1, max1 ...
+	 */
+	private static double[] mergeIntervals(double[] mins, double[] maxs) {
+		int[] index = BoundingBoxIndex.createSortedIndex(mins);
+		double[] merged = new double[2 * mins.length];
+		int count = 0;
+		for (int i : index) {
+			if (count > 0 && mins[i] <= merged[count - 1]) {
+				merged[count - 1] = Math.max(merged[count - 1], maxs[i]);
+			} else {
+				merged[count++] = mins[i];
+				merged[count++] = maxs[i];
+			}
+		}
+		return Arrays.copyOf(merged, count);
+	}
+
 	private Real2Range createBox(Double coord0, Double coord1, BoxEdge edge, RealRange otherRange) {
 		Real2Range box = null;
 		RealRange range = new RealRange(coord0, coord1);
@@ -504,18 +504,129 @@ public class ComplexLine {
 		return "B"+backbone.getId();
 	}
 
+	/** creates ComplexLines with joints from otherLines.
+	 * 
+	 * Only lines perpendicular to a backbone can form joints, so otherLines are
+	 * indexed by position (x for vertical, y for horizontal) and each backbone
+	 * only tests the lines lying within eps of its extent. Joints are added in 
+	 * the order of otherLines, as addLines(otherLines).
+	 * 
+	 * @param lines backbones
+	 * @param otherLines candidate joints
+	 * @param eps
+	 * @return
+	 */
 	public static List<ComplexLine> createComplexLines(List<SVGLine> lines, List<SVGLine> otherLines, double eps) {
 		List<ComplexLine> complexLineList = new ArrayList<ComplexLine>();
+		LinePositionIndex verticalIndex = null;
+		LinePositionIndex horizontalIndex = null;
+		if (otherLines != null) {
+			verticalIndex = new LinePositionIndex(otherLines, LineOrientation.VERTICAL, eps);
+			horizontalIndex = new LinePositionIndex(otherLines, LineOrientation.HORIZONTAL, eps);
+		}
 		for (SVGLine line : lines) {
 			ComplexLine complexLine = ComplexLine.createComplexLine(line, eps);
 			if (complexLine != null) {
-				complexLine.addLines(otherLines);
+				if (otherLines == null) {
+					complexLine.addLines(null);
+				} else {
+					LinePositionIndex index = LineOrientation.HORIZONTAL.equals(complexLine.backboneOrientation) ?
+							verticalIndex : horizontalIndex;
+					complexLine.addLines(otherLines, index.findCandidates(line));
+				}
 				complexLineList.add(complexLine);
 			}
 		}
 		return complexLineList;
 	}
 
+	/** creates joints from a subset of lines.
+	 * 
+	 * @param lines
+	 * @param candidates ascending indexes into lines
+	 * @return
+	 */
+	private List<Joint> addLines(List<SVGLine> lines, int[] candidates) {
+		jointList = new ArrayList<Joint>();
+		for (int i : candidates) {
+			this.addLine(lines.get(i));
+		}
+		return jointList;
+	}
+
+	/** lines of one orientation sorted by position across the line.
+	 * 
+	 * Vertical lines are keyed by xmin and horizontal by ymin. Their width
+	 * across is at most eps (as getLineOrientation()).
+	 */
+	private static class LinePositionIndex {
+		
+		private LineOrientation orientation;
+		private double eps;
+		private int[] lineIndexes;
+		private double[] positions;
+		
+		LinePositionIndex(List<SVGLine> lines, LineOrientation orientation, double eps) {
+			this.orientation = orientation;
+			this.eps = eps;
+			int[] indexes = new int[lines.size()];
+			double[] coords = new double[lines.size()];
+			int count = 0;
+			for (int i = 0; i < lines.size(); i++) {
+				SVGLine line = lines.get(i);
+				if (orientation.equals(getLineOrientation(line, eps))) {
+					Real2Range bbox = line.getBoundingBox();
+					indexes[count] = i;
+					coords[count++] = getPosition(bbox);
+				}
+			}
+			coords = Arrays.copyOf(coords, count);
+			int[] sorted = BoundingBoxIndex.createSortedIndex(coords);
+			lineIndexes = new int[count];
+			positions = new double[count];
+			for (int i = 0; i < count; i++) {
+				lineIndexes[i] = indexes[sorted[i]];
+				positions[i] = coords[sorted[i]];
+			}
+		}
+
+		private double getPosition(Real2Range bbox) {
+			return LineOrientation.VERTICAL.equals(orientation) ? bbox.getXMin() : bbox.getYMin();
+		}
+		
+		/** lines whose position could meet backbone.
+		 * 
+		 * horizontalAndVerticalLinesMeet() extends both ranges by eps and the line 
+		 * may be eps wide; a further eps allows for rounding.
+		 * 
+		 * @param backbone
+		 * @return ascending indexes into original list
+		 */
+		int[] findCandidates(SVGLine backbone) {
+			Real2Range bbox = backbone.getBoundingBox();
+			RealRange range = LineOrientation.VERTICAL.equals(orientation) ? bbox.getXRange() : bbox.getYRange();
+			double low = range.getMin() - 4 * eps;
+			double high = range.getMax() + 3 * eps;
+			int start = 0;
+			int end = positions.length;
+			while (start < end) {
+				int mid = (start + end) >>> 1;
+				if (positions[mid] < low) {
+					start = mid + 1;
+				} else {
+					end = mid;
+				}
+			}
+			end = start;
+			while (end < positions.length && positions[end] <= high) {
+				end++;
+			}
+			int[] candidates = Arrays.copyOfRange(lineIndexes, start, end);
+			Arrays.sort(candidates);
+			return candidates;
+		}
+	}
+
 	static List<SVGLine> extractLineList(List<ComplexLine> complexLines) {
 		List<SVGLine> lines = new ArrayList<SVGLine>(); 
 		for (ComplexLine complexLine : complexLines) {
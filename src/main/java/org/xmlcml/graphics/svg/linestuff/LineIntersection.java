@@ -0,0 +1,250 @@
+package org.xmlcml.graphics.svg.linestuff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.graphics.svg.SVGLine;
+
+/** crossing of two lines in a list, and bulk detection of all crossings.
+ *
+ * <p>
+ * findAllIntersections() replaces pairwise getIntersection() calls. Horizontal and vertical lines
+ * (the usual case in tables and axis grids) are crossed by a sweep along x: a vertical line queries the
+ * horizontals active at its x, held in a tree keyed by y, so the cost is O((n + k) log n) for k crossings.
+ * Every other line looks up its neighbours in a BoundingBoxIndex and is tested exactly.
+ * </p>
+ * <p>
+ * Segments cross if their infinite lines meet at a point within eps of both segments, so touching ends
+ * (T and L junctions) count. Parallel lines (including collinear overlapping ones) are not reported,
+ * as getIntersection() gives no point for them.
+ * </p>
+ *
+ * @author pm286
+ *
+ */
+public class LineIntersection implements Comparable<LineIntersection> {
+
+	private final static Logger LOG = Logger.getLogger(LineIntersection.class);
+
+	/** below this |sin(angle)| lines are treated as parallel */
+	private static final double PARALLEL_EPS = 1.0e-10;
+
+	private int index0;
+	private int index1;
+	private SVGLine line0;
+	private SVGLine line1;
+	private Real2 point;
+
+	public LineIntersection(int index0, SVGLine line0, int index1, SVGLine line1, Real2 point) {
+		this.index0 = index0;
+		this.line0 = line0;
+		this.index1 = index1;
+		this.line1 = line1;
+		this.point = point;
+	}
+
+	/** index of the first line in the list (always less than getIndex1()).
+	 */
+	public int getIndex0() {
+		return index0;
+	}
+
+	public int getIndex1() {
+		return index1;
+	}
+
+	public SVGLine getLine0() {
+		return line0;
+	}
+
+	public SVGLine getLine1() {
+		return line1;
+	}
+
+	public Real2 getPoint() {
+		return point;
+	}
+
+	public int compareTo(LineIntersection other) {
+		return index0 != other.index0 ? Integer.compare(index0, other.index0) : Integer.compare(index1, other.index1);
+	}
+
+	/** all pairs of lines which cross or touch.
+	 *
+	 * @param lines
+	 * @param eps tolerance for axis alignment and for meeting the segments
+	 * @return crossings sorted by first then second index
+	 */
+	public static List<LineIntersection> findAllIntersections(List<SVGLine> lines, double eps) {
+		int n = lines.size();
+		double[] xy = new double[4 * n];
+		int[] horizontals = new int[n];
+		int[] verticals = new int[n];
+		int[] others = new int[n];
+		int nh = 0;
+		int nv = 0;
+		int no = 0;
+		for (int i = 0; i < n; i++) {
+			double[] coords = lines.get(i).getGeometricCoordinates();
+			System.arraycopy(coords, 0, xy, 4 * i, 4);
+			boolean horizontal = Math.abs(coords[3] - coords[1]) < eps;
+			boolean vertical = Math.abs(coords[2] - coords[0]) < eps;
+			if (horizontal && !vertical) {
+				horizontals[nh++] = i;
+			} else if (vertical && !horizontal) {
+				verticals[nv++] = i;
+			} else {
+				others[no++] = i;
+			}
+		}
+		List<LineIntersection> intersectionList = new ArrayList<LineIntersection>();
+		addAxialIntersections(lines, xy, Arrays.copyOf(horizontals, nh), Arrays.copyOf(verticals, nv), eps, intersectionList);
+		addOtherIntersections(lines, xy, Arrays.copyOf(others, no), eps, intersectionList);
+		Collections.sort(intersectionList);
+		return intersectionList;
+	}
+
+	/** sweep along x; horizontals are active from xmin - eps to xmax + eps.
+	 *
+	 * events are sorted with starts before verticals before ends at the same x, so touching counts.
+	 */
+	private static void addAxialIntersections(List<SVGLine> lines, double[] xy, int[] horizontals, int[] verticals,
+			double eps, List<LineIntersection> intersectionList) {
+		if (horizontals.length == 0 || verticals.length == 0) {
+			return;
+		}
+		int nevents = 2 * horizontals.length + verticals.length;
+		double[] eventX = new double[nevents];
+		int[] eventLine = new int[nevents];
+		int[] eventType = new int[nevents];
+		int k = 0;
+		for (int h : horizontals) {
+			eventX[k] = Math.min(xy[4 * h], xy[4 * h + 2]) - eps;
+			eventLine[k] = h;
+			eventType[k++] = 0;
+			eventX[k] = Math.max(xy[4 * h], xy[4 * h + 2]) + eps;
+			eventLine[k] = h;
+			eventType[k++] = 2;
+		}
+		for (int v : verticals) {
+			eventX[k] = (xy[4 * v] + xy[4 * v + 2]) / 2.0;
+			eventLine[k] = v;
+			eventType[k++] = 1;
+		}
+		Integer[] order = new Integer[nevents];
+		for (int i = 0; i < nevents; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> eventX[a] != eventX[b] ? Double.compare(eventX[a], eventX[b]) :
+			Integer.compare(eventType[a], eventType[b]));
+		// active horizontals by y; several may share a y
+		TreeMap<Double, List<Integer>> active = new TreeMap<Double, List<Integer>>();
+		for (int e : order) {
+			int line = eventLine[e];
+			if (eventType[e] == 1) {
+				double x = eventX[e];
+				double ymin = Math.min(xy[4 * line + 1], xy[4 * line + 3]) - eps;
+				double ymax = Math.max(xy[4 * line + 1], xy[4 * line + 3]) + eps;
+				for (Map.Entry<Double, List<Integer>> entry : active.subMap(ymin, true, ymax, true).entrySet()) {
+					Real2 point = new Real2(x, entry.getKey());
+					for (int h : entry.getValue()) {
+						intersectionList.add(createIntersection(lines, h, line, point));
+					}
+				}
+			} else {
+				Double y = (xy[4 * line + 1] + xy[4 * line + 3]) / 2.0;
+				List<Integer> atY = active.get(y);
+				if (eventType[e] == 0) {
+					if (atY == null) {
+						atY = new ArrayList<Integer>(1);
+						active.put(y, atY);
+					}
+					atY.add(line);
+				} else {
+					atY.remove(Integer.valueOf(line));
+					if (atY.isEmpty()) {
+						active.remove(y);
+					}
+				}
+			}
+		}
+	}
+
+	/** each remaining line against every line whose box is within eps of its own.
+	 */
+	private static void addOtherIntersections(List<SVGLine> lines, double[] xy, int[] others,
+			double eps, List<LineIntersection> intersectionList) {
+		if (others.length == 0) {
+			return;
+		}
+		boolean[] isOther = new boolean[lines.size()];
+		for (int i : others) {
+			isOther[i] = true;
+		}
+		List<Real2Range> bboxList = new ArrayList<Real2Range>(lines.size());
+		for (int i = 0; i < lines.size(); i++) {
+			bboxList.add(new Real2Range(
+					new RealRange(Math.min(xy[4 * i], xy[4 * i + 2]), Math.max(xy[4 * i], xy[4 * i + 2])),
+					new RealRange(Math.min(xy[4 * i + 1], xy[4 * i + 3]), Math.max(xy[4 * i + 1], xy[4 * i + 3]))));
+		}
+		BoundingBoxIndex index = new BoundingBoxIndex(bboxList);
+		for (int i : others) {
+			Real2Range bbox = bboxList.get(i);
+			int[] candidates = index.findIntersecting(bbox.getXMin() - eps, bbox.getXMax() + eps,
+					bbox.getYMin() - eps, bbox.getYMax() + eps);
+			for (int j : candidates) {
+				// pairs of two other lines are tested once
+				if (j == i || (isOther[j] && j < i)) {
+					continue;
+				}
+				Real2 point = getSegmentIntersection(xy, i, j, eps);
+				if (point != null) {
+					intersectionList.add(createIntersection(lines, i, j, point));
+				}
+			}
+		}
+	}
+
+	private static LineIntersection createIntersection(List<SVGLine> lines, int i, int j, Real2 point) {
+		int i0 = Math.min(i, j);
+		int i1 = Math.max(i, j);
+		return new LineIntersection(i0, lines.get(i0), i1, lines.get(i1), point);
+	}
+
+	/** meeting point of segments i and j if within eps of both.
+	 *
+	 * @return null if parallel or too far
+	 */
+	static Real2 getSegmentIntersection(double[] xy, int i, int j, double eps) {
+		double x1 = xy[4 * i];
+		double y1 = xy[4 * i + 1];
+		double dx1 = xy[4 * i + 2] - x1;
+		double dy1 = xy[4 * i + 3] - y1;
+		double x3 = xy[4 * j];
+		double y3 = xy[4 * j + 1];
+		double dx2 = xy[4 * j + 2] - x3;
+		double dy2 = xy[4 * j + 3] - y3;
+		double length1 = Math.sqrt(dx1 * dx1 + dy1 * dy1);
+		double length2 = Math.sqrt(dx2 * dx2 + dy2 * dy2);
+		double denominator = dx1 * dy2 - dy1 * dx2;
+		if (!(Math.abs(denominator) > PARALLEL_EPS * length1 * length2)) {
+			return null;
+		}
+		double t = ((x3 - x1) * dy2 - (y3 - y1) * dx2) / denominator;
+		double u = ((x3 - x1) * dy1 - (y3 - y1) * dx1) / denominator;
+		double tEps = eps / length1;
+		double uEps = eps / length2;
+		if (t < -tEps || t > 1.0 + tEps || u < -uEps || u > 1.0 + uEps) {
+			return null;
+		}
+		return new Real2(x1 + t * dx1, y1 + t * dy1);
+	}
+}
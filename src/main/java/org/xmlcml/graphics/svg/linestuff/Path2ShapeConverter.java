@@ -10,7 +10,6 @@ import org.xmlcml.euclid.Angle.Units;
 import org.xmlcml.euclid.Real2;
 import org.xmlcml.euclid.Real2Array;
 import org.xmlcml.euclid.Real2Range;
-import org.xmlcml.euclid.RealArray;
 import org.xmlcml.graphics.svg.SVGCircle;
 import org.xmlcml.graphics.svg.SVGElement;
 import org.xmlcml.graphics.svg.SVGEllipse;
@@ -58,6 +57,7 @@ public class Path2ShapeConverter {
 	private static final String MCLC = "MCLC";
 
 	private static final double CIRCLE_EPS = 0.7;
+	private static final int MIN_POLYGON_CIRCLE_POINTS = 8;
 	private static final double MOVE_EPS = 0.001;
 	private static final double RECT_EPS = 0.03;
 	private static final double ROUNDED_BOX_EPS = 0.4;
@@ -168,18 +168,13 @@ public class Path2ShapeConverter {
 		if (makeRelativePathsAbsolute ) {
 			makeRelativePathsAbsolute(inputPathList);
 		}
-		if (removeRedundantLineCommands) {
-			inputPathList = removeRedundantLineCommands(inputPathList);
-		}
-		if (removeRedundantMoveCommands) {
-			inputPathList = removeRedundantMoveCommands(inputPathList);
-		}
-		List<List<SVGPath>> pathListList;
-		if (splitAtMoveCommands) {
-			pathListList = splitAtMoveCommands(inputPathList);
-		} else {
-			pathListList = new ArrayList<List<SVGPath>>();
-			for (SVGPath path : inputPathList) {
+		// each path is parsed once; clean-up, splitting and classification share its primitives
+		List<List<SVGPath>> pathListList = new ArrayList<List<SVGPath>>();
+		for (SVGPath path : inputPathList) {
+			removeRedundantCommands(path);
+			if (splitAtMoveCommands) {
+				pathListList.add(splitAtMoveCommands(path));
+			} else {
 				List<SVGPath> singlePath = new ArrayList<SVGPath>();
 				singlePath.add(path);
 				pathListList.add(singlePath);
@@ -250,20 +245,29 @@ public class Path2ShapeConverter {
 		return shapeList;
 	}
 
-	private static List<SVGPath> removeRedundantMoveCommands(List<SVGPath> pathList) {
-		List<SVGPath> newPaths = new ArrayList<SVGPath>();
-		for (SVGPath path : pathList) {
-			newPaths.add(removeRedundantMoveCommands(path, MOVE_EPS));
+	/** 
+	 * Applies the enabled clean-up rules to the primitives of the path in place
+	 * <p>
+	 * The path is parsed at most once (its primitives are cached) and d is only rewritten if primitives were removed.
+	 * 
+	 * @param path
+	 */
+	private void removeRedundantCommands(SVGPath path) {
+		if ((!removeRedundantLineCommands && !removeRedundantMoveCommands) || path.getDString() == null) {
+			return;
 		}
-		return newPaths;
-	}
-
-	private static List<SVGPath> removeRedundantLineCommands(List<SVGPath> pathList) {
-		List<SVGPath> newPaths = new ArrayList<SVGPath>();
-		for (SVGPath path : pathList) {
-			newPaths.add(removeRedundantLineCommands(path, MOVE_EPS));
+		PathPrimitiveList primitives = path.ensurePrimitives();
+		int removed = 0;
+		if (removeRedundantLineCommands) {
+			removed += removeRedundantLineCommands(primitives, MOVE_EPS);
+		}
+		if (removeRedundantMoveCommands) {
+			removed += removeRedundantMoveCommands(primitives, MOVE_EPS);
+		}
+		if (removed > 0) {
+			LOG.trace("Deleted "+removed+" redundant primitives");
+			path.setPrimitives(primitives);
 		}
-		return newPaths;
 	}
 
 	/** 
@@ -289,9 +293,12 @@ public class Path2ShapeConverter {
 		}
 		if (shape == null) {
 			SVGPolyline polyline = (SVGPolyline) path.createPolyline();
-			//Not a polyline, return unchanged path
+			//Not a polyline, try heuristics on the parsed path, else return unchanged path
 			if (polyline == null) {
-				shape = new SVGPath(path);
+				shape = applyHeuristics(path);
+				if (shape == path) {
+					shape = new SVGPath(path);
+				}
 			} else {
 				//SVG is a polyline, try the variants
 				//Is it a line?
@@ -320,9 +327,6 @@ public class Path2ShapeConverter {
 				}
 			}
 		}
-		if (shape instanceof SVGPath) {
-			shape = applyHeuristics((SVGPath)shape);
-		}
 		if (shape != null) {
 			// lines created from thin rects may have a different stroke-width to the original
 			Double strokeWidth = null;
@@ -568,19 +572,24 @@ public class Path2ShapeConverter {
 	public void removeRedundantMoveCommands() {
 		if (removeRedundantMoveCommands) {
 			for (SVGPath path : pathListIn) {
-				removeRedundantMoveCommands(path, MOVE_EPS);
+				if (path.getDString() != null) {
+					PathPrimitiveList primitives = path.ensurePrimitives();
+					if (removeRedundantMoveCommands(primitives, MOVE_EPS) > 0) {
+						path.setPrimitives(primitives);
+					}
+				}
 			}
 		}
 	}
 	
 	/** 
 	 * Runs convertPathsToShapes(List<SVGPath> pathList) and splitPolylinesToLines(List<SVGShape> shapeList); use after setting true/false flags if required
+	 * <p>
+	 * Clean-up and splitting at move commands are done by convertPathsToShapes in the same pass.
 	 */
 	@Deprecated
 	public void runAnalyses(List<SVGPath> pathList) {
 		pathListIn = pathList;
-		splitAtMoveCommands();
-		removeRedundantMoveCommands();
 		List<SVGShape> shapeList = convertPathsToShapes(pathListIn);
 		splitPolylinesToLines(shapeList);
 		removeDuplicatePaths();
@@ -592,90 +601,55 @@ public class Path2ShapeConverter {
 	
 	
 
-	private static SVGPath removeRedundantMoveCommands(SVGPath path, double eps) {
-		String d = path.getDString();
-		if (d != null) {
-			PathPrimitiveList newPrimitives = new PathPrimitiveList();
-			PathPrimitiveList primitives = SVGPathPrimitive.parseDString(d);
-			int primitiveCount = primitives.size();
-			SVGPathPrimitive lastPrimitive = null;
-			for (int i = 0; i < primitives.size(); i++) {
-				SVGPathPrimitive currentPrimitive = primitives.get(i);
-				boolean skip = false;
-				if (currentPrimitive instanceof MovePrimitive) {
-					if (i == primitives.size() - 1) { // final primitive
-						skip = true;
-					} else if (lastPrimitive != null) {
-						// move is to end of last primitive
-						Real2 lastLastCoord = lastPrimitive.getLastCoord();
-						Real2 currentFirstCoord = currentPrimitive.getFirstCoord();
-						skip = (lastLastCoord != null) && lastLastCoord.isEqualTo(currentFirstCoord, eps);
-					}
-					/*if (!skip && lastPrimitive != null) {
-						SVGPathPrimitive nextPrimitive = primitives.get(i + 1);
-						Real2 currentLastCoord = currentPrimitive.getLastCoord();
-						Real2 nextFirstCoord = nextPrimitive.getFirstCoord();
-						skip = (nextFirstCoord != null) && currentLastCoord.isEqualTo(nextFirstCoord, eps);
-					}*/
-				}
-				if (!skip) {
-					newPrimitives.add(currentPrimitive);
-				} else {
-					LOG.trace("skipped "+lastPrimitive+ "== "+currentPrimitive);
+	/** 
+	 * Removes move commands which are final or go to the end of the previous primitive
+	 * 
+	 * @param primitives modified in place
+	 * @param eps
+	 * @return number removed
+	 */
+	static int removeRedundantMoveCommands(PathPrimitiveList primitives, double eps) {
+		boolean[] remove = new boolean[primitives.size()];
+		SVGPathPrimitive lastPrimitive = null;
+		for (int i = 0; i < primitives.size(); i++) {
+			SVGPathPrimitive currentPrimitive = primitives.get(i);
+			if (currentPrimitive instanceof MovePrimitive) {
+				if (i == primitives.size() - 1) { // final primitive
+					remove[i] = true;
+				} else if (lastPrimitive != null) {
+					// move is to end of last primitive
+					Real2 lastLastCoord = lastPrimitive.getLastCoord();
+					Real2 currentFirstCoord = currentPrimitive.getFirstCoord();
+					remove[i] = (lastLastCoord != null) && lastLastCoord.isEqualTo(currentFirstCoord, eps);
 				}
-				lastPrimitive = currentPrimitive;
 			}
-			return createNewPathIfModified(path, d, newPrimitives, primitiveCount);
+			lastPrimitive = currentPrimitive;
 		}
-		return path;
+		return primitives.remove(remove);
 	}
 	
-	private static SVGPath removeRedundantLineCommands(SVGPath path, double eps) {
-		String d = path.getDString();
-		if (d != null) {
-			PathPrimitiveList newPrimitives = new PathPrimitiveList();
-			PathPrimitiveList primitives = SVGPathPrimitive.parseDString(d);
-			int primitiveCount = primitives.size();
-			SVGPathPrimitive lastPrimitive = null;
-			for (int i = 0; i < primitives.size(); i++) {
-				SVGPathPrimitive currentPrimitive = primitives.get(i);
-				boolean skip = false;
-				if (currentPrimitive instanceof LinePrimitive) {
-					if (lastPrimitive != null) {
-						Real2 lastLastCoord = lastPrimitive.getLastCoord();
-						Real2 currentFirstCoord = currentPrimitive.getFirstCoord();
-						skip = (lastLastCoord != null) && lastLastCoord.isEqualTo(currentFirstCoord, eps);
-					}
-				}
-				if (!skip) {
-					newPrimitives.add(currentPrimitive);
-				} else {
-					LOG.trace("skipped "+lastPrimitive+ "== "+currentPrimitive);
-				}
-				lastPrimitive = currentPrimitive;
+	/** 
+	 * Removes zero-length line commands
+	 * 
+	 * @param primitives modified in place
+	 * @param eps
+	 * @return number removed
+	 */
+	static int removeRedundantLineCommands(PathPrimitiveList primitives, double eps) {
+		boolean[] remove = new boolean[primitives.size()];
+		SVGPathPrimitive lastPrimitive = null;
+		for (int i = 0; i < primitives.size(); i++) {
+			SVGPathPrimitive currentPrimitive = primitives.get(i);
+			if (currentPrimitive instanceof LinePrimitive && lastPrimitive != null) {
+				Real2 lastLastCoord = lastPrimitive.getLastCoord();
+				Real2 currentFirstCoord = currentPrimitive.getFirstCoord();
+				remove[i] = (lastLastCoord != null) && lastLastCoord.isEqualTo(currentFirstCoord, eps);
 			}
-			return createNewPathIfModified(path, d, newPrimitives, primitiveCount);
+			lastPrimitive = currentPrimitive;
 		}
-		return path;
+		return primitives.remove(remove);
 	}
 
-	//TODO why not modify in place?
-	private static SVGPath createNewPathIfModified(SVGPath path, String d,
-			PathPrimitiveList newPrimitives, int primitiveCount) {
-		int newPrimitiveCount = newPrimitives.size();
-		if (newPrimitiveCount != primitiveCount) {
-			LOG.trace("Deleted "+(primitiveCount - newPrimitiveCount)+" redundant primitives");
-			String newD = SVGPath.constructDString(newPrimitives);
-			SVGPath newPath = new SVGPath(newD);
-			XMLUtil.copyAttributesFromTo(path, newPath);
-			newPath.setDString(newD);
-			//path.getParent().replaceChild(path, newPath);
-			LOG.trace(">>>"+d+"\n>>>"+newD);
-			return newPath;
-		}
-		return path;
-	}
-	
 	/**
 	 * Split paths into constituent paths if there are move commands other than at the start
 	 * <p>
@@ -701,14 +675,21 @@ public class Path2ShapeConverter {
 	}
 
 	private static List<SVGPath> splitAtMoveCommands(SVGPath svgPath) {
-		 ArrayList<SVGPath> splitPathList = new ArrayList<SVGPath>();
-		 String d = svgPath.getDString();
-		 List<String> newDStringList = splitAtMoveCommandsAndCreateNewDStrings(d);
-		 if (newDStringList.size() == 1) {
+		 List<SVGPath> splitPathList = new ArrayList<SVGPath>();
+		 PathPrimitiveList primitives = svgPath.ensurePrimitives();
+		 List<Integer> startList = new ArrayList<Integer>();
+		 startList.add(0);
+		 for (int i = 1; i < primitives.size(); i++) {
+			 if (primitives.get(i) instanceof MovePrimitive) {
+				 startList.add(i);
+			 }
+		 }
+		 if (startList.size() == 1) {
 			 splitPathList.add(svgPath);
 		 } else {
+			 startList.add(primitives.size());
 			 double dz = 0;
-			 for (String newDString : newDStringList) {
+			 for (int i = 0; i < startList.size() - 1; i++) {
 				 dz += 0.001;
 				 SVGPath newPath = new SVGPath();
 				 XMLUtil.copyAttributesFromTo(svgPath, newPath);
@@ -722,37 +703,13 @@ public class Path2ShapeConverter {
 						 continue;
 					 }
 				 }
-				 newPath.setDString(newDString);
+				 newPath.setPrimitives(primitives.getSubList(startList.get(i), startList.get(i + 1)));
 				 splitPathList.add(newPath);
 			 }
 		 }
 		 return splitPathList;
 	}
 	
-	private static List<String> splitAtMoveCommandsAndCreateNewDStrings(String d) {
-		List<String> strings = new ArrayList<String>();
-		if (d.equals("")) {
-			strings.add("");
-			return strings;
-		}
-		int current = -1;
-		int irel = -1; // maybe not split at REL
-		while (true) {
-			int iabs = d.indexOf(SVGPathPrimitive.ABS_MOVE, current + 1);
-//			int irel = d.indexOf(SVGPathPrimitive.REL_MOVE, current + 1);
-			int i = Math.max(iabs, irel);
-			if (i == -1 && current >= 0) {
-				strings.add(d.substring(current));
-				break;
-			}
-			if (i > current + 1) {
-				strings.add(d.substring(current, i));
-			}
-			current = i;
-		}
-		return strings;
-	}
-	
 	/** 
 	 * Splits any polylines in shapeList into lines according to minLinesInPolyline ({@link setMinLinesInPolyline} and {@link getMinLinesInPolyline})
 	 * 
@@ -764,12 +721,13 @@ public class Path2ShapeConverter {
 		List<SVGLine> totalSplitLineList = new ArrayList<SVGLine>();
 		for (SVGShape shape : shapeList) {
 			if (shape instanceof SVGPolyline) {
-				SVGPoly polyline = (SVGPoly) shape;
-				List<SVGLine> lines = polyline.createLineList();
-				if (lines.size() < minLinesInPolyline) {
-					annotateLinesAndAddToParentAndList(totalSplitLineList, polyline, lines);
+				SVGPolyline polyline = (SVGPolyline) shape;
+				// count first so long polylines are not split into SVGLines only to be kept
+				int lineCount = polyline.getLineCount();
+				if (lineCount < minLinesInPolyline) {
+					annotateLinesAndAddToParentAndList(totalSplitLineList, polyline, polyline.createLineList());
 				} else {
-					LOG.trace("not split: "+lines.size());
+					LOG.trace("not split: "+lineCount);
 				}
 			}
 		}
@@ -817,11 +775,14 @@ public class Path2ShapeConverter {
 	}
 
 	/** 
-	* Written with help from http://stackoverflow.com/questions/4958161/determine-the-centre-center-of-a-circle-using-multiple-points
+	* Circle through 3 points, or least-squares circle through more.
+	* <p>
+	* For more than 3 points uses fitCircle() and rejects the fit if any point is more than eps
+	* from the circle.
 	* 
 	* @param r2a the points
-	* @param eps TODO
-	* @return circle
+	* @param eps minimum determinant for 3 points; minimum scatter in x and y and maximum radial deviation for more
+	* @return circle or null
 	*/
 	public static SVGCircle findCircleFromPoints(Real2Array r2a, double eps) {
 		SVGCircle circle = null;
@@ -830,30 +791,78 @@ public class Path2ShapeConverter {
 		} else if (r2a.size() == 3) {
 			circle = findCircleFrom3Points(r2a.get(0), r2a.get(1), r2a.get(2), eps);
 		} else {
-			RealArray x2y2Array = new RealArray();
-			RealArray xArray = new RealArray();
-			RealArray yArray = new RealArray();
-			for (int i = 0; i < r2a.size(); i++) {
-				Real2 point = r2a.get(i);
-				double x = point.x;
-				double y = point.y;
-				x2y2Array.addElement(x * x + y * y);
-				xArray.addElement(x);
-				yArray.addElement(y);
-			}
 			Real2Range bbox =r2a.getRange2();
 			// check if scatter in both directions
 			if (bbox.getXRange().getRange() > eps && bbox.getYRange().getRange() > eps) {
-				//Don't know the distribution and can't afford to find all triplets, so find the extreme points
-				Real2 minXPoint = r2a.getPointWithMinimumX();
-				Real2 maxXPoint = r2a.getPointWithMaximumX();
-				Real2 minYPoint = r2a.getPointWithMinimumY();
-				Real2 maxYPoint = r2a.getPointWithMaximumY();
+				double[] fit = fitCircle(SVGUtil.createInterleavedXYArray(r2a));
+				if (fit != null && fit[3] <= eps) {
+					circle = new SVGCircle(new Real2(fit[0], fit[1]), fit[2]);
+				}
 			}
 		}
 		return circle;
 	}
 
+	/** algebraic (Kasa) least-squares circle.
+	 * <p>
+	 * Minimises the sum of (dx*dx + dy*dy - r*r)^2, which is linear in the centre, so no
+	 * iteration is needed. Coordinates are centred on their mean first for numerical stability.
+	 * 
+	 * @param xy interleaved x0,y0,x1,y1...
+	 * @return {centreX, centreY, radius, maximum |distance from centre - radius|}; null if
+	 * fewer than 3 points or they are (nearly) collinear
+	 */
+	public static double[] fitCircle(double[] xy) {
+		int n = xy.length / 2;
+		if (n < 3) {
+			return null;
+		}
+		double meanX = 0.0;
+		double meanY = 0.0;
+		for (int i = 0; i < n; i++) {
+			meanX += xy[2 * i];
+			meanY += xy[2 * i + 1];
+		}
+		meanX /= n;
+		meanY /= n;
+		double suu = 0.0;
+		double svv = 0.0;
+		double suv = 0.0;
+		double suuu = 0.0;
+		double svvv = 0.0;
+		double suvv = 0.0;
+		double svuu = 0.0;
+		for (int i = 0; i < n; i++) {
+			double u = xy[2 * i] - meanX;
+			double v = xy[2 * i + 1] - meanY;
+			double uu = u * u;
+			double vv = v * v;
+			suu += uu;
+			svv += vv;
+			suv += u * v;
+			suuu += uu * u;
+			svvv += vv * v;
+			suvv += u * vv;
+			svuu += v * uu;
+		}
+		double det = suu * svv - suv * suv;
+		if (!(det > 1.0E-12 * (suu + svv) * (suu + svv))) {
+			return null;
+		}
+		double bu = 0.5 * (suuu + suvv);
+		double bv = 0.5 * (svvv + svuu);
+		double uc = (bu * svv - bv * suv) / det;
+		double vc = (bv * suu - bu * suv) / det;
+		double rad = Math.sqrt(uc * uc + vc * vc + (suu + svv) / n);
+		double maxDeviation = 0.0;
+		for (int i = 0; i < n; i++) {
+			double du = xy[2 * i] - meanX - uc;
+			double dv = xy[2 * i + 1] - meanY - vc;
+			maxDeviation = Math.max(maxDeviation, Math.abs(Math.sqrt(du * du + dv * dv) - rad));
+		}
+		return new double[] {uc + meanX, vc + meanY, rad, maxDeviation};
+	}
+
 
 	/**
 	 * Copies fill, opacity, stroke and stroke width and dash-array attributes to a list
@@ -1091,25 +1100,27 @@ public class Path2ShapeConverter {
 	/**
 	 * Converts circles represented as polygons (closed paths) into SVG circles
 	 * <p>
-	 * TODO
+	 * Rejects polygons with a non-square bounding box or fewer than MIN_POLYGON_CIRCLE_POINTS points
+	 * before fitting, and fits whose points deviate from the circle by more than CIRCLE_EPS.
 	 * 
 	 * @param polygon
-	 * @return circle
+	 * @return circle or null
 	 */
 	public SVGCircle convertToCircle(SVGPolygon polygon) {
 		Real2Range bbox = polygon.getBoundingBox();
 		SVGCircle circle = null;
 		double eps = 10 * RECT_EPS;//Why not?
 		if (Math.abs(bbox.getXRange().getRange() - bbox.getYRange().getRange()) < eps) {
-			Real2 centre = bbox.getCentroid();
-			RealArray radArray = new RealArray();
-			for (Real2 point : polygon.getReal2Array()) {
-				radArray.addElement(centre.getDistance(point));
+			double[] xy = polygon.getInterleavedXYArray();
+			if (xy.length >= 2 * MIN_POLYGON_CIRCLE_POINTS) {
+				double[] fit = fitCircle(xy);
+				if (fit != null && fit[3] <= CIRCLE_EPS) {
+					circle = new SVGCircle();
+					circle.copyAttributesFrom(polygon);
+					circle.setRad(fit[2]);
+					circle.setCXY(new Real2(fit[0], fit[1]));
+				}
 			}
-			circle = new SVGCircle();
-			circle.copyAttributesFrom(polygon);
-			circle.setRad(radArray.getMean());
-			circle.setCXY(centre);
 		}
 		return circle;
 	}
@@ -0,0 +1,437 @@
+package org.xmlcml.graphics.svg.linestuff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Array;
+import org.xmlcml.graphics.svg.SVGLine;
+import org.xmlcml.graphics.svg.SVGPoly;
+import org.xmlcml.graphics.svg.SVGPolygon;
+import org.xmlcml.graphics.svg.SVGShape;
+import org.xmlcml.graphics.svg.util.NearPointIndex;
+
+/** planar graph of nodes, edges and faces from a network of lines and polylines.
+ *
+ * <p>
+ * Segment ends within eps are snapped to one node (first come, through a NearPointIndex). If
+ * splitAtIntersections, segments are also split where they cross or touch (LineIntersection), so a
+ * table grid of long rules becomes its cells. Duplicate edges between the same nodes are merged.
+ * </p>
+ * <p>
+ * Everything is held in primitive arrays indexed by node, edge and face number; edge e has the half-edges
+ * 2e (from node 0 to node 1) and 2e+1 (back). Neighbours are stored per node in angular order, and faces
+ * are traced by turning to the next edge at each node, so queries (degree, neighbours, faces of an edge,
+ * nodes of a face) are O(1) or O(size of result). Bounded faces have positive area; each connected
+ * component also has one unbounded face with negative area. Components inside faces of others are not
+ * nested (faces do not record holes).
+ * </p>
+ *
+ * @author pm286
+ *
+ */
+public class PlanarGraph {
+
+	private static final Logger LOG = Logger.getLogger(PlanarGraph.class);
+	static {
+		LOG.setLevel(Level.DEBUG);
+	}
+
+	private double eps;
+	private int nodeCount;
+	private double[] nodeX;
+	private double[] nodeY;
+	private NearPointIndex<Integer> nodeIndex;
+
+	private int edgeCount;
+	private int[] edgeNodes;
+	private int[] edgeSource;
+	private Map<Long, Integer> edgeByNodes;
+
+	/** half-edges out of node i are nodeHalfEdges[nodeStart[i]..nodeStart[i+1]), anticlockwise */
+	private int[] nodeStart;
+	private int[] nodeHalfEdges;
+	/** position of each half-edge in nodeHalfEdges */
+	private int[] halfEdgePosition;
+	private int[] halfEdgeFace;
+
+	private int faceCount;
+	/** half-edges of face f are faceHalfEdges[faceStart[f]..faceStart[f+1]) */
+	private int[] faceStart;
+	private int[] faceHalfEdges;
+	private double[] faceArea;
+
+	private List<SVGShape> sourceList;
+
+	private PlanarGraph(double eps) {
+		this.eps = eps;
+		nodeX = new double[16];
+		nodeY = new double[16];
+		nodeIndex = new NearPointIndex<Integer>(eps, i -> new Real2(nodeX[i], nodeY[i]),
+				(i, j) -> Math.abs(nodeX[i] - nodeX[j]) <= this.eps && Math.abs(nodeY[i] - nodeY[j]) <= this.eps);
+		edgeNodes = new int[32];
+		edgeSource = new int[16];
+		edgeByNodes = new HashMap<Long, Integer>();
+		sourceList = new ArrayList<SVGShape>();
+	}
+
+	/** builds the graph.
+	 *
+	 * @param lines may be null
+	 * @param polys may be null; polygons and closed polylines include their closing segment
+	 * @param eps tolerance for snapping ends and for intersections
+	 * @param splitAtIntersections if true split segments where they cross or touch
+	 * @return
+	 */
+	public static PlanarGraph createGraph(List<SVGLine> lines, List<? extends SVGPoly> polys, double eps,
+			boolean splitAtIntersections) {
+		PlanarGraph graph = new PlanarGraph(eps);
+		List<SVGLine> segmentList = new ArrayList<SVGLine>();
+		List<Integer> segmentSource = new ArrayList<Integer>();
+		if (lines != null) {
+			for (SVGLine line : lines) {
+				segmentSource.add(graph.sourceList.size());
+				segmentList.add(line);
+				graph.sourceList.add(line);
+			}
+		}
+		if (polys != null) {
+			for (SVGPoly poly : polys) {
+				PolylineSegments segments = poly.getOrCreateSegments();
+				if (segments != null) {
+					for (int i = 0; i < segments.size(); i++) {
+						segmentSource.add(graph.sourceList.size());
+						segmentList.add(segments.createLine(i));
+					}
+				}
+				graph.sourceList.add(poly);
+			}
+		}
+		graph.addSegments(segmentList, segmentSource, splitAtIntersections);
+		graph.createAdjacency();
+		graph.createFaces();
+		return graph;
+	}
+
+	private void addSegments(List<SVGLine> segmentList, List<Integer> segmentSource, boolean splitAtIntersections) {
+		int n = segmentList.size();
+		double[] xy = new double[4 * n];
+		for (int i = 0; i < n; i++) {
+			System.arraycopy(segmentList.get(i).getGeometricCoordinates(), 0, xy, 4 * i, 4);
+		}
+		// split points of each segment as x,y,t triples
+		double[][] splits = new double[n][];
+		int[] splitCount = new int[n];
+		if (splitAtIntersections) {
+			for (LineIntersection intersection : LineIntersection.findAllIntersections(segmentList, eps)) {
+				Real2 point = intersection.getPoint();
+				addSplit(splits, splitCount, xy, intersection.getIndex0(), point);
+				addSplit(splits, splitCount, xy, intersection.getIndex1(), point);
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			int source = segmentSource.get(i);
+			int node0 = getOrCreateNode(xy[4 * i], xy[4 * i + 1]);
+			int last = node0;
+			if (splitCount[i] > 0) {
+				double[] s = splits[i];
+				Integer[] order = new Integer[splitCount[i]];
+				for (int k = 0; k < order.length; k++) {
+					order[k] = k;
+				}
+				Arrays.sort(order, (a, b) -> Double.compare(s[3 * a + 2], s[3 * b + 2]));
+				for (int k : order) {
+					int node = getOrCreateNode(s[3 * k], s[3 * k + 1]);
+					addEdge(last, node, source);
+					last = node;
+				}
+			}
+			addEdge(last, getOrCreateNode(xy[4 * i + 2], xy[4 * i + 3]), source);
+		}
+	}
+
+	private static void addSplit(double[][] splits, int[] splitCount, double[] xy, int i, Real2 point) {
+		double dx = xy[4 * i + 2] - xy[4 * i];
+		double dy = xy[4 * i + 3] - xy[4 * i + 1];
+		double length2 = dx * dx + dy * dy;
+		double t = length2 == 0.0 ? 0.0 : ((point.getX() - xy[4 * i]) * dx + (point.getY() - xy[4 * i + 1]) * dy) / length2;
+		if (splits[i] == null) {
+			splits[i] = new double[6];
+		} else if (3 * splitCount[i] + 3 > splits[i].length) {
+			splits[i] = Arrays.copyOf(splits[i], 2 * splits[i].length);
+		}
+		int k = 3 * splitCount[i]++;
+		splits[i][k] = point.getX();
+		splits[i][k + 1] = point.getY();
+		splits[i][k + 2] = t;
+	}
+
+	private int getOrCreateNode(double x, double y) {
+		int found = findNode(x, y);
+		if (found >= 0) {
+			return found;
+		}
+		if (nodeCount == nodeX.length) {
+			nodeX = Arrays.copyOf(nodeX, 2 * nodeCount);
+			nodeY = Arrays.copyOf(nodeY, 2 * nodeCount);
+		}
+		nodeX[nodeCount] = x;
+		nodeY[nodeCount] = y;
+		nodeIndex.add(nodeCount);
+		return nodeCount++;
+	}
+
+	private void addEdge(int node0, int node1, int source) {
+		if (node0 == node1) {
+			return;
+		}
+		Long key = (long) Math.min(node0, node1) * Integer.MAX_VALUE + Math.max(node0, node1);
+		if (edgeByNodes.containsKey(key)) {
+			return;
+		}
+		if (2 * edgeCount + 2 > edgeNodes.length) {
+			edgeNodes = Arrays.copyOf(edgeNodes, 2 * edgeNodes.length);
+			edgeSource = Arrays.copyOf(edgeSource, 2 * edgeSource.length);
+		}
+		edgeByNodes.put(key, edgeCount);
+		edgeNodes[2 * edgeCount] = node0;
+		edgeNodes[2 * edgeCount + 1] = node1;
+		edgeSource[edgeCount++] = source;
+	}
+
+	/** half-edges grouped by start node, sorted by angle.
+	 */
+	private void createAdjacency() {
+		int nhalf = 2 * edgeCount;
+		nodeStart = new int[nodeCount + 1];
+		for (int h = 0; h < nhalf; h++) {
+			nodeStart[getHalfEdgeStart(h) + 1]++;
+		}
+		for (int i = 0; i < nodeCount; i++) {
+			nodeStart[i + 1] += nodeStart[i];
+		}
+		nodeHalfEdges = new int[nhalf];
+		int[] fill = Arrays.copyOf(nodeStart, nodeCount);
+		for (int h = 0; h < nhalf; h++) {
+			nodeHalfEdges[fill[getHalfEdgeStart(h)]++] = h;
+		}
+		double[] angle = new double[nhalf];
+		for (int h = 0; h < nhalf; h++) {
+			int from = getHalfEdgeStart(h);
+			int to = getHalfEdgeEnd(h);
+			angle[h] = Math.atan2(nodeY[to] - nodeY[from], nodeX[to] - nodeX[from]);
+		}
+		halfEdgePosition = new int[nhalf];
+		for (int i = 0; i < nodeCount; i++) {
+			int start = nodeStart[i];
+			int end = nodeStart[i + 1];
+			Integer[] sorted = new Integer[end - start];
+			for (int k = start; k < end; k++) {
+				sorted[k - start] = nodeHalfEdges[k];
+			}
+			Arrays.sort(sorted, (a, b) -> Double.compare(angle[a], angle[b]));
+			for (int k = start; k < end; k++) {
+				nodeHalfEdges[k] = sorted[k - start];
+				halfEdgePosition[nodeHalfEdges[k]] = k;
+			}
+		}
+	}
+
+	/** traces each face by taking, at the end of each half-edge, the next edge clockwise from the way back.
+	 */
+	private void createFaces() {
+		int nhalf = 2 * edgeCount;
+		halfEdgeFace = new int[nhalf];
+		Arrays.fill(halfEdgeFace, -1);
+		faceStart = new int[nhalf + 1];
+		faceHalfEdges = new int[nhalf];
+		faceArea = new double[nhalf];
+		int count = 0;
+		for (int h0 = 0; h0 < nhalf; h0++) {
+			if (halfEdgeFace[h0] >= 0) {
+				continue;
+			}
+			faceStart[faceCount] = count;
+			double area = 0.0;
+			int h = h0;
+			do {
+				halfEdgeFace[h] = faceCount;
+				faceHalfEdges[count++] = h;
+				int from = getHalfEdgeStart(h);
+				int to = getHalfEdgeEnd(h);
+				area += nodeX[from] * nodeY[to] - nodeX[to] * nodeY[from];
+				h = getNextHalfEdge(h);
+			} while (h != h0);
+			faceArea[faceCount++] = area / 2.0;
+		}
+		faceStart[faceCount] = count;
+		faceStart = Arrays.copyOf(faceStart, faceCount + 1);
+		faceArea = Arrays.copyOf(faceArea, faceCount);
+	}
+
+	private int getNextHalfEdge(int h) {
+		int twin = h ^ 1;
+		int node = getHalfEdgeStart(twin);
+		int start = nodeStart[node];
+		int position = halfEdgePosition[twin];
+		return nodeHalfEdges[position == start ? nodeStart[node + 1] - 1 : position - 1];
+	}
+
+	public double getEps() {
+		return eps;
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public double getNodeX(int node) {
+		return nodeX[node];
+	}
+
+	public double getNodeY(int node) {
+		return nodeY[node];
+	}
+
+	public Real2 getNodeXY(int node) {
+		return new Real2(nodeX[node], nodeY[node]);
+	}
+
+	/** node within eps of the point.
+	 *
+	 * does not change the graph, so may be called from several threads.
+	 *
+	 * @return -1 if none
+	 */
+	public int findNode(double x, double y) {
+		Integer found = nodeIndex.find(new Real2(x, y),
+				i -> Math.abs(nodeX[i] - x) <= eps && Math.abs(nodeY[i] - y) <= eps);
+		return found == null ? -1 : found;
+	}
+
+	public int getDegree(int node) {
+		return nodeStart[node + 1] - nodeStart[node];
+	}
+
+	/** k'th neighbour of node in anticlockwise order (of angle in the coordinate system).
+	 */
+	public int getNeighbour(int node, int k) {
+		return getHalfEdgeEnd(nodeHalfEdges[nodeStart[node] + k]);
+	}
+
+	/** edge to the k'th neighbour.
+	 */
+	public int getNeighbourEdge(int node, int k) {
+		return nodeHalfEdges[nodeStart[node] + k] / 2;
+	}
+
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	public int getEdgeNode0(int edge) {
+		return edgeNodes[2 * edge];
+	}
+
+	public int getEdgeNode1(int edge) {
+		return edgeNodes[2 * edge + 1];
+	}
+
+	/** edge between two nodes.
+	 *
+	 * @return -1 if none
+	 */
+	public int getEdge(int node0, int node1) {
+		Integer edge = edgeByNodes.get((long) Math.min(node0, node1) * Integer.MAX_VALUE + Math.max(node0, node1));
+		return edge == null ? -1 : edge;
+	}
+
+	/** line or poly from which the edge came (the first, if several coincide).
+	 */
+	public SVGShape getEdgeSource(int edge) {
+		return sourceList.get(edgeSource[edge]);
+	}
+
+	/** face to the left of the edge going from node 0 to node 1.
+	 */
+	public int getLeftFace(int edge) {
+		return halfEdgeFace[2 * edge];
+	}
+
+	/** face to the right of the edge going from node 0 to node 1 (same as left for a dangling edge).
+	 */
+	public int getRightFace(int edge) {
+		return halfEdgeFace[2 * edge + 1];
+	}
+
+	public int getFaceCount() {
+		return faceCount;
+	}
+
+	/** signed area; positive for bounded faces.
+	 */
+	public double getFaceArea(int face) {
+		return faceArea[face];
+	}
+
+	public boolean isBounded(int face) {
+		return faceArea[face] > 0.0;
+	}
+
+	/** nodes round the face in order (dangling edges are walked both ways).
+	 */
+	public int[] getFaceNodes(int face) {
+		int start = faceStart[face];
+		int[] nodes = new int[faceStart[face + 1] - start];
+		for (int k = 0; k < nodes.length; k++) {
+			nodes[k] = getHalfEdgeStart(faceHalfEdges[start + k]);
+		}
+		return nodes;
+	}
+
+	/** bounded faces with area of at least minArea.
+	 *
+	 * @param minArea
+	 * @return face numbers
+	 */
+	public List<Integer> getBoundedFaces(double minArea) {
+		List<Integer> faceList = new ArrayList<Integer>();
+		for (int f = 0; f < faceCount; f++) {
+			if (faceArea[f] > 0.0 && faceArea[f] >= minArea) {
+				faceList.add(f);
+			}
+		}
+		return faceList;
+	}
+
+	/** polygon round a face.
+	 *
+	 * @param face
+	 * @return
+	 */
+	public SVGPolygon createPolygon(int face) {
+		Real2Array points = new Real2Array();
+		for (int node : getFaceNodes(face)) {
+			points.add(new Real2(nodeX[node], nodeY[node]));
+		}
+		return new SVGPolygon(points);
+	}
+
+	private int getHalfEdgeStart(int h) {
+		return edgeNodes[h];
+	}
+
+	private int getHalfEdgeEnd(int h) {
+		return edgeNodes[h ^ 1];
+	}
+
+	@Override
+	public String toString() {
+		return "nodes: "+nodeCount+"; edges: "+edgeCount+"; faces: "+faceCount;
+	}
+}
@@ -0,0 +1,229 @@
+package org.xmlcml.graphics.svg.linestuff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Axis.Axis2;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.RealArray.Monotonicity;
+import org.xmlcml.graphics.svg.SVGLine;
+
+/** lightweight view of the segments of a polyline or polygon.
+ *
+ * <p>
+ * Works on the packed x0,y0,x1,y1... array of the points and holds the step (dx, dy) of each
+ * segment as primitives. Geometric questions (orientation, length, monotonicity) are answered
+ * without creating SVGLines; lines are only made by createLine() and createLineList().
+ * </p>
+ * <p>
+ * Segment i runs from point i to point i+1; if closed there is a final segment from the last point
+ * to the first. Monotonic runs are computed on first use and cached. The view does not copy the
+ * coordinate array and must be recreated if the points change (SVGPoly.getOrCreateSegments() does this).
+ * </p>
+ *
+ * @author pm286
+ *
+ */
+public class PolylineSegments {
+
+	private final static Logger LOG = Logger.getLogger(PolylineSegments.class);
+
+	private double[] xy;
+	private int npoints;
+	private int size;
+	private boolean closed;
+	private double[] dx;
+	private double[] dy;
+	private int[][] runStarts;
+	private Monotonicity[][] runDirections;
+
+	/**
+	 * @param xy interleaved coordinates x0,y0,x1,y1... (not copied)
+	 * @param closed if true add a segment from last point to first
+	 */
+	public PolylineSegments(double[] xy, boolean closed) {
+		this.xy = xy;
+		this.npoints = xy.length / 2;
+		this.closed = closed && npoints > 1;
+		this.size = (npoints == 0) ? 0 : (this.closed ? npoints : npoints - 1);
+		dx = new double[size];
+		dy = new double[size];
+		for (int i = 0; i < size; i++) {
+			int j = (i + 1) % npoints;
+			dx[i] = xy[2 * j] - xy[2 * i];
+			dy[i] = xy[2 * j + 1] - xy[2 * i + 1];
+		}
+		runStarts = new int[2][];
+		runDirections = new Monotonicity[2][];
+	}
+
+	/** number of segments.
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int getPointCount() {
+		return npoints;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public double getX0(int segment) {
+		return xy[2 * segment];
+	}
+
+	public double getY0(int segment) {
+		return xy[2 * segment + 1];
+	}
+
+	public double getX1(int segment) {
+		return xy[2 * ((segment + 1) % npoints)];
+	}
+
+	public double getY1(int segment) {
+		return xy[2 * ((segment + 1) % npoints) + 1];
+	}
+
+	public double getDX(int segment) {
+		return dx[segment];
+	}
+
+	public double getDY(int segment) {
+		return dy[segment];
+	}
+
+	public double getLength(int segment) {
+		return Math.sqrt(dx[segment] * dx[segment] + dy[segment] * dy[segment]);
+	}
+
+	/** as SVGLine.isHorizontal(eps).
+	 *
+	 */
+	public boolean isHorizontal(int segment, double eps) {
+		return Math.abs(dy[segment]) < eps;
+	}
+
+	/** as SVGLine.isVertical(eps).
+	 *
+	 */
+	public boolean isVertical(int segment, double eps) {
+		return Math.abs(dx[segment]) < eps;
+	}
+
+	/** are all segments horizontal or vertical?
+	 *
+	 * @param eps
+	 * @return
+	 */
+	public boolean isAlignedWithAxes(double eps) {
+		for (int i = 0; i < size; i++) {
+			if (!isHorizontal(i, eps) && !isVertical(i, eps)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** monotonicity of the points along axis (closing segment is ignored).
+	 *
+	 * same result as RealArray.getMonotonicity() on the x or y coordinates.
+	 *
+	 * @param axis
+	 * @return null if not monotonic, fewer than 2 points or all coordinates equal
+	 */
+	public Monotonicity getMonotonicity(Axis2 axis) {
+		int[] starts = getMonotonicRunStarts(axis);
+		return (starts.length == 1) ? runDirections[axis.ordinal()][0] : null;
+	}
+
+	/** starts of maximal monotonic runs of points along axis.
+	 *
+	 * <p>
+	 * A run ends where the coordinate changes direction; the turning point is the last point
+	 * of one run and the first of the next. Equal (or NaN) steps continue the current run.
+	 * The closing segment is ignored.
+	 * </p>
+	 *
+	 * @param axis
+	 * @return point indexes (empty if no points); do not modify
+	 */
+	public int[] getMonotonicRunStarts(Axis2 axis) {
+		int iaxis = axis.ordinal();
+		if (runStarts[iaxis] == null) {
+			createMonotonicRuns(iaxis);
+		}
+		return runStarts[iaxis];
+	}
+
+	/** direction of each run in getMonotonicRunStarts(axis).
+	 *
+	 * @param axis
+	 * @return null for a run without any change of coordinate; do not modify
+	 */
+	public Monotonicity[] getMonotonicRunDirections(Axis2 axis) {
+		getMonotonicRunStarts(axis);
+		return runDirections[axis.ordinal()];
+	}
+
+	private void createMonotonicRuns(int iaxis) {
+		int[] starts = new int[npoints == 0 ? 0 : 1];
+		Monotonicity[] directions = new Monotonicity[starts.length];
+		int nruns = starts.length;
+		Monotonicity current = null;
+		for (int i = 1; i < npoints; i++) {
+			double last = xy[2 * (i - 1) + iaxis];
+			double value = xy[2 * i + iaxis];
+			// same comparisons as RealArray.getMonotonicity()
+			Monotonicity step = (value < last) ? Monotonicity.DECREASING :
+				((value > last) ? Monotonicity.INCREASING : null);
+			if (step == null) {
+				continue;
+			}
+			if (current == null) {
+				current = step;
+			} else if (step != current) {
+				directions[nruns - 1] = current;
+				if (nruns == starts.length) {
+					starts = Arrays.copyOf(starts, 2 * nruns);
+					directions = Arrays.copyOf(directions, 2 * nruns);
+				}
+				starts[nruns++] = i - 1;
+				current = step;
+			}
+		}
+		if (nruns > 0) {
+			directions[nruns - 1] = current;
+		}
+		runStarts[iaxis] = Arrays.copyOf(starts, nruns);
+		runDirections[iaxis] = Arrays.copyOf(directions, nruns);
+	}
+
+	/** makes an SVGLine for one segment.
+	 *
+	 * @param segment
+	 * @return new line without attributes other than coordinates and default style
+	 */
+	public SVGLine createLine(int segment) {
+		return new SVGLine(new Real2(getX0(segment), getY0(segment)), new Real2(getX1(segment), getY1(segment)));
+	}
+
+	/** makes SVGLines for all segments.
+	 *
+	 * @return
+	 */
+	public List<SVGLine> createLineList() {
+		List<SVGLine> lineList = new ArrayList<SVGLine>(size);
+		for (int i = 0; i < size; i++) {
+			lineList.add(createLine(i));
+		}
+		return lineList;
+	}
+
+}
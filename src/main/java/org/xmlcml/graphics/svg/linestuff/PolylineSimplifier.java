@@ -0,0 +1,150 @@
+package org.xmlcml.graphics.svg.linestuff;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGPath;
+import org.xmlcml.graphics.svg.SVGPoly;
+
+/** Douglas-Peucker simplification of point sequences.
+ *
+ * <p>
+ * Removes points which lie within tolerance of the simplified line, so no removed point
+ * is further than tolerance from the result (distance to the segment, not the infinite line).
+ * End points are always kept; points with NaN coordinates are never removed.
+ * Works on interleaved x0,y0,x1,y1... arrays with an explicit stack (no recursion, no objects per point);
+ * typical cost is O(n log n).
+ * </p>
+ * <p>
+ * SVGPoly.simplify() and SVGPath.simplify() apply this to elements; simplify(List, ...) does it in bulk,
+ * optionally in parallel (elements must not share state, e.g. be in different documents or not be modified by others).
+ * </p>
+ *
+ * @author pm286
+ *
+ */
+public class PolylineSimplifier {
+
+	private static final Logger LOG = Logger.getLogger(PolylineSimplifier.class);
+	static {
+		LOG.setLevel(Level.DEBUG);
+	}
+
+	/** points to keep.
+	 *
+	 * @param xy interleaved coordinates
+	 * @param tolerance maximum distance of a removed point from the result
+	 * @return ascending indexes of points to keep
+	 */
+	public static int[] simplify(double[] xy, double tolerance) {
+		int npoints = xy.length / 2;
+		if (npoints <= 2) {
+			int[] all = new int[npoints];
+			for (int i = 0; i < npoints; i++) {
+				all[i] = i;
+			}
+			return all;
+		}
+		double tolerance2 = tolerance * tolerance;
+		boolean[] keep = new boolean[npoints];
+		keep[0] = true;
+		keep[npoints - 1] = true;
+		int[] stack = new int[64];
+		int sp = 0;
+		stack[sp++] = 0;
+		stack[sp++] = npoints - 1;
+		while (sp > 0) {
+			int last = stack[--sp];
+			int first = stack[--sp];
+			int farthest = -1;
+			double max2 = tolerance2;
+			for (int i = first + 1; i < last; i++) {
+				double d2 = getSegmentDistanceSquared(xy, i, first, last);
+				if (Double.isNaN(d2) || d2 > max2) {
+					farthest = i;
+					if (Double.isNaN(d2)) {
+						break;
+					}
+					max2 = d2;
+				}
+			}
+			if (farthest >= 0) {
+				keep[farthest] = true;
+				if (sp + 4 > stack.length) {
+					stack = Arrays.copyOf(stack, 2 * stack.length);
+				}
+				if (farthest - first > 1) {
+					stack[sp++] = first;
+					stack[sp++] = farthest;
+				}
+				if (last - farthest > 1) {
+					stack[sp++] = farthest;
+					stack[sp++] = last;
+				}
+			}
+		}
+		int count = 0;
+		for (boolean k : keep) {
+			if (k) {
+				count++;
+			}
+		}
+		int[] kept = new int[count];
+		count = 0;
+		for (int i = 0; i < npoints; i++) {
+			if (keep[i]) {
+				kept[count++] = i;
+			}
+		}
+		return kept;
+	}
+
+	/** simplifies polys and paths in place.
+	 *
+	 * other elements are ignored.
+	 *
+	 * @param elementList
+	 * @param tolerance
+	 * @param parallel if true simplify elements concurrently
+	 * @return total number of points removed
+	 */
+	public static int simplify(List<? extends SVGElement> elementList, final double tolerance, boolean parallel) {
+		final AtomicInteger removed = new AtomicInteger();
+		(parallel ? elementList.parallelStream() : elementList.stream()).forEach(element -> {
+			if (element instanceof SVGPoly) {
+				removed.addAndGet(((SVGPoly) element).simplify(tolerance));
+			} else if (element instanceof SVGPath) {
+				removed.addAndGet(((SVGPath) element).simplify(tolerance));
+			}
+		});
+		return removed.get();
+	}
+
+	/** squared distance of point i from the segment first-last.
+	 *
+	 */
+	private static double getSegmentDistanceSquared(double[] xy, int i, int first, int last) {
+		double x0 = xy[2 * first];
+		double y0 = xy[2 * first + 1];
+		double dx = xy[2 * last] - x0;
+		double dy = xy[2 * last + 1] - y0;
+		double px = xy[2 * i] - x0;
+		double py = xy[2 * i + 1] - y0;
+		double length2 = dx * dx + dy * dy;
+		if (length2 > 0.0) {
+			double t = (px * dx + py * dy) / length2;
+			if (t > 1.0) {
+				px -= dx;
+				py -= dy;
+			} else if (t > 0.0) {
+				px -= t * dx;
+				py -= t * dy;
+			}
+		}
+		return px * px + py * py;
+	}
+}
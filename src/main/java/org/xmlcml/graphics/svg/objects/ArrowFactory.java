@@ -1,14 +1,20 @@
 package org.xmlcml.graphics.svg.objects;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2;
 import org.xmlcml.graphics.svg.SVGElement;
 import org.xmlcml.graphics.svg.SVGG;
 import org.xmlcml.graphics.svg.SVGLine;
 import org.xmlcml.graphics.svg.SVGMarker;
+import org.xmlcml.graphics.svg.linestuff.BoundingBoxIndex;
 
 public class ArrowFactory {
 
@@ -53,22 +59,37 @@ public class ArrowFactory {
 		this.triangleList = new ArrayList<SVGTriangle>(triangleList);
 	}
 	
+	/** pairs lines with triangles in order of the lists.
+	 * 
+	 * <p>
+	 * Each line is only tested against unused triangles whose bounding boxes are within delta
+	 * of one of its ends (found with a BoundingBoxIndex), in the order of triangleList.
+	 * A line may take more than one triangle (e.g. double-headed arrows). 
+	 * </p>
+	 * 
+	 * @return arrows
+	 */
 	public List<SVGArrow> createFirstComeArrows() {
 		usedLineList = new ArrayList<SVGLine>();
 		usedTriangleList = new ArrayList<SVGTriangle>();
 		arrowList = new ArrayList<SVGArrow>();
+		Set<SVGLine> usedLineSet = Collections.newSetFromMap(new IdentityHashMap<SVGLine, Boolean>());
+		Set<SVGTriangle> usedTriangleSet = Collections.newSetFromMap(new IdentityHashMap<SVGTriangle, Boolean>());
+		BoundingBoxIndex triangleIndex = BoundingBoxIndex.createIndex(triangleList);
 		for (int iLine = 0; iLine < lineList.size(); iLine++) {
 			SVGLine line = lineList.get(iLine);
-			if (usedLineList.contains(line)) continue;
-			for (int jTriangle = 0; jTriangle < triangleList.size(); jTriangle++) {
+			if (usedLineSet.contains(line)) continue;
+			for (int jTriangle : findTrianglesNearEnds(triangleIndex, line)) {
 				SVGTriangle triangle = triangleList.get(jTriangle);
-				if (usedTriangleList.contains(triangle)) continue;
+				if (usedTriangleSet.contains(triangle)) continue;
 				LOG.trace("potential arrow: "+line.toXML()+" / "+triangle.toXML());
 				SVGArrow arrow = SVGArrow.createArrow(line, triangle, delta);
 				if (arrow != null) {
 					LOG.trace("made arrow from "+line.toXML()+" / "+triangle.toXML());
 					arrowList.add(arrow);
+					usedLineSet.add(line);
 					usedLineList.add(line);
+					usedTriangleSet.add(triangle);
 					usedTriangleList.add(triangle);
 				}
 			}
@@ -76,6 +97,30 @@ public class ArrowFactory {
 		return arrowList;
 	}
 
+	/** indexes of triangles within delta of either end of line.
+	 * 
+	 * @return ascending, without duplicates
+	 */
+	private int[] findTrianglesNearEnds(BoundingBoxIndex triangleIndex, SVGLine line) {
+		Real2 xy0 = line.getXY(0);
+		Real2 xy1 = line.getXY(1);
+		int[] near0 = triangleIndex.findIntersecting(
+				xy0.getX() - delta, xy0.getX() + delta, xy0.getY() - delta, xy0.getY() + delta);
+		int[] near1 = triangleIndex.findIntersecting(
+				xy1.getX() - delta, xy1.getX() + delta, xy1.getY() - delta, xy1.getY() + delta);
+		int[] merged = new int[near0.length + near1.length];
+		int i = 0;
+		int j = 0;
+		int count = 0;
+		while (i < near0.length || j < near1.length) {
+			int next = (j == near1.length || (i < near0.length && near0[i] <= near1[j])) ? near0[i] : near1[j];
+			if (i < near0.length && near0[i] == next) i++;
+			if (j < near1.length && near1[j] == next) j++;
+			merged[count++] = next;
+		}
+		return Arrays.copyOf(merged, count);
+	}
+
 	public List<SVGArrow> getArrowList() {
 		return arrowList;
 	}
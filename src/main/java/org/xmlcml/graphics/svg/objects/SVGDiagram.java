@@ -7,16 +7,20 @@ import nu.xom.Attribute;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Array;
 import org.xmlcml.euclid.Real2Range;
 import org.xmlcml.graphics.svg.SVGElement;
 import org.xmlcml.graphics.svg.SVGG;
 import org.xmlcml.graphics.svg.SVGLine;
 import org.xmlcml.graphics.svg.SVGPath;
+import org.xmlcml.graphics.svg.SVGPoly;
 import org.xmlcml.graphics.svg.SVGPolyline;
 import org.xmlcml.graphics.svg.SVGRect;
 import org.xmlcml.graphics.svg.SVGShape;
 import org.xmlcml.graphics.svg.SVGText;
 import org.xmlcml.graphics.svg.linestuff.Path2ShapeConverter;
+import org.xmlcml.graphics.svg.util.NearPointIndex;
 
 
 public class SVGDiagram extends SVGG {
@@ -42,6 +46,12 @@ public class SVGDiagram extends SVGG {
 	protected List<SVGPolyline> polylineList;
 	protected List<SVGRoundedBox> roundedBoxList;
 	protected SVGElement rawDiagram;
+	private NearPointIndex<SVGPath> pathIndex;
+	private NearPointIndex<SVGRoundedBox> roundedBoxIndex;
+	private NearPointIndex<SVGTriangle> triangleIndex;
+	private NearPointIndex<SVGPolyline> polylineIndex;
+	private NearPointIndex<SVGLine> lineIndex;
+	private NearPointIndex<SVGRect> rectIndex;
 
 	public SVGDiagram() {
 		super();
@@ -55,6 +65,7 @@ public class SVGDiagram extends SVGG {
 		rectList = new ArrayList<SVGRect>();
 		pathList = new ArrayList<SVGPath>();
 		roundedBoxList = new ArrayList<SVGRoundedBox>();
+		createShapeIndexes();
 		
 		newG = new SVGG();
 		for (List<SVGShape> shapeList : shapeListList) {
@@ -101,96 +112,77 @@ public class SVGDiagram extends SVGG {
 		LOG.trace("triangles "+triangleList.size());
 	}
 
-	private void addNewPath(SVGPath path) {
-		if (!containsPath(pathList, path, eps)) {
-			pathList.add(path);
-		}
+	/** lists are deduplicated through NearPointIndexes keyed on a first coordinate.
+	 * 
+	 * equality is still tested by each shape's hasEqualCoordinates (or isEqual).
+	 */
+	private void createShapeIndexes() {
+		pathIndex = new NearPointIndex<SVGPath>(eps, 
+				path -> getFirstCoord(path), 
+				(path, path0) -> path.hasEqualCoordinates(path0, eps));
+		roundedBoxIndex = new NearPointIndex<SVGRoundedBox>(eps, 
+				roundedBox -> getFirstCoord(roundedBox.getPath()), 
+				(roundedBox, roundedBox0) -> roundedBox.getPath().hasEqualCoordinates(roundedBox0.getPath(), eps));
+		triangleIndex = new NearPointIndex<SVGTriangle>(eps, 
+				triangle -> getFirstCoord(triangle), 
+				(triangle, triangle0) -> triangle.hasEqualCoordinates(triangle0, eps));
+		polylineIndex = new NearPointIndex<SVGPolyline>(eps, 
+				polyline -> getFirstCoord(polyline), 
+				(polyline, polyline0) -> polyline.hasEqualCoordinates(polyline0, eps));
+		lineIndex = new NearPointIndex<SVGLine>(eps, 
+				line -> line.getXY(0), 
+				(line, line0) -> line.hasEqualCoordinates(line0, eps));
+		rectIndex = new NearPointIndex<SVGRect>(eps, 
+				rect -> rect.getBoundingBox().getCorners()[0], 
+				(rect, rect0) -> rect.isEqual(rect0, eps));
+	}
+
+	private static Real2 getFirstCoord(SVGPath path) {
+		Real2Array coords = path.getCoords();
+		return coords.size() == 0 ? null : coords.get(0);
+	}
+
+	private static Real2 getFirstCoord(SVGPoly poly) {
+		Real2Array coords = poly.getReal2Array();
+		return coords == null || coords.size() == 0 ? null : coords.get(0);
 	}
 
-	private boolean containsPath(List<SVGPath> pathList, SVGPath path0, double delta) {
-		for (SVGPath path : pathList) {
-			if (path.hasEqualCoordinates(path0, delta)) {
-				return true;
-			}
+	private void addNewPath(SVGPath path) {
+		if (pathIndex.addIfAbsent(path)) {
+			pathList.add(path);
 		}
-		return false;
 	}
 
 	private void addNewRoundedBox(SVGRoundedBox roundedBox) {
-		if (!containsRoundedBox(roundedBoxList, roundedBox, eps)) {
+		if (roundedBoxIndex.addIfAbsent(roundedBox)) {
 			roundedBoxList.add(roundedBox);
 		}
 	}
 
-	private boolean containsRoundedBox(List<SVGRoundedBox> roundedBoxList, SVGRoundedBox roundedBox0, double delta) {
-		for (SVGRoundedBox roundedBox : roundedBoxList) {
-			if (roundedBox.getPath().hasEqualCoordinates(roundedBox0.getPath(), delta)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	private void addNewTriangle(SVGTriangle triangle) {
-		if (!containsTriangle(triangleList, triangle, eps)) {
+		if (triangleIndex.addIfAbsent(triangle)) {
 			triangleList.add(triangle);
 		}
 	}
 
-	private boolean containsTriangle(List<SVGTriangle> triangleList, SVGTriangle triangle0, double delta) {
-		for (SVGTriangle triangle : triangleList) {
-			if (triangle.hasEqualCoordinates(triangle0, delta)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	private void addNewPolyline(SVGPolyline polyline) {
-		if (!containsPolyline(polylineList, polyline, eps)) {
+		if (polylineIndex.addIfAbsent(polyline)) {
 			polylineList.add(polyline);
 		}
 	}
 
-	private boolean containsPolyline(List<SVGPolyline> polylineList, SVGPolyline polyline0, double delta) {
-		for (SVGPolyline polyline : polylineList) {
-			if (polyline.hasEqualCoordinates(polyline0, delta)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	private void addNewLine(SVGLine line) {
-		if (!containsLine(lineList, line, eps)) {
+		if (lineIndex.addIfAbsent(line)) {
 			lineList.add(line);
 		}
 	}
 
-	private boolean containsLine(List<SVGLine> lineList, SVGLine line0, double delta) {
-		for (SVGLine line : lineList) {
-			if (line.hasEqualCoordinates(line0, delta)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	private void addNewRect(SVGRect rect) {
-		if (!containsRect(rectList, rect, eps)) {
+		if (rectIndex.addIfAbsent(rect)) {
 			rectList.add(rect);
 		}
 	}
 
-	private boolean containsRect(List<SVGRect> rectList, SVGRect rect0, double delta) {
-		for (SVGRect rect : rectList) {
-			if (rect.isEqual(rect0, delta)) {
-				return true;
-			}
-		}
-		return false;
-	}
-
 	protected void createTextBoxes() {
 		textBoxList = new ArrayList<SVGTextBox>();
 		for (SVGRect rect : rectList) {
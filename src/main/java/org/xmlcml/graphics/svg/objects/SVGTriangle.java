@@ -16,6 +16,7 @@ import org.xmlcml.graphics.svg.SVGPoly;
 import org.xmlcml.graphics.svg.SVGPolygon;
 import org.xmlcml.graphics.svg.SVGPolyline;
 import org.xmlcml.graphics.svg.SVGShape;
+import org.xmlcml.graphics.svg.SVGUtil;
 import org.xmlcml.graphics.svg.path.PathPrimitiveList;
 
 public class SVGTriangle extends SVGPolygon {
@@ -128,6 +129,12 @@ public class SVGTriangle extends SVGPolygon {
 	public String getGeometricHash() {
 		return String.valueOf(polyline.getReal2Array());
 	}
+
+	@Override
+	public double[] getGeometricCoordinates() {
+		Real2Array r2a = polyline.getReal2Array();
+		return r2a == null ? null : SVGUtil.createInterleavedXYArray(r2a);
+	}
 	
 	public static List<SVGTriangle> extractTriangles(List<? extends SVGElement> elements) {
 		List<SVGTriangle> triangleList = new ArrayList<SVGTriangle>();
@@ -31,6 +31,11 @@ public class ClosePrimitive extends SVGPathPrimitive {
 	public String getTag() {
 		return TAG;
 	}
+
+	@Override
+	public ClosePrimitive copy() {
+		return copyCoordsTo(new ClosePrimitive());
+	}
 	
 	@Override
 	public void operateOn(GeneralPath path) {
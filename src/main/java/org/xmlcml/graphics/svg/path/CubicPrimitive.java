@@ -22,6 +22,11 @@ public class CubicPrimitive extends SVGPathPrimitive {
 	public String getTag() {
 		return TAG;
 	}
+
+	@Override
+	public CubicPrimitive copy() {
+		return copyCoordsTo(new CubicPrimitive(coordArray));
+	}
 	
 	@Override
 	public void operateOn(GeneralPath path) {
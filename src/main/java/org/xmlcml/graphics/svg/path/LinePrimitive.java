@@ -23,6 +23,11 @@ public class LinePrimitive extends SVGPathPrimitive {
 	public String getTag() {
 		return TAG;
 	}
+
+	@Override
+	public LinePrimitive copy() {
+		return copyCoordsTo(new LinePrimitive(new Real2()));
+	}
 	
 	public String toString() {
 		return TAG + formatCoords(coordArray.get(0));
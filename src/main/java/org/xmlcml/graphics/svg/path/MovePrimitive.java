@@ -19,6 +19,11 @@ public class MovePrimitive extends SVGPathPrimitive {
 	public String getTag() {
 		return TAG;
 	}
+
+	@Override
+	public MovePrimitive copy() {
+		return copyCoordsTo(new MovePrimitive(new Real2()));
+	}
 	
 	@Override
 	public void operateOn(GeneralPath path) {
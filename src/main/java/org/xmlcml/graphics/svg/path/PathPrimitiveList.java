@@ -3,6 +3,8 @@ package org.xmlcml.graphics.svg.path;
 import org.xmlcml.euclid.Angle;
 import org.xmlcml.euclid.Real2;
 import org.xmlcml.euclid.Real2Array;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
 import org.xmlcml.graphics.svg.SVGLine;
 import org.xmlcml.graphics.svg.SVGPath;
 import org.xmlcml.graphics.svg.SVGPathPrimitive;
@@ -268,6 +270,68 @@ public class PathPrimitiveList implements Iterable<SVGPathPrimitive> {
 		return SVGPath.constructDString(this);
 	}
 
+	/** number of coordinate pairs in all primitives.
+	 * 
+	 * @return
+	 */
+	public int getCoordinateCount() {
+		int count = 0;
+		for (SVGPathPrimitive primitive : this) {
+			Real2Array coordArray = primitive.getCoordArray();
+			if (coordArray != null) {
+				count += coordArray.size();
+			}
+		}
+		return count;
+	}
+
+	/** copies the coordinates of all primitives into xy as x0,y0,x1,y1...
+	 * 
+	 * @param xy must have room for 2 * getCoordinateCount() values from start
+	 * @param start index of first x
+	 * @return index after the last value written
+	 */
+	public int getCoordinates(double[] xy, int start) {
+		for (SVGPathPrimitive primitive : this) {
+			Real2Array coordArray = primitive.getCoordArray();
+			if (coordArray != null) {
+				double[] xx = coordArray.getXArray().getArray();
+				double[] yy = coordArray.getYArray().getArray();
+				for (int i = 0; i < coordArray.size(); i++) {
+					xy[start++] = xx[i];
+					xy[start++] = yy[i];
+				}
+			}
+		}
+		return start;
+	}
+
+	/** writes coordinates from xy back into the primitives in place (inverse of getCoordinates).
+	 * 
+	 * first points (zeroth coordinates) are reset from the new coordinates.
+	 * 
+	 * @param xy
+	 * @param start index of first x
+	 * @return index after the last value read
+	 */
+	public int setCoordinates(double[] xy, int start) {
+		for (SVGPathPrimitive primitive : this) {
+			Real2Array coordArray = primitive.getCoordArray();
+			if (coordArray != null) {
+				double[] xx = coordArray.getXArray().getArray();
+				double[] yy = coordArray.getYArray().getArray();
+				for (int i = 0; i < coordArray.size(); i++) {
+					xx[i] = xy[start++];
+					yy[i] = xy[start++];
+				}
+			}
+		}
+		if (size() > 0) {
+			setFirstPoints();
+		}
+		return start;
+	}
+
 	public void replaceCoordinateArray(Real2Array coordArray, int i) {
 		if (primitiveList != null) {
 			if (this.get(i) instanceof LinePrimitive) {
@@ -319,6 +383,180 @@ public class PathPrimitiveList implements Iterable<SVGPathPrimitive> {
 		}
 	}
 
+	/** removes flagged primitives in place in a single pass.
+	 *
+	 * first points are reset once at the end.
+	 *
+	 * @param remove one flag per primitive
+	 * @return number removed
+	 */
+	public int remove(boolean[] remove) {
+		int size = size();
+		int j = 0;
+		for (int i = 0; i < size; i++) {
+			if (!remove[i]) {
+				primitiveList.set(j++, primitiveList.get(i));
+			}
+		}
+		int removed = size - j;
+		if (removed > 0) {
+			primitiveList.subList(j, size).clear();
+			if (j > 0) {
+				setFirstPoints();
+			}
+		}
+		return removed;
+	}
+
+	/** new list of copies of the primitives from start to end.
+	 *
+	 * primitives are copied so that changes to the subList do not affect this.
+	 *
+	 * @param start
+	 * @param end exclusive
+	 * @return
+	 */
+	public PathPrimitiveList getSubList(int start, int end) {
+		PathPrimitiveList subList = new PathPrimitiveList();
+		subList.ensurePathPrimitiveList();
+		for (SVGPathPrimitive primitive : primitiveList.subList(start, end)) {
+			subList.primitiveList.add(primitive.copy());
+		}
+		if (end > start) {
+			subList.setFirstPoints();
+		}
+		return subList;
+	}
+
+	/** deep copy; primitives are copied.
+	 *
+	 * @return
+	 */
+	public PathPrimitiveList copy() {
+		ensurePathPrimitiveList();
+		PathPrimitiveList copy = getSubList(0, primitiveList.size());
+		copy.isClosed = isClosed;
+		return copy;
+	}
+
+	/** streams the straight segments of the primitives, flattening curves.
+	 * 
+	 * @param tolerance maximum distance of a curve from its segments
+	 * @return
+	 */
+	public PathSegmentIterator createSegmentIterator(double tolerance) {
+		ensurePathPrimitiveList();
+		return new PathSegmentIterator(this, tolerance);
+	}
+
+	/** exact bounding box of the lines and curves.
+	 * 
+	 * curves contribute their end points and extrema (roots of the derivative)
+	 * but not their control points.
+	 * 
+	 * @return empty range if no coordinates
+	 */
+	public Real2Range getBoundingBox() {
+		double[] range = {Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE};
+		double currentX = Double.NaN;
+		double currentY = Double.NaN;
+		double startX = Double.NaN;
+		double startY = Double.NaN;
+		for (SVGPathPrimitive primitive : this) {
+			Real2Array coordArray = primitive.getCoordArray();
+			if (primitive instanceof ClosePrimitive) {
+				currentX = startX;
+				currentY = startY;
+				continue;
+			}
+			if (coordArray == null || coordArray.size() == 0) {
+				continue;
+			}
+			double[] xx = coordArray.getXArray().getArray();
+			double[] yy = coordArray.getYArray().getArray();
+			int last = coordArray.size() - 1;
+			boolean hasCurrent = !Double.isNaN(currentX);
+			if (primitive instanceof CubicPrimitive && hasCurrent) {
+				includeCubicExtrema(range, 0, currentX, xx[0], xx[1], xx[2]);
+				includeCubicExtrema(range, 2, currentY, yy[0], yy[1], yy[2]);
+			} else if (primitive instanceof QuadPrimitive && hasCurrent) {
+				includeQuadExtrema(range, 0, currentX, xx[0], xx[1]);
+				includeQuadExtrema(range, 2, currentY, yy[0], yy[1]);
+			} else if (!(primitive instanceof MovePrimitive || primitive instanceof LinePrimitive)) {
+				for (int i = 0; i < last; i++) {
+					include(range, xx[i], yy[i]);
+				}
+			}
+			include(range, xx[last], yy[last]);
+			currentX = xx[last];
+			currentY = yy[last];
+			if (primitive instanceof MovePrimitive) {
+				startX = currentX;
+				startY = currentY;
+			}
+		}
+		return range[0] > range[1] ? new Real2Range() :
+			new Real2Range(new RealRange(range[0], range[1]), new RealRange(range[2], range[3]));
+	}
+
+	private static void include(double[] range, double x, double y) {
+		include(range, 0, x);
+		include(range, 2, y);
+	}
+
+	private static void include(double[] range, int axis, double value) {
+		if (value < range[axis]) {
+			range[axis] = value;
+		}
+		if (value > range[axis + 1]) {
+			range[axis + 1] = value;
+		}
+	}
+
+	/** includes interior extrema of a cubic Bezier along one axis.
+	 * 
+	 * B'(t)/3 = a(1-t)^2 + 2b t(1-t) + c t^2 with a = p1-p0, b = p2-p1, c = p3-p2.
+	 */
+	private static void includeCubicExtrema(double[] range, int axis, double p0, double p1, double p2, double p3) {
+		double a = p1 - p0;
+		double b = p2 - p1;
+		double c = p3 - p2;
+		double qa = a - 2.0 * b + c;
+		double qb = 2.0 * (b - a);
+		double qc = a;
+		if (Math.abs(qa) < 1.0e-12 * (Math.abs(a) + Math.abs(b) + Math.abs(c))) {
+			if (qb != 0.0) {
+				includeCubicPoint(range, axis, p0, p1, p2, p3, -qc / qb);
+			}
+			return;
+		}
+		double disc = qb * qb - 4.0 * qa * qc;
+		if (disc < 0.0) {
+			return;
+		}
+		double root = Math.sqrt(disc);
+		includeCubicPoint(range, axis, p0, p1, p2, p3, (-qb + root) / (2.0 * qa));
+		includeCubicPoint(range, axis, p0, p1, p2, p3, (-qb - root) / (2.0 * qa));
+	}
+
+	private static void includeCubicPoint(double[] range, int axis, double p0, double p1, double p2, double p3, double t) {
+		if (t > 0.0 && t < 1.0) {
+			double u = 1.0 - t;
+			include(range, axis, u * u * u * p0 + 3.0 * u * u * t * p1 + 3.0 * u * t * t * p2 + t * t * t * p3);
+		}
+	}
+
+	private static void includeQuadExtrema(double[] range, int axis, double p0, double p1, double p2) {
+		double denominator = p0 - 2.0 * p1 + p2;
+		if (denominator != 0.0) {
+			double t = (p0 - p1) / denominator;
+			if (t > 0.0 && t < 1.0) {
+				double u = 1.0 - t;
+				include(range, axis, u * u * p0 + 2.0 * u * t * p1 + t * t * p2);
+			}
+		}
+	}
+
 	/** creates a line from thin rectangle.
 	 * 
 	 * @param angleEps
@@ -0,0 +1,281 @@
+package org.xmlcml.graphics.svg.path;
+
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2Array;
+import org.xmlcml.graphics.svg.SVGPathPrimitive;
+
+/** streams the straight segments of a path, flattening curves on the fly.
+ *
+ * <p>
+ * Each call of next() moves to the next segment, whose ends are then read with getX0()...getY1();
+ * no objects are created per segment. Lines give one segment each. CubicPrimitive and QuadPrimitive
+ * are subdivided adaptively (de Casteljau halving) until the control points are within tolerance
+ * of the chord, so no point of the curve is further than tolerance from the segments; flat parts of
+ * a curve give few segments and tight bends many. Quads are raised to cubics exactly.
+ * </p>
+ * <p>
+ * Moves start a new subpath and give no segment; Z gives a closing segment back to the start of
+ * the subpath (none if already there). Unknown primitives are skipped. The primitives must not be
+ * changed while iterating.
+ * </p>
+ *
+ * @author pm286
+ *
+ */
+public class PathSegmentIterator {
+
+	private final static Logger LOG = Logger.getLogger(PathSegmentIterator.class);
+
+	public final static double DEFAULT_TOLERANCE = 0.1;
+	/** maximum halvings of a curve (2^MAX_LEVEL segments at most) */
+	private final static int MAX_LEVEL = 10;
+	private final static int CUBIC = 8;
+
+	private PathPrimitiveList primitiveList;
+	private double tolerance2;
+	private int primitiveIndex;
+	private int segmentPrimitiveIndex;
+	private double currentX;
+	private double currentY;
+	private double startX;
+	private double startY;
+	private boolean hasCurrent;
+	private boolean subpathStart;
+
+	private double x0;
+	private double y0;
+	private double x1;
+	private double y1;
+	private boolean curve;
+	private boolean closing;
+	private boolean segmentSubpathStart;
+
+	// stack of cubics (x0,y0,cx1,cy1,cx2,cy2,x3,y3) waiting to be flattened
+	private double[] curveStack;
+	private int[] levelStack;
+	private int curveCount;
+
+	/**
+	 * @param primitiveList absolute primitives (as from SVGPath.ensurePrimitives())
+	 * @param tolerance maximum distance of a curve from its segments
+	 */
+	public PathSegmentIterator(PathPrimitiveList primitiveList, double tolerance) {
+		if (!(tolerance > 0.0)) {
+			throw new RuntimeException("tolerance must be positive: "+tolerance);
+		}
+		this.primitiveList = primitiveList;
+		this.tolerance2 = tolerance * tolerance;
+		curveStack = new double[CUBIC * (MAX_LEVEL + 1)];
+		levelStack = new int[MAX_LEVEL + 1];
+	}
+
+	/** moves to the next segment.
+	 *
+	 * @return false if there are no more segments
+	 */
+	public boolean next() {
+		if (curveCount > 0) {
+			nextCurveSegment();
+			return true;
+		}
+		while (primitiveIndex < primitiveList.size()) {
+			int index = primitiveIndex++;
+			SVGPathPrimitive primitive = primitiveList.get(index);
+			Real2Array coordArray = primitive.getCoordArray();
+			if (primitive instanceof MovePrimitive) {
+				if (coordArray != null && coordArray.size() > 0) {
+					currentX = startX = coordArray.getXArray().getArray()[0];
+					currentY = startY = coordArray.getYArray().getArray()[0];
+					hasCurrent = true;
+					subpathStart = true;
+				}
+			} else if (primitive instanceof ClosePrimitive) {
+				boolean hasSegment = hasCurrent && (currentX != startX || currentY != startY);
+				if (hasSegment) {
+					setSegment(index, currentX, currentY, startX, startY, false);
+					closing = true;
+				}
+				subpathStart = true;
+				if (hasSegment) {
+					return true;
+				}
+			} else if (!hasCurrent || coordArray == null || coordArray.size() == 0) {
+				continue;
+			} else if (primitive instanceof LinePrimitive) {
+				double[] xx = coordArray.getXArray().getArray();
+				double[] yy = coordArray.getYArray().getArray();
+				setSegment(index, currentX, currentY, xx[0], yy[0], false);
+				return true;
+			} else if (primitive instanceof CubicPrimitive) {
+				double[] xx = coordArray.getXArray().getArray();
+				double[] yy = coordArray.getYArray().getArray();
+				pushCurve(index, xx[0], yy[0], xx[1], yy[1], xx[2], yy[2]);
+				nextCurveSegment();
+				return true;
+			} else if (primitive instanceof QuadPrimitive) {
+				double[] xx = coordArray.getXArray().getArray();
+				double[] yy = coordArray.getYArray().getArray();
+				// exact degree elevation
+				pushCurve(index,
+						currentX + 2.0 * (xx[0] - currentX) / 3.0, currentY + 2.0 * (yy[0] - currentY) / 3.0,
+						xx[1] + 2.0 * (xx[0] - xx[1]) / 3.0, yy[1] + 2.0 * (yy[0] - yy[1]) / 3.0,
+						xx[1], yy[1]);
+				nextCurveSegment();
+				return true;
+			} else {
+				LOG.trace("skipped primitive: "+primitive.getTag());
+			}
+		}
+		return false;
+	}
+
+	/** start of current segment.
+	 */
+	public double getX0() {
+		return x0;
+	}
+
+	public double getY0() {
+		return y0;
+	}
+
+	/** end of current segment.
+	 */
+	public double getX1() {
+		return x1;
+	}
+
+	public double getY1() {
+		return y1;
+	}
+
+	/** index in the primitive list of the primitive giving the current segment.
+	 */
+	public int getPrimitiveIndex() {
+		return segmentPrimitiveIndex;
+	}
+
+	/** is the current segment part of a flattened curve?
+	 */
+	public boolean isCurve() {
+		return curve;
+	}
+
+	/** is the current segment the implicit line of a Z?
+	 */
+	public boolean isClosing() {
+		return closing;
+	}
+
+	/** is the current segment the first of a subpath?
+	 */
+	public boolean isSubpathStart() {
+		return segmentSubpathStart;
+	}
+
+	private void setSegment(int index, double xa, double ya, double xb, double yb, boolean isCurve) {
+		segmentPrimitiveIndex = index;
+		x0 = xa;
+		y0 = ya;
+		x1 = xb;
+		y1 = yb;
+		curve = isCurve;
+		closing = false;
+		segmentSubpathStart = subpathStart;
+		subpathStart = false;
+		currentX = xb;
+		currentY = yb;
+	}
+
+	private void pushCurve(int index, double cx1, double cy1, double cx2, double cy2, double x3, double y3) {
+		segmentPrimitiveIndex = index;
+		double[] c = curveStack;
+		c[0] = currentX;
+		c[1] = currentY;
+		c[2] = cx1;
+		c[3] = cy1;
+		c[4] = cx2;
+		c[5] = cy2;
+		c[6] = x3;
+		c[7] = y3;
+		levelStack[0] = 0;
+		curveCount = 1;
+	}
+
+	/** pops cubics, halving until the top one is flat, and emits its chord.
+	 *
+	 * the left half is always above the right half on the stack so segments come out in order.
+	 */
+	private void nextCurveSegment() {
+		double[] c = curveStack;
+		int top = CUBIC * (curveCount - 1);
+		while (levelStack[curveCount - 1] < MAX_LEVEL && !isFlat(c, top)) {
+			int level = levelStack[curveCount - 1] + 1;
+			int left = top + CUBIC;
+			// right half stays at top, left half goes above it
+			double xa = c[top];
+			double ya = c[top + 1];
+			double x01 = (c[top] + c[top + 2]) * 0.5;
+			double y01 = (c[top + 1] + c[top + 3]) * 0.5;
+			double x12 = (c[top + 2] + c[top + 4]) * 0.5;
+			double y12 = (c[top + 3] + c[top + 5]) * 0.5;
+			double x23 = (c[top + 4] + c[top + 6]) * 0.5;
+			double y23 = (c[top + 5] + c[top + 7]) * 0.5;
+			double x012 = (x01 + x12) * 0.5;
+			double y012 = (y01 + y12) * 0.5;
+			double x123 = (x12 + x23) * 0.5;
+			double y123 = (y12 + y23) * 0.5;
+			double xm = (x012 + x123) * 0.5;
+			double ym = (y012 + y123) * 0.5;
+			c[left] = xa;
+			c[left + 1] = ya;
+			c[left + 2] = x01;
+			c[left + 3] = y01;
+			c[left + 4] = x012;
+			c[left + 5] = y012;
+			c[left + 6] = xm;
+			c[left + 7] = ym;
+			c[top] = xm;
+			c[top + 1] = ym;
+			c[top + 2] = x123;
+			c[top + 3] = y123;
+			c[top + 4] = x23;
+			c[top + 5] = y23;
+			levelStack[curveCount - 1] = level;
+			levelStack[curveCount] = level;
+			curveCount++;
+			top = left;
+		}
+		setSegment(segmentPrimitiveIndex, c[top], c[top + 1], c[top + 6], c[top + 7], true);
+		curveCount--;
+	}
+
+	/** are both control points within tolerance of the chord (as a segment)?
+	 */
+	private boolean isFlat(double[] c, int i) {
+		return getSegmentDistanceSquared(c, i, i + 2) <= tolerance2 &&
+				getSegmentDistanceSquared(c, i, i + 4) <= tolerance2;
+	}
+
+	private static double getSegmentDistanceSquared(double[] c, int i, int point) {
+		double x0 = c[i];
+		double y0 = c[i + 1];
+		double dx = c[i + 6] - x0;
+		double dy = c[i + 7] - y0;
+		double px = c[point] - x0;
+		double py = c[point + 1] - y0;
+		double length2 = dx * dx + dy * dy;
+		if (length2 > 0.0) {
+			double t = (px * dx + py * dy) / length2;
+			if (t > 1.0) {
+				px -= dx;
+				py -= dy;
+			} else if (t > 0.0) {
+				px -= t * dx;
+				py -= t * dy;
+			}
+		}
+		return px * px + py * py;
+	}
+
+}
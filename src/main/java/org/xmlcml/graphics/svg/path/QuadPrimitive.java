@@ -26,6 +26,11 @@ public class QuadPrimitive extends SVGPathPrimitive {
 	public String getTag() {
 		return TAG;
 	}
+
+	@Override
+	public QuadPrimitive copy() {
+		return copyCoordsTo(new QuadPrimitive());
+	}
 	
 	public String toString() {
 		String s = TAG;
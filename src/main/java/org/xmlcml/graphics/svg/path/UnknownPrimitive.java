@@ -17,6 +17,11 @@ public class UnknownPrimitive extends SVGPathPrimitive {
 	public String getTag() {
 		return TAG;
 	}
+
+	@Override
+	public UnknownPrimitive copy() {
+		return copyCoordsTo(new UnknownPrimitive(TAG.charAt(0)));
+	}
 	
 	public String toString() {
 		return TAG;
@@ -111,6 +111,8 @@ public class Axis {
 	private Double highestAxisValue;
 
 	private Double pixelToValueScale;
+	private boolean logarithmic;
+	private AxisValueTransform valueTransform;
 
 
 	public Axis(AxisAnalyzer axisAnalyzerX) {
@@ -809,6 +811,36 @@ public class Axis {
 		return realArray;
 	}
 	
+	/** transform from pixels to values through the lowest and highest major ticks.
+	 * 
+	 * @return null if tick values are not known
+	 */
+	public AxisValueTransform getOrCreateValueTransform() {
+		if (valueTransform == null) {
+			ensureTickmarks();
+			if (lowestTickMarkValue != null && lowestMajorTickCoordInPixels != null) {
+				valueTransform = AxisValueTransform.createTransform(lowestMajorTickCoordInPixels, highestMajorTickCoordInPixels, 
+						lowestTickMarkValue, highestTickMarkValue, logarithmic);
+			}
+		}
+		return valueTransform;
+	}
+
+	public boolean isLogarithmic() {
+		return logarithmic;
+	}
+
+	/** values are interpolated logarithmically between ticks.
+	 * 
+	 * not detected automatically.
+	 * 
+	 * @param logarithmic
+	 */
+	public void setLogarithmic(boolean logarithmic) {
+		this.logarithmic = logarithmic;
+		this.valueTransform = null;
+	}
+
 	void addAxisAttribute(SVGElement element, String id) {
 		element.addAttribute(new Attribute(AXIS, id));
 	}
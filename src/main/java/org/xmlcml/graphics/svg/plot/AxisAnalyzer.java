@@ -36,6 +36,7 @@ public class AxisAnalyzer {
 	private Axis horizontalAxis;
 	private Axis verticalAxis;
 	private GraphPlotBox plotBox;
+	private boolean readScaleValuesAndTitles = true;
 	
 	private SVGG g;
 	public double eps;
@@ -49,6 +50,17 @@ public class AxisAnalyzer {
 	public void setEpsilon(double eps) {
 		this.eps = eps;
 	}
+
+	/** whether axes read their scale values and titles from the texts of g.
+	 * 
+	 * If false, axes are found from their lines and ticks only. Defaults to true, but
+	 * Axis.processScaleValuesAndTitlesNew() has still to be rewritten and always throws.
+	 * 
+	 * @param readScaleValuesAndTitles
+	 */
+	public void setReadScaleValuesAndTitles(boolean readScaleValuesAndTitles) {
+		this.readScaleValuesAndTitles = readScaleValuesAndTitles;
+	}
 	public void createVerticalHorizontalAxisListAndPlotBox() {
 		createVerticalAxisList();
 		createHorizontalAxisList();
@@ -174,7 +186,9 @@ public class AxisAnalyzer {
 				Axis axis = createAxis(complexLine, orientation);
 				if (axis != null) {
 					axisList.add(axis);
-					axis.processScaleValuesAndTitlesNew(g);
+					if (readScaleValuesAndTitles) {
+						axis.processScaleValuesAndTitlesNew(g);
+					}
 					axis.createAxisGroup();
 					LOG.trace("************  AXIS "+axis);
 				}
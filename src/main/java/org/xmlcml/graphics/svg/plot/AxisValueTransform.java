@@ -0,0 +1,93 @@
+package org.xmlcml.graphics.svg.plot;
+
+/** maps pixel coordinates along an axis to data values.
+ *
+ * <p>
+ * Precomputed from two reference ticks (pixel, value). Linear axes use the same
+ * arithmetic as RealArray.createScaledArrayToRange() so results are identical;
+ * logarithmic axes interpolate log10 of the values. Works on primitive arrays
+ * with a stride so interleaved x,y coordinates can be mapped in place or into
+ * a caller's array without creating objects.
+ * </p>
+ *
+ * @author pm286
+ *
+ */
+public class AxisValueTransform {
+
+	private double pixel0;
+	private double value0;
+	private double scale;
+	private boolean logarithmic;
+
+	private AxisValueTransform(double pixel0, double value0, double scale, boolean logarithmic) {
+		this.pixel0 = pixel0;
+		this.value0 = value0;
+		this.scale = scale;
+		this.logarithmic = logarithmic;
+	}
+
+	/** transform through two reference points.
+	 *
+	 * @param pixel0 coordinate of first tick
+	 * @param pixel1 coordinate of second tick
+	 * @param value0 value at first tick
+	 * @param value1 value at second tick
+	 * @param logarithmic if true values must be positive
+	 * @return null if points coincide or (log) values are not positive
+	 */
+	public static AxisValueTransform createTransform(double pixel0, double pixel1, double value0, double value1,
+			boolean logarithmic) {
+		if (logarithmic) {
+			if (!(value0 > 0.0 && value1 > 0.0)) {
+				return null;
+			}
+			value0 = Math.log10(value0);
+			value1 = Math.log10(value1);
+		}
+		double scale = (value0 - value1) / (pixel0 - pixel1);
+		if (Double.isNaN(scale) || Double.isInfinite(scale)) {
+			return null;
+		}
+		return new AxisValueTransform(pixel0, value0, scale, logarithmic);
+	}
+
+	public boolean isLogarithmic() {
+		return logarithmic;
+	}
+
+	public double transform(double pixel) {
+		double value = (pixel - pixel0) * scale + value0;
+		return logarithmic ? Math.pow(10.0, value) : value;
+	}
+
+	/** transforms count coordinates.
+	 *
+	 * in and out may be the same array.
+	 *
+	 * @param in pixel coordinates
+	 * @param inStart index of first
+	 * @param out values
+	 * @param outStart index of first
+	 * @param count number to transform
+	 * @param stride step between successive coordinates in both arrays (2 for interleaved x,y)
+	 */
+	public void transform(double[] in, int inStart, double[] out, int outStart, int count, int stride) {
+		int i = inStart;
+		int j = outStart;
+		if (logarithmic) {
+			for (int k = 0; k < count; k++, i += stride, j += stride) {
+				out[j] = Math.pow(10.0, (in[i] - pixel0) * scale + value0);
+			}
+		} else {
+			for (int k = 0; k < count; k++, i += stride, j += stride) {
+				out[j] = (in[i] - pixel0) * scale + value0;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return (logarithmic ? "log " : "")+"value = ("+"pixel - "+pixel0+") * "+scale+" + "+value0;
+	}
+}
@@ -51,6 +51,63 @@ public class GraphPlotBox {
 		return boxRect;
 	}
 
+	/** maps interleaved pixel coordinates (x0, y0, x1, y1...) to data values.
+	 * 
+	 * x uses the horizontal axis and y the vertical. If an axis is missing or has no
+	 * tick values its coordinates are copied unchanged.
+	 * 
+	 * @param pixelXY
+	 * @param valueXY receives values; may be pixelXY
+	 */
+	public void transformPixelsToValues(double[] pixelXY, double[] valueXY) {
+		if (pixelXY.length % 2 != 0) {
+			throw new IllegalArgumentException("odd number of coordinates: "+pixelXY.length);
+		}
+		transformPixelsToValues(pixelXY, 0, valueXY, 0, pixelXY.length / 2);
+	}
+
+	/** maps interleaved pixel coordinates for pointCount points.
+	 * 
+	 * @param pixelXY
+	 * @param pixelStart index of first x
+	 * @param valueXY receives values; may be pixelXY
+	 * @param valueStart index of first x
+	 * @param pointCount
+	 */
+	public void transformPixelsToValues(double[] pixelXY, int pixelStart, double[] valueXY, int valueStart, int pointCount) {
+		if (pixelStart + 2 * pointCount > pixelXY.length || valueStart + 2 * pointCount > valueXY.length) {
+			throw new IllegalArgumentException("arrays too short for "+pointCount+" points");
+		}
+		transform(getHorizontalTransform(), pixelXY, pixelStart, valueXY, valueStart, pointCount);
+		transform(getVerticalTransform(), pixelXY, pixelStart + 1, valueXY, valueStart + 1, pointCount);
+	}
+
+	private static void transform(AxisValueTransform transform, double[] in, int inStart, double[] out, int outStart, int count) {
+		if (transform != null) {
+			transform.transform(in, inStart, out, outStart, count, 2);
+		} else if (in != out || inStart != outStart) {
+			for (int k = 0; k < count; k++) {
+				out[outStart + 2 * k] = in[inStart + 2 * k];
+			}
+		}
+	}
+
+	/** transform for horizontal axis.
+	 * 
+	 * @return null if no axis or no tick values
+	 */
+	public AxisValueTransform getHorizontalTransform() {
+		return (horizontalAxis == null) ? null : horizontalAxis.getOrCreateValueTransform();
+	}
+
+	/** transform for vertical axis.
+	 * 
+	 * @return null if no axis or no tick values
+	 */
+	public AxisValueTransform getVerticalTransform() {
+		return (verticalAxis == null) ? null : verticalAxis.getOrCreateValueTransform();
+	}
+
 	public Real2Range getBoxRange() {
 		return boxRange;
 	}
@@ -0,0 +1,465 @@
+package org.xmlcml.graphics.svg.plot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGG;
+import org.xmlcml.graphics.svg.SVGPolyline;
+import org.xmlcml.graphics.svg.SVGShape;
+import org.xmlcml.graphics.svg.linestuff.Path2ShapeConverter;
+
+import nu.xom.Node;
+
+/** batch extraction of shapes, axes and polyline data from many pages.
+ *
+ * <p>
+ * Pages pass through three stages - shape conversion (Path2ShapeConverter), axis detection
+ * (AxisAnalyzer, from lines and ticks only; scale values and titles are not yet read) and
+ * polyline analysis (SVGPolylineAnalyzer) - each with its own pool of
+ * workers, connected by bounded queues so a slow stage holds back the reader rather than
+ * filling memory. The analyzers hold per-page state in fields, so each page gets fresh
+ * instances and is only touched by one worker at a time.
+ * </p>
+ * <p>
+ * A page which fails in one stage is passed on with its error recorded and skipped by
+ * later stages. Each stage keeps StageStatistics (pages, failures, latency, throughput).
+ * </p>
+ * <p>
+ * Pages which are not SVGG have their children moved into a new SVGG child, as AxisAnalyzer
+ * and SVGPolylineAnalyzer work on SVGGs.
+ * </p>
+ *
+ * @author pm286
+ *
+ */
+public class PlotExtractionPipeline {
+
+	private static final Logger LOG = Logger.getLogger(PlotExtractionPipeline.class);
+	static {
+		LOG.setLevel(Level.DEBUG);
+	}
+
+	public enum Stage {
+		SHAPES,
+		AXES,
+		POLYLINES,
+	}
+
+	private static final double DEFAULT_EPS = 0.5;
+	private static final int DEFAULT_QUEUE_CAPACITY = 16;
+	/** marks end of input; never returned */
+	private static final PageResult END = new PageResult(-1, null);
+
+	private double eps = DEFAULT_EPS;
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+	private int[] workerCounts;
+	private StageStatistics[] stageStatistics;
+
+	public PlotExtractionPipeline() {
+		int processors = Runtime.getRuntime().availableProcessors();
+		workerCounts = new int[Stage.values().length];
+		for (Stage stage : Stage.values()) {
+			workerCounts[stage.ordinal()] = processors;
+		}
+		resetStatistics();
+	}
+
+	public void setEpsilon(double eps) {
+		this.eps = eps;
+	}
+
+	/** capacity of each queue between stages.
+	 *
+	 * @param queueCapacity
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("queue capacity must be positive: "+queueCapacity);
+		}
+		this.queueCapacity = queueCapacity;
+	}
+
+	public void setWorkerCount(Stage stage, int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("worker count must be positive: "+count);
+		}
+		workerCounts[stage.ordinal()] = count;
+	}
+
+	public int getWorkerCount(Stage stage) {
+		return workerCounts[stage.ordinal()];
+	}
+
+	/** statistics from the most recent run.
+	 *
+	 * @param stage
+	 * @return
+	 */
+	public StageStatistics getStageStatistics(Stage stage) {
+		return stageStatistics[stage.ordinal()];
+	}
+
+	public List<StageStatistics> getStageStatisticsList() {
+		List<StageStatistics> statisticsList = new ArrayList<StageStatistics>();
+		for (StageStatistics statistics : stageStatistics) {
+			statisticsList.add(statistics);
+		}
+		return statisticsList;
+	}
+
+	/** processes pages and returns results in input order.
+	 *
+	 * @param pages
+	 * @return
+	 */
+	public List<PageResult> process(List<? extends SVGElement> pages) {
+		List<PageResult> resultList = new ArrayList<PageResult>();
+		process(pages.iterator(), result -> resultList.add(result));
+		Collections.sort(resultList, new Comparator<PageResult>() {
+			public int compare(PageResult result0, PageResult result1) {
+				return Integer.compare(result0.getPageIndex(), result1.getPageIndex());
+			}
+		});
+		return resultList;
+	}
+
+	public void process(Stream<? extends SVGElement> pages, Consumer<PageResult> consumer) {
+		process(pages.iterator(), consumer);
+	}
+
+	/** processes pages as they are read.
+	 *
+	 * Pages are read on a separate thread; consumer is called on the calling thread
+	 * as each page completes (not necessarily in input order).
+	 * Returns when all pages have been consumed.
+	 *
+	 * @param pages
+	 * @param consumer
+	 */
+	public void process(Iterator<? extends SVGElement> pages, Consumer<PageResult> consumer) {
+		resetStatistics();
+		Stage[] stages = Stage.values();
+		List<BlockingQueue<PageResult>> queueList = new ArrayList<BlockingQueue<PageResult>>();
+		for (int i = 0; i <= stages.length; i++) {
+			queueList.add(new ArrayBlockingQueue<PageResult>(queueCapacity));
+		}
+		List<ExecutorService> executorList = new ArrayList<ExecutorService>();
+		RuntimeException[] readError = new RuntimeException[1];
+		try {
+			ExecutorService reader = Executors.newSingleThreadExecutor(createThreadFactory("reader"));
+			executorList.add(reader);
+			int firstWorkers = workerCounts[0];
+			reader.execute(() -> readPages(pages, queueList.get(0), firstWorkers, readError));
+			for (Stage stage : stages) {
+				int workers = workerCounts[stage.ordinal()];
+				int nextWorkers = (stage.ordinal() == stages.length - 1) ? 1 : workerCounts[stage.ordinal() + 1];
+				ExecutorService executor = Executors.newFixedThreadPool(workers, createThreadFactory(stage.toString().toLowerCase()));
+				executorList.add(executor);
+				AtomicInteger activeWorkers = new AtomicInteger(workers);
+				for (int i = 0; i < workers; i++) {
+					executor.execute(() -> runStage(stage, queueList.get(stage.ordinal()),
+							queueList.get(stage.ordinal() + 1), activeWorkers, nextWorkers));
+				}
+			}
+			BlockingQueue<PageResult> outQueue = queueList.get(stages.length);
+			for (PageResult result = take(outQueue); result != END; result = take(outQueue)) {
+				consumer.accept(result);
+			}
+		} finally {
+			for (ExecutorService executor : executorList) {
+				executor.shutdownNow();
+			}
+		}
+		if (readError[0] != null) {
+			throw readError[0];
+		}
+	}
+
+	private void readPages(Iterator<? extends SVGElement> pages, BlockingQueue<PageResult> queue,
+			int firstWorkers, RuntimeException[] readError) {
+		try {
+			int pageIndex = 0;
+			while (pages.hasNext()) {
+				put(queue, new PageResult(pageIndex++, pages.next()));
+			}
+		} catch (RuntimeException e) {
+			readError[0] = e;
+		} finally {
+			for (int i = 0; i < firstWorkers; i++) {
+				put(queue, END);
+			}
+		}
+	}
+
+	/** worker loop; the last worker of a stage to finish passes END to each worker of the next.
+	 *
+	 */
+	private void runStage(Stage stage, BlockingQueue<PageResult> inQueue, BlockingQueue<PageResult> outQueue,
+			AtomicInteger activeWorkers, int nextWorkers) {
+		StageStatistics statistics = stageStatistics[stage.ordinal()];
+		while (true) {
+			PageResult result = take(inQueue);
+			if (result == END) {
+				if (activeWorkers.decrementAndGet() == 0) {
+					for (int i = 0; i < nextWorkers; i++) {
+						put(outQueue, END);
+					}
+				}
+				return;
+			}
+			if (result.getError() == null) {
+				long start = System.nanoTime();
+				boolean failed = false;
+				try {
+					runStage(stage, result);
+				} catch (Throwable t) {
+					// a worker must survive any page so that END reaches the next stage
+					LOG.debug("page "+result.getPageIndex()+" failed in "+stage+": "+t);
+					result.error = (t instanceof RuntimeException) ? (RuntimeException) t : new RuntimeException(t);
+					result.failedStage = stage;
+					failed = true;
+				}
+				statistics.record(start, System.nanoTime(), failed);
+			}
+			put(outQueue, result);
+		}
+	}
+
+	private void runStage(Stage stage, PageResult result) {
+		if (Stage.SHAPES.equals(stage)) {
+			convertShapes(result);
+		} else if (Stage.AXES.equals(stage)) {
+			analyzeAxes(result);
+		} else if (Stage.POLYLINES.equals(stage)) {
+			analyzePolylines(result);
+		}
+	}
+
+	private void convertShapes(PageResult result) {
+		result.g = getOrCreateG(result.getPage());
+		Path2ShapeConverter converter = new Path2ShapeConverter();
+		result.shapeList = converter.convertPathsToShapes(result.g);
+	}
+
+	private void analyzeAxes(PageResult result) {
+		AxisAnalyzer axisAnalyzer = new AxisAnalyzer(result.g);
+		axisAnalyzer.setEpsilon(eps);
+		axisAnalyzer.setReadScaleValuesAndTitles(false);
+		axisAnalyzer.createVerticalHorizontalAxisListAndPlotBox();
+		result.plotBoxList = new ArrayList<GraphPlotBox>();
+		if (axisAnalyzer.getPlotBox() != null) {
+			result.plotBoxList.add(axisAnalyzer.getPlotBox());
+		} else if (axisAnalyzer.getPlotBoxList() != null) {
+			result.plotBoxList.addAll(axisAnalyzer.getPlotBoxList());
+		}
+	}
+
+	private void analyzePolylines(PageResult result) {
+		result.polylineList = new ArrayList<SVGPolyline>();
+		for (SVGPolyline polyline : SVGPolyline.extractSelfAndDescendantPolylines(result.g)) {
+			// analyzePolylines annotates the parent SVGG
+			if (polyline.getParent() instanceof SVGG) {
+				result.polylineList.add(polyline);
+			}
+		}
+		for (GraphPlotBox plotBox : result.plotBoxList) {
+			SVGPolylineAnalyzer polylineAnalyzer = new SVGPolylineAnalyzer();
+			polylineAnalyzer.analyzePolylines(result.g, result.polylineList, plotBox);
+		}
+	}
+
+	private static SVGG getOrCreateG(SVGElement page) {
+		if (page instanceof SVGG) {
+			return (SVGG) page;
+		}
+		SVGG g = new SVGG();
+		while (page.getChildCount() > 0) {
+			Node child = page.getChild(0);
+			child.detach();
+			g.appendChild(child);
+		}
+		page.appendChild(g);
+		return g;
+	}
+
+	private void resetStatistics() {
+		stageStatistics = new StageStatistics[Stage.values().length];
+		for (Stage stage : Stage.values()) {
+			stageStatistics[stage.ordinal()] = new StageStatistics(stage);
+		}
+	}
+
+	private static ThreadFactory createThreadFactory(String name) {
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, "plot-"+name+"-"+count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	private static PageResult take(BlockingQueue<PageResult> queue) {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted", e);
+		}
+	}
+
+	private static void put(BlockingQueue<PageResult> queue, PageResult result) {
+		try {
+			queue.put(result);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("interrupted", e);
+		}
+	}
+
+	/** outcome of one page.
+	 *
+	 * Fields are filled by successive stages; those after a failed stage are null.
+	 */
+	public static class PageResult {
+
+		private int pageIndex;
+		private SVGElement page;
+		private SVGG g;
+		private List<SVGShape> shapeList;
+		private List<GraphPlotBox> plotBoxList;
+		private List<SVGPolyline> polylineList;
+		private RuntimeException error;
+		private Stage failedStage;
+
+		PageResult(int pageIndex, SVGElement page) {
+			this.pageIndex = pageIndex;
+			this.page = page;
+		}
+
+		/** position in input. */
+		public int getPageIndex() {
+			return pageIndex;
+		}
+
+		public SVGElement getPage() {
+			return page;
+		}
+
+		/** the page, or the SVGG holding its content. */
+		public SVGG getG() {
+			return g;
+		}
+
+		public List<SVGShape> getShapeList() {
+			return shapeList;
+		}
+
+		public List<GraphPlotBox> getPlotBoxList() {
+			return plotBoxList;
+		}
+
+		/** polylines passed to SVGPolylineAnalyzer. */
+		public List<SVGPolyline> getPolylineList() {
+			return polylineList;
+		}
+
+		/** null unless a stage failed. */
+		public RuntimeException getError() {
+			return error;
+		}
+
+		public Stage getFailedStage() {
+			return failedStage;
+		}
+
+		@Override
+		public String toString() {
+			return "page "+pageIndex+" shapes: "+(shapeList == null ? null : shapeList.size())+
+					" plotBoxes: "+(plotBoxList == null ? null : plotBoxList.size())+
+					(error == null ? "" : " failed in "+failedStage+": "+error);
+		}
+	}
+
+	/** counts and timings for one stage; updated concurrently by its workers.
+	 *
+	 */
+	public static class StageStatistics {
+
+		private Stage stage;
+		private AtomicInteger pageCount = new AtomicInteger();
+		private AtomicInteger failureCount = new AtomicInteger();
+		private AtomicLong totalNanos = new AtomicLong();
+		private AtomicLong maxNanos = new AtomicLong();
+		private AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+		private AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+
+		StageStatistics(Stage stage) {
+			this.stage = stage;
+		}
+
+		void record(long start, long end, boolean failed) {
+			long nanos = end - start;
+			pageCount.incrementAndGet();
+			if (failed) {
+				failureCount.incrementAndGet();
+			}
+			totalNanos.addAndGet(nanos);
+			maxNanos.accumulateAndGet(nanos, Math::max);
+			firstStart.accumulateAndGet(start, Math::min);
+			lastEnd.accumulateAndGet(end, Math::max);
+		}
+
+		public Stage getStage() {
+			return stage;
+		}
+
+		/** pages processed (including failures). */
+		public int getPageCount() {
+			return pageCount.get();
+		}
+
+		public int getFailureCount() {
+			return failureCount.get();
+		}
+
+		/** mean time to process a page (not including time queued). */
+		public double getMeanLatencyMillis() {
+			int count = pageCount.get();
+			return count == 0 ? 0.0 : totalNanos.get() / (count * 1.0e6);
+		}
+
+		public double getMaxLatencyMillis() {
+			return maxNanos.get() / 1.0e6;
+		}
+
+		/** pages per second between the first page starting and the last ending. */
+		public double getThroughput() {
+			int count = pageCount.get();
+			long elapsed = lastEnd.get() - firstStart.get();
+			return (count == 0 || elapsed <= 0) ? 0.0 : count / (elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+		}
+
+		@Override
+		public String toString() {
+			return stage+": pages "+getPageCount()+" failures "+getFailureCount()+
+					String.format(" mean %.2f ms max %.2f ms throughput %.1f pages/s",
+							getMeanLatencyMillis(), getMaxLatencyMillis(), getThroughput());
+		}
+	}
+}
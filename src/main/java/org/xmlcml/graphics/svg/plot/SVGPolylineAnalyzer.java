@@ -30,6 +30,7 @@ import org.xmlcml.graphics.svg.SVGUtil;
 import org.xmlcml.graphics.svg.linestuff.BoundingBoxManager;
 import org.xmlcml.graphics.svg.linestuff.BoundingBoxManager.BoxEdge;
 import org.xmlcml.graphics.svg.linestuff.ComplexLine.LineOrientation;
+import org.xmlcml.graphics.svg.linestuff.PlanarGraph;
 import org.xmlcml.graphics.svg.util.GraphUtil;
 import org.xmlcml.stml.STMLArray;
 
@@ -65,6 +66,7 @@ public class SVGPolylineAnalyzer {
 	private Map<Integer, List<SVGLine>> verticalMap;
 	private boolean mergePolylinesAtContiguousEndPoints = true;
 	private SVGG svgg;
+	private PlanarGraph planarGraph;
 
 	public SVGPolylineAnalyzer() {
 	}
@@ -80,6 +82,20 @@ public class SVGPolylineAnalyzer {
 	
 	public void createNetwork() {
 		indexHorizonalVertical();
+		planarGraph = null;
+	}
+
+	/** planar graph of the polylines, joined where ends meet within eps1.
+	 * 
+	 * built on first call; cleared by createNetwork().
+	 * 
+	 * @return null if there are no polylines
+	 */
+	public PlanarGraph getPlanarGraph() {
+		if (planarGraph == null && polylines != null) {
+			planarGraph = PlanarGraph.createGraph(null, polylines, eps1, true);
+		}
+		return planarGraph;
 	}
 	
 	private void indexHorizonalVertical() {
@@ -193,13 +209,14 @@ public class SVGPolylineAnalyzer {
 			if (boxRange.includes(polyBox)) {
 				Real2Array polylineCoords = polyline.getReal2Array();
 				LOG.trace("COORDS "+polylineCoords.size());
-				Axis horizontalAxis = plotBox.getHorizontalAxis();
-				Axis verticalAxis = plotBox.getVerticalAxis();
-				STMLArray xArray = createCoordinateArray(polylineCoords, horizontalAxis, LineOrientation.HORIZONTAL);
+				double[] pixelXY = SVGUtil.createInterleavedXYArray(polylineCoords);
+				double[] valueXY = new double[pixelXY.length];
+				plotBox.transformPixelsToValues(pixelXY, valueXY);
+				STMLArray xArray = createCoordinateArray(valueXY, plotBox.getHorizontalAxis(), LineOrientation.HORIZONTAL);
 				if (xArray != null) {
 					parentG.appendChild(xArray);
 				}
-				STMLArray yArray = createCoordinateArray(polylineCoords, verticalAxis, LineOrientation.VERTICAL);
+				STMLArray yArray = createCoordinateArray(valueXY, plotBox.getVerticalAxis(), LineOrientation.VERTICAL);
 				if (yArray != null) {
 					parentG.appendChild(yArray);
 				}
@@ -212,16 +229,26 @@ public class SVGPolylineAnalyzer {
 		}
 	}
 
-	private STMLArray createCoordinateArray(Real2Array polylineCoords, Axis axis, LineOrientation lineOrientation) {
+	/** array of x (or y) from interleaved values.
+	 * 
+	 * @param valueXY from GraphPlotBox.transformPixelsToValues (pixels if axis has no scale)
+	 * @param axis
+	 * @param lineOrientation
+	 * @return null if no axis
+	 */
+	private STMLArray createCoordinateArray(double[] valueXY, Axis axis, LineOrientation lineOrientation) {
 		STMLArray array = null;
 		if (axis != null) {
-			RealArray coords = (LineOrientation.HORIZONTAL.equals(lineOrientation)) ? 
-					polylineCoords.getXArray() : polylineCoords.getYArray();
-			RealArray scaledCoords = extractAndScaleCoords(axis, coords);
-			if (scaledCoords == null) {
-				scaledCoords = coords;  // use original coords
+			int offset = (LineOrientation.HORIZONTAL.equals(lineOrientation)) ? 0 : 1;
+			double[] values = new double[valueXY.length / 2];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = valueXY[2 * i + offset];
 			}
-			array = new STMLArray(scaledCoords);
+			RealArray coords = new RealArray(values);
+			if (axis.getOrCreateValueTransform() != null) {
+				GraphUtil.format(coords, PLACES);
+			}
+			array = new STMLArray(coords);
 			String axisLabel = (LineOrientation.HORIZONTAL.equals(lineOrientation)) ? XAXIS : YAXIS;
 			array.addAttribute(new Attribute(ROLE, axisLabel));
 		}
@@ -231,15 +258,6 @@ public class SVGPolylineAnalyzer {
 		return array;
 	}
 
-	private RealArray extractAndScaleCoords(Axis axis, RealArray pixelCoords) {
-		RealArray valueCoords = axis.createScaledArrayToRange(pixelCoords);
-		if (valueCoords != null) {
-//			GraphUtil.format(valueCoords, PDFAnalyzerOptions.PLACES);
-			GraphUtil.format(valueCoords, PLACES);
-		}
-		return valueCoords;
-	}
-	
 	private void addMarker(SVGLine line0, Map<Integer, List<SVGLine>> map, Real2 xy, String orient) {
 		Double xx = ((HOR.equals(orient)) ? xy.getY() : xy.getX());
 		Double yy = ((HOR.equals(orient)) ? xy.getX() : xy.getY());
@@ -290,9 +308,8 @@ public class SVGPolylineAnalyzer {
 	
 	public static void getMatchedPoint(SVGPoly polyline, List<SVGPolyline> polylineList, Real2 end) {
 		String col = "red";
-		for (SVGPoly polyline1 : polylineList) {
-			List<SVGLine> lineList = polyline1.createLineList();
-			if (lineList.size() != 3) {
+		for (SVGPolyline polyline1 : polylineList) {
+			if (polyline1.getLineCount() != 3) {
 				continue;
 			}
 			SVGLine line1 = polyline1.createLineList().get(1);
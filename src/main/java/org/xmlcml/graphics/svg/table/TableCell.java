@@ -0,0 +1,146 @@
+package org.xmlcml.graphics.svg.table;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.graphics.svg.SVGText;
+
+/** cell of a TableGrid, possibly spanning several rows and columns.
+ *
+ * @author pm286
+ *
+ */
+public class TableCell {
+
+	/** gap (in font sizes) between estimated end of one text and start of the next that makes a space */
+	private static final double SPACE_GAP = 0.2;
+	private static final double FONT_WIDTH_FACTOR = 1.0;
+
+	private int row;
+	private int column;
+	private int rowSpan;
+	private int columnSpan;
+	private Real2Range boundingBox;
+	private List<SVGText> textList;
+	private boolean sorted;
+
+	TableCell(int row, int column, int rowSpan, int columnSpan, double xmin, double xmax, double ymin, double ymax) {
+		this.row = row;
+		this.column = column;
+		this.rowSpan = rowSpan;
+		this.columnSpan = columnSpan;
+		this.boundingBox = new Real2Range(new RealRange(xmin, xmax), new RealRange(ymin, ymax));
+		this.textList = new ArrayList<SVGText>();
+	}
+
+	/** first (top) row.
+	 */
+	public int getRow() {
+		return row;
+	}
+
+	/** first (left) column.
+	 */
+	public int getColumn() {
+		return column;
+	}
+
+	public int getRowSpan() {
+		return rowSpan;
+	}
+
+	public int getColumnSpan() {
+		return columnSpan;
+	}
+
+	public Real2Range getBoundingBox() {
+		return boundingBox;
+	}
+
+	void addText(SVGText text) {
+		textList.add(text);
+		sorted = false;
+	}
+
+	/** texts in the cell in reading order (by baseline, then x).
+	 *
+	 * @return
+	 */
+	public List<SVGText> getTextList() {
+		if (!sorted) {
+			// baselines within half a font size of the first text of a line make one line
+			Collections.sort(textList, (t0, t1) -> Double.compare(t0.getY(), t1.getY()));
+			List<SVGText> orderedList = new ArrayList<SVGText>(textList.size());
+			int start = 0;
+			for (int i = 1; i <= textList.size(); i++) {
+				if (i == textList.size() ||
+						textList.get(i).getY() - textList.get(start).getY() > getLineEps(textList.get(start), textList.get(i))) {
+					List<SVGText> line = new ArrayList<SVGText>(textList.subList(start, i));
+					Collections.sort(line, (t0, t1) -> Double.compare(t0.getX(), t1.getX()));
+					orderedList.addAll(line);
+					start = i;
+				}
+			}
+			textList = orderedList;
+			sorted = true;
+		}
+		return textList;
+	}
+
+	/** text of the cell.
+	 *
+	 * <p>
+	 * Texts on one baseline are concatenated, with a space where the gap after the estimated end of the
+	 * previous text is more than a fifth of the font size (so single glyphs join into words); lines are
+	 * joined with a space.
+	 * </p>
+	 *
+	 * @return empty string if no text
+	 */
+	public String getValue() {
+		StringBuilder sb = new StringBuilder();
+		SVGText last = null;
+		for (SVGText text : getTextList()) {
+			String s = text.getText();
+			if (s == null) {
+				continue;
+			}
+			if (last != null && needsSpace(last, text)) {
+				sb.append(' ');
+			}
+			sb.append(s);
+			last = text;
+		}
+		return sb.toString().trim();
+	}
+
+	private static boolean needsSpace(SVGText last, SVGText text) {
+		if (Math.abs(last.getY() - text.getY()) > getLineEps(last, text)) {
+			return true;
+		}
+		Double fontSize = last.getFontSize();
+		if (fontSize == null) {
+			return true;
+		}
+		Double length = last.getEstimatedHorizontalLength(FONT_WIDTH_FACTOR);
+		if (length == null || Double.isNaN(length)) {
+			return true;
+		}
+		return text.getX() - (last.getX() + length) > SPACE_GAP * fontSize;
+	}
+
+	private static double getLineEps(SVGText t0, SVGText t1) {
+		Double fontSize = t0.getFontSize();
+		Double fontSize1 = t1.getFontSize();
+		double size = Math.max(fontSize == null ? 0.0 : fontSize, fontSize1 == null ? 0.0 : fontSize1);
+		return size > 0.0 ? 0.5 * size : 1.0;
+	}
+
+	@Override
+	public String toString() {
+		return "["+row+","+column+"]"+(rowSpan > 1 || columnSpan > 1 ? "("+rowSpan+"x"+columnSpan+")" : "")+" "+getValue();
+	}
+}
@@ -0,0 +1,297 @@
+package org.xmlcml.graphics.svg.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGLine;
+import org.xmlcml.graphics.svg.SVGText;
+import org.xmlcml.graphics.svg.linestuff.BoundingBoxIndex;
+import org.xmlcml.graphics.svg.linestuff.LineIntersection;
+
+/** turns ruled tables into grids of cells holding their texts.
+ *
+ * <p>
+ * Horizontal and vertical lines are copied (the page is not changed) and merged
+ * (SVGLine.normalizeAndMergeAxialLines()). Rules which cross or touch (found by the sweep in
+ * LineIntersection) are joined into groups; each group with at least two rules in each direction is a table.
+ * Its column and row boundaries are the distinct x of the verticals and y of the horizontals, widened to the
+ * ends of the rules where a table has no outer border. Neighbouring base cells without a rule between them
+ * are merged into spanning cells. Texts are placed by their x,y (start of baseline) through a BoundingBoxIndex
+ * over the tables and a binary search of each grid.
+ * </p>
+ * <p>
+ * Tables without vertical rules (only horizontal rules between rows) are not found.
+ * </p>
+ *
+ * @author pm286
+ *
+ */
+public class TableExtractor {
+
+	private static final Logger LOG = Logger.getLogger(TableExtractor.class);
+	static {
+		LOG.setLevel(Level.DEBUG);
+	}
+
+	public static final double DEFAULT_EPS = 0.5;
+
+	private double eps;
+
+	public TableExtractor() {
+		this(DEFAULT_EPS);
+	}
+
+	/**
+	 * @param eps tolerance for axis alignment, merging and meeting of rules
+	 */
+	public TableExtractor(double eps) {
+		this.eps = eps;
+	}
+
+	public double getEps() {
+		return eps;
+	}
+
+	/** tables from the lines and texts in page (and descendants).
+	 *
+	 * @param page
+	 * @return tables in order of their first rule
+	 */
+	public List<TableGrid> extractTables(SVGElement page) {
+		return extractTables(SVGLine.extractSelfAndDescendantLines(page), SVGText.extractSelfAndDescendantTexts(page));
+	}
+
+	/** tables from each page.
+	 *
+	 * @param pageList
+	 * @param parallel if true pages are processed concurrently (they must not share elements)
+	 * @return list of tables for each page
+	 */
+	public List<List<TableGrid>> extractTables(List<? extends SVGElement> pageList, boolean parallel) {
+		return (parallel ? pageList.parallelStream() : pageList.stream())
+				.map(page -> extractTables(page))
+				.collect(Collectors.toList());
+	}
+
+	/** tables from lines (rules) and texts.
+	 *
+	 * @param lineList not modified
+	 * @param textList may be null
+	 * @return
+	 */
+	public List<TableGrid> extractTables(List<SVGLine> lineList, List<SVGText> textList) {
+		List<SVGLine> ruleList = new ArrayList<SVGLine>();
+		for (SVGLine line : lineList) {
+			if (line.isHorizontal(eps) != line.isVertical(eps)) {
+				ruleList.add((SVGLine) line.copy());
+			}
+		}
+		ruleList = SVGLine.normalizeAndMergeAxialLines(ruleList, eps);
+		int n = ruleList.size();
+		int[] parent = new int[n];
+		for (int i = 0; i < n; i++) {
+			parent[i] = i;
+		}
+		for (LineIntersection intersection : LineIntersection.findAllIntersections(ruleList, eps)) {
+			union(parent, intersection.getIndex0(), intersection.getIndex1());
+		}
+		List<List<SVGLine>> groupList = new ArrayList<List<SVGLine>>();
+		int[] group = new int[n];
+		Arrays.fill(group, -1);
+		for (int i = 0; i < n; i++) {
+			int root = find(parent, i);
+			if (group[root] < 0) {
+				group[root] = groupList.size();
+				groupList.add(new ArrayList<SVGLine>());
+			}
+			groupList.get(group[root]).add(ruleList.get(i));
+		}
+		List<TableGrid> tableList = new ArrayList<TableGrid>();
+		for (List<SVGLine> rules : groupList) {
+			TableGrid table = createGrid(rules);
+			if (table != null) {
+				tableList.add(table);
+			}
+		}
+		if (textList != null && tableList.size() > 0) {
+			addTexts(tableList, textList);
+		}
+		return tableList;
+	}
+
+	private void addTexts(List<TableGrid> tableList, List<SVGText> textList) {
+		List<Real2Range> bboxList = new ArrayList<Real2Range>(tableList.size());
+		for (TableGrid table : tableList) {
+			bboxList.add(table.getBoundingBox());
+		}
+		BoundingBoxIndex index = new BoundingBoxIndex(bboxList);
+		for (SVGText text : textList) {
+			Double x = text.getX();
+			Double y = text.getY();
+			if (x == null || y == null || Double.isNaN(x) || Double.isNaN(y)) {
+				continue;
+			}
+			for (int t : index.findIntersecting(x, x, y, y)) {
+				TableCell cell = tableList.get(t).findCell(x, y);
+				if (cell != null) {
+					cell.addText(text);
+					break;
+				}
+			}
+		}
+	}
+
+	/** grid of a group of connected rules.
+	 *
+	 * @return null if fewer than two rules in either direction
+	 */
+	private TableGrid createGrid(List<SVGLine> rules) {
+		int nh = 0;
+		int nv = 0;
+		for (SVGLine rule : rules) {
+			if (rule.isHorizontal(eps)) {
+				nh++;
+			} else {
+				nv++;
+			}
+		}
+		if (nh < 2 || nv < 2) {
+			return null;
+		}
+		// horizontals: y, xmin, xmax; verticals: x, ymin, ymax
+		double[][] horizontals = new double[nh][];
+		double[][] verticals = new double[nv][];
+		nh = 0;
+		nv = 0;
+		double hmin = Double.MAX_VALUE;
+		double hmax = -Double.MAX_VALUE;
+		double vmin = Double.MAX_VALUE;
+		double vmax = -Double.MAX_VALUE;
+		for (SVGLine rule : rules) {
+			double[] xy = rule.getGeometricCoordinates();
+			if (rule.isHorizontal(eps)) {
+				horizontals[nh++] = new double[] {(xy[1] + xy[3]) / 2.0, Math.min(xy[0], xy[2]), Math.max(xy[0], xy[2])};
+				hmin = Math.min(hmin, Math.min(xy[0], xy[2]));
+				hmax = Math.max(hmax, Math.max(xy[0], xy[2]));
+			} else {
+				verticals[nv++] = new double[] {(xy[0] + xy[2]) / 2.0, Math.min(xy[1], xy[3]), Math.max(xy[1], xy[3])};
+				vmin = Math.min(vmin, Math.min(xy[1], xy[3]));
+				vmax = Math.max(vmax, Math.max(xy[1], xy[3]));
+			}
+		}
+		double[] columns = createBoundaries(verticals, hmin, hmax);
+		double[] rows = createBoundaries(horizontals, vmin, vmax);
+		int ncols = columns.length - 1;
+		int nrows = rows.length - 1;
+		if (ncols < 1 || nrows < 1) {
+			return null;
+		}
+		int[] parent = new int[nrows * ncols];
+		for (int i = 0; i < parent.length; i++) {
+			parent[i] = i;
+		}
+		for (int r = 0; r < nrows; r++) {
+			for (int c = 0; c < ncols; c++) {
+				if (c < ncols - 1 && !isRuled(verticals, columns[c + 1], rows[r], rows[r + 1])) {
+					union(parent, r * ncols + c, r * ncols + c + 1);
+				}
+				if (r < nrows - 1 && !isRuled(horizontals, rows[r + 1], columns[c], columns[c + 1])) {
+					union(parent, r * ncols + c, (r + 1) * ncols + c);
+				}
+			}
+		}
+		return createCells(columns, rows, parent, rules);
+	}
+
+	private static TableGrid createCells(double[] columns, double[] rows, int[] parent, List<SVGLine> rules) {
+		int ncols = columns.length - 1;
+		int nbase = parent.length;
+		int[] minRow = new int[nbase];
+		int[] maxRow = new int[nbase];
+		int[] minCol = new int[nbase];
+		int[] maxCol = new int[nbase];
+		Arrays.fill(minRow, Integer.MAX_VALUE);
+		Arrays.fill(minCol, Integer.MAX_VALUE);
+		Arrays.fill(maxRow, -1);
+		Arrays.fill(maxCol, -1);
+		for (int i = 0; i < nbase; i++) {
+			int root = find(parent, i);
+			int r = i / ncols;
+			int c = i % ncols;
+			minRow[root] = Math.min(minRow[root], r);
+			maxRow[root] = Math.max(maxRow[root], r);
+			minCol[root] = Math.min(minCol[root], c);
+			maxCol[root] = Math.max(maxCol[root], c);
+		}
+		// base cells are visited by row then column, so cells come out in that order of their first position
+		List<TableCell> cellList = new ArrayList<TableCell>();
+		TableCell[] rootCells = new TableCell[nbase];
+		TableCell[] baseCells = new TableCell[nbase];
+		for (int i = 0; i < nbase; i++) {
+			int root = find(parent, i);
+			if (rootCells[root] == null) {
+				rootCells[root] = new TableCell(minRow[root], minCol[root],
+						maxRow[root] - minRow[root] + 1, maxCol[root] - minCol[root] + 1,
+						columns[minCol[root]], columns[maxCol[root] + 1], rows[minRow[root]], rows[maxRow[root] + 1]);
+				cellList.add(rootCells[root]);
+			}
+			baseCells[i] = rootCells[root];
+		}
+		return new TableGrid(columns, rows, cellList, baseCells, rules);
+	}
+
+	/** distinct sorted ordinates of rules (within eps), extended to min and max if they lie outside.
+	 */
+	private double[] createBoundaries(double[][] rules, double min, double max) {
+		double[] values = new double[rules.length + 2];
+		for (int i = 0; i < rules.length; i++) {
+			values[i] = rules[i][0];
+		}
+		values[rules.length] = min;
+		values[rules.length + 1] = max;
+		Arrays.sort(values);
+		double[] boundaries = new double[values.length];
+		int count = 0;
+		for (double value : values) {
+			if (count == 0 || value - boundaries[count - 1] > eps) {
+				boundaries[count++] = value;
+			}
+		}
+		return Arrays.copyOf(boundaries, count);
+	}
+
+	/** does a rule at ordinate lie along the whole of from..to?
+	 *
+	 * merged rules do not overlap, so one rule must cover the span.
+	 */
+	private boolean isRuled(double[][] rules, double ordinate, double from, double to) {
+		for (double[] rule : rules) {
+			if (Math.abs(rule[0] - ordinate) <= eps && rule[1] <= from + eps && rule[2] >= to - eps) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private static void union(int[] parent, int i, int j) {
+		int ri = find(parent, i);
+		int rj = find(parent, j);
+		if (ri != rj) {
+			parent[Math.max(ri, rj)] = Math.min(ri, rj);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package org.xmlcml.graphics.svg.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.graphics.svg.SVGLine;
+
+/** row and column model of one ruled table.
+ *
+ * <p>
+ * The grid is defined by sorted column boundaries (x) and row boundaries (y); base cell (r, c) lies between
+ * columns c, c+1 and rows r, r+1. Where no rule separates neighbouring base cells they belong to one
+ * TableCell with a row or column span. Cells are found by binary search on the boundaries.
+ * </p>
+ *
+ * @author pm286
+ *
+ */
+public class TableGrid {
+
+	private double[] columnBoundaries;
+	private double[] rowBoundaries;
+	private List<TableCell> cellList;
+	/** cell covering base cell r * columnCount + c */
+	private TableCell[] baseCells;
+	private List<SVGLine> ruleList;
+
+	TableGrid(double[] columnBoundaries, double[] rowBoundaries, List<TableCell> cellList, TableCell[] baseCells,
+			List<SVGLine> ruleList) {
+		this.columnBoundaries = columnBoundaries;
+		this.rowBoundaries = rowBoundaries;
+		this.cellList = cellList;
+		this.baseCells = baseCells;
+		this.ruleList = ruleList;
+	}
+
+	public int getRowCount() {
+		return rowBoundaries.length - 1;
+	}
+
+	public int getColumnCount() {
+		return columnBoundaries.length - 1;
+	}
+
+	/** x coordinates of the column boundaries, ascending (getColumnCount() + 1 values).
+	 */
+	public double[] getColumnBoundaries() {
+		return columnBoundaries;
+	}
+
+	/** y coordinates of the row boundaries, ascending (getRowCount() + 1 values).
+	 */
+	public double[] getRowBoundaries() {
+		return rowBoundaries;
+	}
+
+	/** merged rules from which the grid was made.
+	 */
+	public List<SVGLine> getRuleList() {
+		return ruleList;
+	}
+
+	public Real2Range getBoundingBox() {
+		return new Real2Range(
+				new RealRange(columnBoundaries[0], columnBoundaries[columnBoundaries.length - 1]),
+				new RealRange(rowBoundaries[0], rowBoundaries[rowBoundaries.length - 1]));
+	}
+
+	/** distinct cells, by row then column.
+	 */
+	public List<TableCell> getCellList() {
+		return cellList;
+	}
+
+	/** cell covering a grid position (the same cell for all positions it spans).
+	 */
+	public TableCell getCell(int row, int column) {
+		return baseCells[row * getColumnCount() + column];
+	}
+
+	/** cells starting in each row, by column.
+	 *
+	 * @return
+	 */
+	public List<List<TableCell>> getRows() {
+		List<List<TableCell>> rowList = new ArrayList<List<TableCell>>();
+		for (int r = 0; r < getRowCount(); r++) {
+			rowList.add(new ArrayList<TableCell>());
+		}
+		for (TableCell cell : cellList) {
+			rowList.get(cell.getRow()).add(cell);
+		}
+		return rowList;
+	}
+
+	/** values of the cells by grid position.
+	 *
+	 * @return value of a spanning cell at its first row and column, null at the other positions it covers
+	 */
+	public String[][] getValues() {
+		String[][] values = new String[getRowCount()][getColumnCount()];
+		for (TableCell cell : cellList) {
+			values[cell.getRow()][cell.getColumn()] = cell.getValue();
+		}
+		return values;
+	}
+
+	/** cell containing the point.
+	 *
+	 * @return null if outside the grid
+	 */
+	public TableCell findCell(double x, double y) {
+		int column = findInterval(columnBoundaries, x);
+		int row = findInterval(rowBoundaries, y);
+		return (column < 0 || row < 0) ? null : getCell(row, column);
+	}
+
+	/** interval [b[i], b[i+1]] containing value.
+	 *
+	 * @return -1 if outside
+	 */
+	private static int findInterval(double[] boundaries, double value) {
+		int last = boundaries.length - 1;
+		if (!(value >= boundaries[0] && value <= boundaries[last])) {
+			return -1;
+		}
+		int i = Arrays.binarySearch(boundaries, value);
+		if (i < 0) {
+			i = -i - 2;
+		}
+		return Math.min(i, last - 1);
+	}
+
+	@Override
+	public String toString() {
+		return "table "+getRowCount()+"x"+getColumnCount()+"; cells: "+cellList.size();
+	}
+}
@@ -0,0 +1,6 @@
+/**
+ * Extraction of ruled tables into grids of cells.
+ * 
+ * @author pm286
+ */
+package org.xmlcml.graphics.svg.table;
\ No newline at end of file
@@ -2,11 +2,14 @@ package org.xmlcml.graphics.svg.text;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import nu.xom.Element;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
+import org.xmlcml.euclid.RealArray;
 import org.xmlcml.graphics.svg.SVGG;
 import org.xmlcml.xml.XMLUtil;
 
@@ -46,6 +49,101 @@ public class SVGWordPageList extends SVGG {
 		return wordPageList;
 	}
 
+	/** makes phrases for every line of every page, on the calling thread.
+	 * 
+	 * @return phrases for each page (in document order); lines within a page are concatenated in order
+	 */
+	public List<List<SVGPhrase>> makePhrasesFromWords() {
+		List<List<SVGPhrase>> phraseListByPage = new ArrayList<List<SVGPhrase>>();
+		for (List<SVGWordLine> lineList : getWordLineListList()) {
+			List<SVGPhrase> pagePhraseList = new ArrayList<SVGPhrase>();
+			for (SVGWordLine line : lineList) {
+				pagePhraseList.addAll(line.makePhrasesFromWords());
+			}
+			phraseListByPage.add(pagePhraseList);
+		}
+		return phraseListByPage;
+	}
+
+	/** makes phrases for every line of every page, in parallel.
+	 * 
+	 * Lines are independent. The (read-only) XPath navigation is done on the calling thread; 
+	 * phrase construction for each line is then run on the pool.
+	 * Results are returned in document order and are the same as makePhrasesFromWords().
+	 * The page list must not be changed by other threads meanwhile.
+	 * 
+	 * @param pool to run the lines on
+	 * @return phrases for each page (in document order); lines within a page are concatenated in order
+	 */
+	public List<List<SVGPhrase>> makePhrasesFromWords(ForkJoinPool pool) {
+		List<List<SVGWordLine>> lineListList = getWordLineListList();
+		final List<SVGWordLine> allLines = new ArrayList<SVGWordLine>();
+		for (List<SVGWordLine> lineList : lineListList) {
+			for (SVGWordLine line : lineList) {
+				// cache words here so workers do not query the tree
+				line.getOrCreateSVGWordList();
+				allLines.add(line);
+			}
+		}
+		List<List<SVGPhrase>> phraseListByLine = pool.submit(
+				() -> allLines.parallelStream()
+					.map(line -> line.makePhrasesFromWords())
+					.collect(Collectors.toList())
+				).join();
+		List<List<SVGPhrase>> phraseListByPage = new ArrayList<List<SVGPhrase>>();
+		int lineIndex = 0;
+		for (List<SVGWordLine> lineList : lineListList) {
+			List<SVGPhrase> pagePhraseList = new ArrayList<SVGPhrase>();
+			for (int i = 0; i < lineList.size(); i++) {
+				pagePhraseList.addAll(phraseListByLine.get(lineIndex++));
+			}
+			phraseListByPage.add(pagePhraseList);
+		}
+		return phraseListByPage;
+	}
+
+	/** makes phrases and extracts their numeric values for every page, on the calling thread.
+	 * 
+	 * @return numeric values for each phrase of each page (in document order); 
+	 * null entries are phrases which are not wholly numeric
+	 */
+	public List<List<RealArray>> getNumericValues() {
+		List<List<RealArray>> valuesByPage = new ArrayList<List<RealArray>>();
+		for (List<SVGPhrase> phraseList : makePhrasesFromWords()) {
+			List<RealArray> values = new ArrayList<RealArray>();
+			for (SVGPhrase phrase : phraseList) {
+				values.add(phrase.getNumericValues());
+			}
+			valuesByPage.add(values);
+		}
+		return valuesByPage;
+	}
+
+	/** makes phrases and extracts their numeric values for every page, in parallel.
+	 * 
+	 * @param pool to run the lines and phrases on
+	 * @return numeric values for each phrase of each page (in document order); 
+	 * null entries are phrases which are not wholly numeric
+	 */
+	public List<List<RealArray>> getNumericValues(ForkJoinPool pool) {
+		final List<List<SVGPhrase>> phraseListList = makePhrasesFromWords(pool);
+		return pool.submit(
+				() -> phraseListList.parallelStream()
+					.map(phraseList -> phraseList.stream()
+							.map(phrase -> phrase.getNumericValues())
+							.collect(Collectors.toList()))
+					.collect(Collectors.toList())
+				).join();
+	}
+
+	private List<List<SVGWordLine>> getWordLineListList() {
+		List<List<SVGWordLine>> lineListList = new ArrayList<List<SVGWordLine>>();
+		for (SVGWordPage wordPage : getWordPageList()) {
+			lineListList.add(wordPage.getSVGLineList());
+		}
+		return lineListList;
+	}
+
 	/** number of wordPages.
 	 * 
 	 * @return 0 if none 
@@ -0,0 +1,179 @@
+package org.xmlcml.graphics.svg.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.xmlcml.graphics.svg.SVGShape;
+
+/** index of shapes keyed by their numeric geometric fingerprint.
+ *
+ * <p>
+ * Uses an open-addressed table of primitive longs (no boxing, no formatted strings).
+ * Shapes whose fingerprints collide are chained and confirmed by comparing
+ * quantised coordinates so a hash collision never causes a false duplicate.
+ * </p>
+ * <p>
+ * In near mode shapes are keyed by the eps-cell of their first coordinate pair;
+ * lookups probe the 3x3 neighbouring cells and accept a shape if all its coordinates
+ * are within eps. This catches near-duplicates which straddle cell boundaries.
+ * </p>
+ *
+ * @author pm286
+ *
+ */
+public class GeometricHashIndex {
+
+	private static final Logger LOG = Logger.getLogger(GeometricHashIndex.class);
+	static {
+		LOG.setLevel(Level.DEBUG);
+	}
+
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int NONE = -1;
+
+	private double eps;
+	private boolean near;
+	private List<SVGShape> shapeList;
+	private long[] keys;
+	private int[] heads;
+	private int[] next;
+	private int occupied;
+
+	/** exact index (coordinates identical after quantisation to eps).
+	 *
+	 * @param eps quantisation cell
+	 */
+	public GeometricHashIndex(double eps) {
+		this(eps, false);
+	}
+
+	/**
+	 * @param eps quantisation cell (or tolerance if near)
+	 * @param near if true find shapes whose coordinates are all within eps
+	 */
+	public GeometricHashIndex(double eps, boolean near) {
+		if (!(eps > 0.0)) {
+			throw new RuntimeException("eps must be positive: "+eps);
+		}
+		this.eps = eps;
+		this.near = near;
+		shapeList = new ArrayList<SVGShape>();
+		keys = new long[INITIAL_CAPACITY];
+		heads = new int[INITIAL_CAPACITY];
+		Arrays.fill(heads, NONE);
+		next = new int[INITIAL_CAPACITY];
+	}
+
+	/** finds an indexed shape geometrically equal to shape.
+	 *
+	 * @param shape
+	 * @return first such shape or null
+	 */
+	public SVGShape find(SVGShape shape) {
+		if (near && shape.getGeometricCoordinates() != null) {
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					SVGShape found = findInChain(shape.getGeometricAnchorKey(eps, dx, dy), shape);
+					if (found != null) {
+						return found;
+					}
+				}
+			}
+			return null;
+		}
+		return findInChain(getKey(shape), shape);
+	}
+
+	/** adds shape unless an equal one is already indexed.
+	 *
+	 * @param shape
+	 * @return the already indexed shape, or null if shape was added
+	 */
+	public SVGShape addIfAbsent(SVGShape shape) {
+		SVGShape found = find(shape);
+		if (found == null) {
+			add(shape);
+		}
+		return found;
+	}
+
+	/** adds shape without checking.
+	 *
+	 * @param shape
+	 */
+	public void add(SVGShape shape) {
+		long key = getKey(shape);
+		int index = shapeList.size();
+		shapeList.add(shape);
+		if (index >= next.length) {
+			next = Arrays.copyOf(next, 2 * next.length);
+		}
+		int slot = findSlot(key);
+		if (heads[slot] == NONE) {
+			keys[slot] = key;
+			occupied++;
+			next[index] = NONE;
+		} else {
+			next[index] = heads[slot];
+		}
+		heads[slot] = index;
+		if (2 * occupied > keys.length) {
+			rehash();
+		}
+	}
+
+	public int size() {
+		return shapeList.size();
+	}
+
+	public List<SVGShape> getShapeList() {
+		return shapeList;
+	}
+
+	private long getKey(SVGShape shape) {
+		return (near && shape.getGeometricCoordinates() != null) ?
+				shape.getGeometricAnchorKey(eps, 0, 0) : shape.getGeometricFingerprint(eps);
+	}
+
+	private SVGShape findInChain(long key, SVGShape shape) {
+		int slot = findSlot(key);
+		for (int index = heads[slot]; index != NONE; index = next[index]) {
+			SVGShape indexed = shapeList.get(index);
+			if (near ? indexed.isGeometricallyNear(shape, eps) : indexed.hasEqualGeometry(shape, eps)) {
+				return indexed;
+			}
+		}
+		return null;
+	}
+
+	/** linear probing; returns slot holding key or the empty slot where it would go.
+	 *
+	 */
+	private int findSlot(long key) {
+		int mask = keys.length - 1;
+		int slot = (int) (key ^ (key >>> 32)) & mask;
+		while (heads[slot] != NONE && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private void rehash() {
+		long[] oldKeys = keys;
+		int[] oldHeads = heads;
+		keys = new long[2 * oldKeys.length];
+		heads = new int[2 * oldKeys.length];
+		Arrays.fill(heads, NONE);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldHeads[i] != NONE) {
+				int slot = findSlot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				heads[slot] = oldHeads[i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,411 @@
+package org.xmlcml.graphics.svg.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.graphics.svg.SVGCircle;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGEllipse;
+import org.xmlcml.graphics.svg.SVGLine;
+import org.xmlcml.graphics.svg.SVGPath;
+import org.xmlcml.graphics.svg.SVGPoly;
+import org.xmlcml.graphics.svg.SVGPolygon;
+import org.xmlcml.graphics.svg.SVGRect;
+import org.xmlcml.graphics.svg.SVGShape;
+import org.xmlcml.graphics.svg.linestuff.BoundingBoxIndex;
+import org.xmlcml.graphics.svg.path.PathSegmentIterator;
+
+/** finds the shapes under a point.
+ *
+ * <p>
+ * Candidates come from a BoundingBoxIndex over the bounding boxes (widened by half the stroke
+ * and the tolerance) and are then tested exactly against an edge table (packed x0,y0,x1,y1 per edge)
+ * made once per shape. Filled shapes are hit inside by winding number (nonzero, or evenodd if
+ * fill-rule says so); all shapes are hit within half their stroke width plus tolerance of an edge.
+ * A shape is filled if its fill is not "none" (no fill attribute means the SVG default, black) and it is
+ * closed: polygons, rects, circles, ellipses, polylines marked closed and paths with a closepath or
+ * ending where they start. Paths with an explicit fill are filled even if open (as SVG paints them).
+ * Lines and open polylines are only hit near their edges. Path curves are flattened to within tolerance/2.
+ * Circles and ellipses are tested analytically; other shapes by bounding box.
+ * </p>
+ * <p>
+ * Edge tables and the index are kept until refresh() is called; after changing shapes call refresh(),
+ * which rebuilds the tables of shapes whose SVGShape.getModificationCount() has changed and, if needed,
+ * the index. Shapes added to or removed from the tree need a new HitTester. Coordinates are those of the
+ * shapes themselves (as getBoundingBox()); transforms are not applied.
+ * </p>
+ *
+ * @author pm286
+ *
+ */
+public class HitTester {
+
+	private static final Logger LOG = Logger.getLogger(HitTester.class);
+	static {
+		LOG.setLevel(Level.DEBUG);
+	}
+
+	public static final double DEFAULT_TOLERANCE = 0.5;
+	private static final String NONE = "none";
+	private static final String EVENODD = "evenodd";
+	private static final String FILL_RULE = "fill-rule";
+	private static final String STYLE = "style";
+
+	private enum Kind {
+		EDGES,
+		CIRCLE,
+		ELLIPSE,
+		BOX
+	}
+
+	/** cached geometry of one shape. */
+	private static class Entry {
+		int modificationCount;
+		Kind kind;
+		Real2Range bbox;
+		/** edges hit within pad */
+		double[] strokeEdges;
+		/** closed rings for winding number; null if not filled */
+		double[] fillEdges;
+		boolean evenOdd;
+		/** centre and radii for circle and ellipse */
+		double[] params;
+		double pad;
+	}
+
+	private List<SVGShape> shapeList;
+	private double tolerance;
+	private Entry[] entries;
+	private BoundingBoxIndex index;
+
+	/** tester for the shapes in element and its descendants (not in defs).
+	 *
+	 * @param element
+	 */
+	public HitTester(SVGElement element) {
+		this(SVGShape.extractSelfAndDescendantShapes(element), DEFAULT_TOLERANCE);
+	}
+
+	/**
+	 * @param shapeList shapes in painting order (later ones are on top)
+	 * @param tolerance extra distance for hits on edges
+	 */
+	public HitTester(List<? extends SVGShape> shapeList, double tolerance) {
+		this.shapeList = new ArrayList<SVGShape>(shapeList);
+		this.tolerance = tolerance;
+		entries = new Entry[this.shapeList.size()];
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = createEntry(this.shapeList.get(i));
+		}
+		index = createIndex();
+	}
+
+	public List<SVGShape> getShapeList() {
+		return shapeList;
+	}
+
+	/** all shapes hit by the point.
+	 *
+	 * @param point
+	 * @return in painting order (topmost last)
+	 */
+	public List<SVGShape> findShapesAt(Real2 point) {
+		return findShapesAt(point.getX(), point.getY());
+	}
+
+	/** all shapes hit by the point.
+	 *
+	 * @return in painting order (topmost last)
+	 */
+	public List<SVGShape> findShapesAt(double x, double y) {
+		List<SVGShape> hitList = new ArrayList<SVGShape>();
+		for (int i : index.findIntersecting(x, x, y, y)) {
+			if (isHit(entries[i], x, y)) {
+				hitList.add(shapeList.get(i));
+			}
+		}
+		return hitList;
+	}
+
+	/** topmost shape hit by the point.
+	 *
+	 * @return null if none
+	 */
+	public SVGShape findTopShapeAt(double x, double y) {
+		int[] candidates = index.findIntersecting(x, x, y, y);
+		for (int j = candidates.length - 1; j >= 0; j--) {
+			if (isHit(entries[candidates[j]], x, y)) {
+				return shapeList.get(candidates[j]);
+			}
+		}
+		return null;
+	}
+
+	/** rebuilds the tables of shapes changed since they were made (or last refreshed).
+	 *
+	 * must be called after shapes are changed; queries do not check.
+	 */
+	public void refresh() {
+		boolean changed = false;
+		for (int i = 0; i < entries.length; i++) {
+			SVGShape shape = shapeList.get(i);
+			if (shape.getModificationCount() != entries[i].modificationCount) {
+				entries[i] = createEntry(shape);
+				changed = true;
+			}
+		}
+		if (changed) {
+			index = createIndex();
+		}
+	}
+
+	private BoundingBoxIndex createIndex() {
+		List<Real2Range> bboxList = new ArrayList<Real2Range>(entries.length);
+		for (Entry entry : entries) {
+			bboxList.add(entry.bbox);
+		}
+		return new BoundingBoxIndex(bboxList);
+	}
+
+	private Entry createEntry(SVGShape shape) {
+		Entry entry = new Entry();
+		entry.modificationCount = shape.getModificationCount();
+		String stroke = shape.getStroke();
+		Double strokeWidth = shape.getStrokeWidth();
+		double halfWidth = (stroke == null || NONE.equals(stroke) || strokeWidth == null) ? 0.0 : strokeWidth / 2.0;
+		entry.pad = halfWidth + tolerance;
+		String fill = shape.getFill();
+		boolean painted = !NONE.equals(fill);
+		String fillRule = shape.getAttributeValue(FILL_RULE);
+		String style = shape.getAttributeValue(STYLE);
+		entry.evenOdd = EVENODD.equals(fillRule) || (style != null && style.replaceAll("\\s", "").contains(FILL_RULE+":"+EVENODD));
+		double[] coords = shape.getGeometricCoordinates();
+		if (shape instanceof SVGLine) {
+			entry.kind = Kind.EDGES;
+			entry.strokeEdges = coords;
+		} else if (shape instanceof SVGPoly) {
+			entry.kind = Kind.EDGES;
+			boolean closed = shape instanceof SVGPolygon || ((SVGPoly) shape).isClosed();
+			entry.strokeEdges = createChainEdges(coords, closed);
+			entry.fillEdges = painted && closed ? entry.strokeEdges : null;
+		} else if (shape instanceof SVGRect) {
+			entry.kind = Kind.EDGES;
+			double x0 = coords[0];
+			double y0 = coords[1];
+			double x1 = x0 + coords[2];
+			double y1 = y0 + coords[3];
+			entry.strokeEdges = createChainEdges(new double[] {x0, y0, x1, y0, x1, y1, x0, y1}, true);
+			entry.fillEdges = painted ? entry.strokeEdges : null;
+		} else if (shape instanceof SVGPath) {
+			entry.kind = Kind.EDGES;
+			createPathEdges(entry, (SVGPath) shape, painted && (fill != null || isClosed((SVGPath) shape)));
+		} else if (shape instanceof SVGCircle) {
+			entry.kind = Kind.CIRCLE;
+			entry.params = new double[] {coords[0], coords[1], coords[2], coords[2]};
+			entry.fillEdges = painted ? new double[0] : null;
+		} else if (shape instanceof SVGEllipse) {
+			entry.kind = Kind.ELLIPSE;
+			entry.params = coords;
+			entry.fillEdges = painted ? new double[0] : null;
+		} else {
+			entry.kind = Kind.BOX;
+		}
+		entry.bbox = createPaddedBox(entry, shape.getBoundingBox());
+		return entry;
+	}
+
+	private Real2Range createPaddedBox(Entry entry, Real2Range bbox) {
+		if (entry.kind == Kind.BOX || entry.kind == Kind.CIRCLE || entry.kind == Kind.ELLIPSE) {
+			if (entry.params != null) {
+				double[] p = entry.params;
+				return createBox(p[0] - p[2], p[0] + p[2], p[1] - p[3], p[1] + p[3], entry.pad);
+			}
+			return bbox == null || bbox.getXRange() == null || bbox.getYRange() == null ? null :
+				createBox(bbox.getXMin(), bbox.getXMax(), bbox.getYMin(), bbox.getYMax(), 0.0);
+		}
+		double[] edges = entry.strokeEdges;
+		if (edges == null || edges.length < 4) {
+			return null;
+		}
+		double xmin = Double.MAX_VALUE;
+		double xmax = -Double.MAX_VALUE;
+		double ymin = Double.MAX_VALUE;
+		double ymax = -Double.MAX_VALUE;
+		for (int i = 0; i < edges.length; i += 2) {
+			xmin = Math.min(xmin, edges[i]);
+			xmax = Math.max(xmax, edges[i]);
+			ymin = Math.min(ymin, edges[i + 1]);
+			ymax = Math.max(ymax, edges[i + 1]);
+		}
+		return createBox(xmin, xmax, ymin, ymax, entry.pad);
+	}
+
+	private static Real2Range createBox(double xmin, double xmax, double ymin, double ymax, double pad) {
+		if (!(xmin <= xmax && ymin <= ymax)) {
+			return null;
+		}
+		return new Real2Range(new RealRange(xmin - pad, xmax + pad), new RealRange(ymin - pad, ymax + pad));
+	}
+
+	private static boolean isClosed(SVGPath path) {
+		path.ensurePrimitives();
+		String signature = path.getSignature();
+		return path.isClosed() || (signature != null && signature.toUpperCase().contains("Z"));
+	}
+
+	/** edges between successive points of interleaved coordinates.
+	 */
+	private static double[] createChainEdges(double[] xy, boolean closed) {
+		int npoints = xy == null ? 0 : xy.length / 2;
+		int nedges = npoints < 2 ? 0 : (closed ? npoints : npoints - 1);
+		double[] edges = new double[4 * nedges];
+		for (int i = 0; i < nedges; i++) {
+			int j = (i + 1) % npoints;
+			edges[4 * i] = xy[2 * i];
+			edges[4 * i + 1] = xy[2 * i + 1];
+			edges[4 * i + 2] = xy[2 * j];
+			edges[4 * i + 3] = xy[2 * j + 1];
+		}
+		return edges;
+	}
+
+	/** flattened segments for stroke; for fill each open subpath is also closed (as SVG paints it).
+	 */
+	private void createPathEdges(Entry entry, SVGPath path, boolean filled) {
+		EdgeBuffer stroke = new EdgeBuffer();
+		EdgeBuffer fill = new EdgeBuffer();
+		PathSegmentIterator iterator = path.ensurePrimitives().createSegmentIterator(tolerance / 2.0);
+		double startX = Double.NaN;
+		double startY = Double.NaN;
+		double lastX = Double.NaN;
+		double lastY = Double.NaN;
+		while (iterator.next()) {
+			if (iterator.isSubpathStart()) {
+				fill.addClosingEdge(lastX, lastY, startX, startY);
+				startX = iterator.getX0();
+				startY = iterator.getY0();
+			}
+			stroke.add(iterator.getX0(), iterator.getY0(), iterator.getX1(), iterator.getY1());
+			fill.add(iterator.getX0(), iterator.getY0(), iterator.getX1(), iterator.getY1());
+			lastX = iterator.getX1();
+			lastY = iterator.getY1();
+		}
+		fill.addClosingEdge(lastX, lastY, startX, startY);
+		entry.strokeEdges = stroke.toArray();
+		entry.fillEdges = filled ? fill.toArray() : null;
+	}
+
+	private static boolean isHit(Entry entry, double x, double y) {
+		switch (entry.kind) {
+		case EDGES:
+			return (entry.fillEdges != null && isInside(entry.fillEdges, x, y, entry.evenOdd)) ||
+					isNearEdge(entry.strokeEdges, x, y, entry.pad);
+		case CIRCLE:
+		case ELLIPSE:
+			return isHitEllipse(entry, x, y);
+		default:
+			return entry.bbox != null;
+		}
+	}
+
+	/** winding number of the closed edges round the point.
+	 *
+	 * evenodd uses its parity (crossing count and winding number have the same parity).
+	 */
+	static boolean isInside(double[] edges, double x, double y, boolean evenOdd) {
+		int winding = 0;
+		for (int i = 0; i < edges.length; i += 4) {
+			double x0 = edges[i];
+			double y0 = edges[i + 1];
+			double x1 = edges[i + 2];
+			double y1 = edges[i + 3];
+			if (y0 <= y) {
+				if (y1 > y && (x1 - x0) * (y - y0) - (x - x0) * (y1 - y0) > 0.0) {
+					winding++;
+				}
+			} else if (y1 <= y && (x1 - x0) * (y - y0) - (x - x0) * (y1 - y0) < 0.0) {
+				winding--;
+			}
+		}
+		return evenOdd ? (winding & 1) != 0 : winding != 0;
+	}
+
+	/** is the point within distance of any edge (as segment)?
+	 */
+	static boolean isNearEdge(double[] edges, double x, double y, double distance) {
+		double distance2 = distance * distance;
+		for (int i = 0; i < edges.length; i += 4) {
+			double x0 = edges[i];
+			double y0 = edges[i + 1];
+			double dx = edges[i + 2] - x0;
+			double dy = edges[i + 3] - y0;
+			double px = x - x0;
+			double py = y - y0;
+			double length2 = dx * dx + dy * dy;
+			if (length2 > 0.0) {
+				double t = (px * dx + py * dy) / length2;
+				if (t > 1.0) {
+					px -= dx;
+					py -= dy;
+				} else if (t > 0.0) {
+					px -= t * dx;
+					py -= t * dy;
+				}
+			}
+			if (px * px + py * py <= distance2) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** inside (if filled) or near the outline, measured along the radius.
+	 */
+	private static boolean isHitEllipse(Entry entry, double x, double y) {
+		double[] p = entry.params;
+		double rx = p[2];
+		double ry = p[3];
+		if (!(rx > 0.0 && ry > 0.0)) {
+			return isNearEdge(new double[] {p[0], p[1], p[0], p[1]}, x, y, entry.pad + Math.max(rx, ry));
+		}
+		double dx = (x - p[0]) / rx;
+		double dy = (y - p[1]) / ry;
+		double r = Math.sqrt(dx * dx + dy * dy);
+		if (entry.fillEdges != null && r <= 1.0) {
+			return true;
+		}
+		return Math.abs(r - 1.0) * Math.min(rx, ry) <= entry.pad;
+	}
+
+	/** growable packed edge array. */
+	private static class EdgeBuffer {
+		private double[] edges = new double[64];
+		private int size;
+
+		void add(double x0, double y0, double x1, double y1) {
+			if (size + 4 > edges.length) {
+				edges = Arrays.copyOf(edges, 2 * edges.length);
+			}
+			edges[size++] = x0;
+			edges[size++] = y0;
+			edges[size++] = x1;
+			edges[size++] = y1;
+		}
+
+		void addClosingEdge(double x0, double y0, double x1, double y1) {
+			if (!Double.isNaN(x0) && (x0 != x1 || y0 != y1)) {
+				add(x0, y0, x1, y1);
+			}
+		}
+
+		double[] toArray() {
+			return Arrays.copyOf(edges, size);
+		}
+	}
+}
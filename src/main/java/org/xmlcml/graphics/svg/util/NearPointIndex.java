@@ -0,0 +1,162 @@
+package org.xmlcml.graphics.svg.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.xmlcml.euclid.Real2;
+
+/** objects bucketed by the eps-cell of an anchor point (e.g. their first coordinate).
+ *
+ * <p>
+ * Used where objects are only equal (within eps) if their anchors are within eps,
+ * such as hasEqualCoordinates() on lines, polylines and paths. A lookup probes the 3x3
+ * neighbouring cells and confirms candidates with the caller's own equality test,
+ * so results are the same as a linear scan with that test, at O(1) expected cost.
+ * </p>
+ * <p>
+ * Objects without an anchor (null or NaN) are kept in a separate list and always tested.
+ * </p>
+ *
+ * @author pm286
+ *
+ * @param <T>
+ */
+public class NearPointIndex<T> {
+
+	private static final Logger LOG = Logger.getLogger(NearPointIndex.class);
+	static {
+		LOG.setLevel(Level.DEBUG);
+	}
+
+	private static final long CELL_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+	private double cellSize;
+	private Function<T, Real2> anchorFunction;
+	private BiPredicate<T, T> equalTest;
+	private Map<Long, List<T>> bucketMap;
+	private List<T> unanchoredList;
+	private int size;
+
+	/**
+	 * @param eps tolerance of equalTest on anchors
+	 * @param anchorFunction point which must be within eps for objects to be equal
+	 * @param equalTest (indexed, query)
+	 */
+	public NearPointIndex(double eps, Function<T, Real2> anchorFunction, BiPredicate<T, T> equalTest) {
+		// any positive cell size >= eps is correct; eps == 0 still allows exact matches
+		this.cellSize = (eps > 0.0) ? eps : 1.0;
+		this.anchorFunction = anchorFunction;
+		this.equalTest = equalTest;
+		bucketMap = new HashMap<Long, List<T>>();
+		unanchoredList = new ArrayList<T>();
+	}
+
+	/** finds an indexed object equal to t.
+	 *
+	 * @param t
+	 * @return first such object or null
+	 */
+	public T find(T t) {
+		return find(anchorFunction.apply(t), indexed -> equalTest.test(indexed, t));
+	}
+
+	/** finds an indexed object near point which passes test.
+	 *
+	 * only objects with anchors in the cells around point (and unanchored objects) are tested,
+	 * so test must fail for any object whose anchor is more than eps from point.
+	 * Nothing is added or changed, so queries need no object to be created.
+	 *
+	 * @param point
+	 * @param test
+	 * @return first such object or null
+	 */
+	public T find(Real2 point, Predicate<T> test) {
+		if (!hasAnchor(point)) {
+			return findIn(unanchoredList, test);
+		}
+		long ix = getCell(point.getX());
+		long iy = getCell(point.getY());
+		for (long dx = -1; dx <= 1; dx++) {
+			for (long dy = -1; dy <= 1; dy++) {
+				T found = findIn(bucketMap.get(getKey(ix + dx, iy + dy)), test);
+				if (found != null) {
+					return found;
+				}
+			}
+		}
+		return findIn(unanchoredList, test);
+	}
+
+	public boolean contains(T t) {
+		return find(t) != null;
+	}
+
+	/** adds t unless an equal object is already indexed.
+	 *
+	 * @param t
+	 * @return true if added
+	 */
+	public boolean addIfAbsent(T t) {
+		if (contains(t)) {
+			return false;
+		}
+		add(t);
+		return true;
+	}
+
+	/** adds t without checking.
+	 *
+	 * @param t
+	 */
+	public void add(T t) {
+		Real2 anchor = anchorFunction.apply(t);
+		if (hasAnchor(anchor)) {
+			Long key = getKey(getCell(anchor.getX()), getCell(anchor.getY()));
+			List<T> bucket = bucketMap.get(key);
+			if (bucket == null) {
+				bucket = new ArrayList<T>(2);
+				bucketMap.put(key, bucket);
+			}
+			bucket.add(t);
+		} else {
+			unanchoredList.add(t);
+		}
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private T findIn(List<T> list, Predicate<T> test) {
+		if (list != null) {
+			for (T indexed : list) {
+				if (test.test(indexed)) {
+					return indexed;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static boolean hasAnchor(Real2 anchor) {
+		return anchor != null && !Double.isNaN(anchor.getX()) && !Double.isNaN(anchor.getY()) &&
+				!Double.isInfinite(anchor.getX()) && !Double.isInfinite(anchor.getY());
+	}
+
+	private long getCell(double coord) {
+		return (long) Math.floor(coord / cellSize);
+	}
+
+	private static long getKey(long ix, long iy) {
+		return ix * CELL_MULTIPLIER + iy;
+	}
+
+}
@@ -63,6 +63,9 @@ public class Fixtures {
 	public static final File SCATTERPLOT_FIVE_7_2_SVG = new File(PLOT_DIR, "scatterplot5.g.7.2.svg");
 	public static final File SCATTERPLOT_7_2_SVG = new File(PLOT_DIR, "scatterplot.g.7.2.svg");
 
+	public static final File TEXT_DIR = new File(SVG_DIR, "text");
+	public static final File WORD_PAGE_LIST_SVG = new File(TEXT_DIR, "wordPageList.svg");
+
 	//	public final static String IMAGE_SVG = ""
 	//	 		+ "<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\" >"
 	//	 		+ "  <image transform=\"matrix(0.05999946966767311,-0.0,-0.0,-0.05999946966767311,197.92599487304688,562.9089965820312)\" x=\"0.0\" y=\"0.0\" "
@@ -18,6 +18,7 @@ package org.xmlcml.graphics.svg;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
@@ -173,6 +174,35 @@ public class SVGElementTest {
 		Assert.assertEquals("create mask", maskRef, mask);
 	 }
 
+	@Test
+	public void testCreateMaskAndFilterAgainstRealRangeArray() {
+		Random random = new Random(13);
+		List<SVGElement> elementList = new ArrayList<SVGElement>();
+		RealRangeArray refMask = new RealRangeArray();
+		for (int i = 0; i < 200; i++) {
+			double x = random.nextInt(500);
+			double w = random.nextInt(10);
+			elementList.add(new SVGRect(new Real2(x, 0.), new Real2(x + w, 10.)));
+			refMask.add(new RealRange(x, x + w));
+		}
+		refMask.sortAndRemoveOverlapping();
+		RealRangeArray mask = SVGElement.createMask(elementList, Direction.HORIZONTAL);
+		Assert.assertEquals("mask", refMask.toString(), mask.toString());
+		
+		RealRangeArray filterMask = new RealRangeArray();
+		for (int i = 0; i < 50; i++) {
+			double x = random.nextInt(500);
+			filterMask.add(new RealRange(x, x + random.nextInt(20)));
+		}
+		List<SVGElement> refList = new ArrayList<SVGElement>();
+		for (SVGElement element : elementList) {
+			if (filterMask.includes(element.getBoundingBox().getXRange())) {
+				refList.add(element);
+			}
+		}
+		Assert.assertEquals("filtered", refList, SVGElement.filterHorizontally(elementList, filterMask));
+	}
+
 	@Test
 	public void testAngleOfRotation() {
 		String character = 
@@ -0,0 +1,105 @@
+package org.xmlcml.graphics.svg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Transform2;
+
+public class SVGGBoxTest {
+
+	@Test
+	public void testAddSVGGLeftToRight() {
+		SVGGBox parent = new SVGGBox();
+		parent.setLayout(SVGLayout.LEFT2RIGHT);
+		SVGGBox first = createBox(10.0, 5.0);
+		parent.addSVGG(first);
+		parent.addSVGG(createBox(20.0, 6.0));
+		parent.addSVGG(createBox(30.0, 7.0));
+		assertTranslations(parent, new double[][] {{0.0, 0.0}, {10.0, 0.0}, {30.0, 0.0}});
+		// caller's box is copied, not adopted
+		Assert.assertNull(first.getParent());
+		Assert.assertNull(first.getTransform2FromAttribute());
+		Assert.assertNotSame(first, parent.getChild(0));
+	}
+
+	@Test
+	public void testAddSVGGTopToBottom() {
+		SVGGBox parent = new SVGGBox();
+		parent.setLayout(SVGLayout.TOP2BOTTOM);
+		parent.addSVGG(createBox(10.0, 5.0));
+		parent.addSVGG(createBox(20.0, 6.0));
+		parent.addSVGG(createBox(30.0, 7.0));
+		assertTranslations(parent, new double[][] {{0.0, 0.0}, {0.0, 5.0}, {0.0, 11.0}});
+	}
+
+	@Test
+	public void testLayoutMatchesAddSVGG() {
+		List<SVGGBox> boxList = new ArrayList<SVGGBox>();
+		for (int i = 1; i <= 5; i++) {
+			boxList.add(createBox(i * 3.0, i * 2.0));
+		}
+		SVGGBox added = new SVGGBox();
+		added.setLayout(SVGLayout.LEFT2RIGHT);
+		added.addSVGG(createBox(4.0, 1.0));
+		for (SVGGBox box : boxList) {
+			added.addSVGG(box);
+		}
+		SVGGBox laidOut = new SVGGBox();
+		laidOut.setLayout(SVGLayout.LEFT2RIGHT);
+		laidOut.addSVGG(createBox(4.0, 1.0));
+		laidOut.layout(boxList);
+		Assert.assertEquals(added.getChildCount(), laidOut.getChildCount());
+		for (int i = 0; i < added.getChildCount(); i++) {
+			Assert.assertEquals(((SVGElement) added.getChild(i)).getAttributeValue("transform"),
+					((SVGElement) laidOut.getChild(i)).getAttributeValue("transform"));
+		}
+		Assert.assertEquals(4.0 + 3.0 + 6.0 + 9.0 + 12.0, getTranslation(laidOut, 5)[0], 0.0);
+	}
+
+	@Test
+	public void testRelayoutAfterChildrenChange() {
+		SVGGBox parent = new SVGGBox();
+		parent.setLayout(SVGLayout.LEFT2RIGHT);
+		parent.addSVGG(createBox(10.0, 5.0));
+		parent.addSVGG(createBox(20.0, 5.0));
+		// resize the first child in place
+		SVGElement firstChild = (SVGElement) parent.getChild(0);
+		((SVGRect) firstChild.getChild(0)).setWidth(15.0);
+		parent.addSVGG(createBox(30.0, 5.0));
+		Assert.assertEquals(35.0, getTranslation(parent, 2)[0], 0.0);
+		// replace the first child
+		parent.replaceChild(firstChild, createBox(1.0, 5.0));
+		parent.addSVGG(createBox(30.0, 5.0));
+		Assert.assertEquals(51.0, getTranslation(parent, 3)[0], 0.0);
+		// remove a child
+		parent.getChild(1).detach();
+		parent.layout(Arrays.asList(createBox(2.0, 5.0), createBox(2.0, 5.0)));
+		Assert.assertEquals(61.0, getTranslation(parent, 3)[0], 0.0);
+		Assert.assertEquals(63.0, getTranslation(parent, 4)[0], 0.0);
+	}
+
+	private static SVGGBox createBox(double width, double height) {
+		SVGGBox box = new SVGGBox();
+		box.appendChild(new SVGRect(0.0, 0.0, width, height));
+		return box;
+	}
+
+	private static void assertTranslations(SVGGBox parent, double[][] expected) {
+		Assert.assertEquals(expected.length, parent.getChildCount());
+		for (int i = 0; i < expected.length; i++) {
+			double[] translation = getTranslation(parent, i);
+			Assert.assertEquals("x "+i, expected[i][0], translation[0], 0.0);
+			Assert.assertEquals("y "+i, expected[i][1], translation[1], 0.0);
+		}
+	}
+
+	private static double[] getTranslation(SVGGBox parent, int i) {
+		Transform2 t2 = ((SVGElement) parent.getChild(i)).getTransform2FromAttribute();
+		Assert.assertNotNull(t2);
+		double[] matrix = t2.getMatrixAsArray();
+		return new double[] {matrix[2], matrix[5]};
+	}
+}
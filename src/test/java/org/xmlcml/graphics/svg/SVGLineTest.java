@@ -1,15 +1,23 @@
 package org.xmlcml.graphics.svg;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
 import org.xmlcml.euclid.Angle;
+import org.xmlcml.euclid.Line2;
 import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.RealRange;
+import org.xmlcml.euclid.RealRangeArray;
 import org.xmlcml.graphics.svg.SVGLine.LineDirection;
+import org.xmlcml.graphics.svg.linestuff.LineIntersection;
 
 public class SVGLineTest {
 	
@@ -207,4 +215,109 @@ public class SVGLineTest {
 				"<line xmlns=\"http://www.w3.org/2000/svg\" stroke=\"black\" stroke-width=\"1.0\" x1=\"36.9\" y1=\"100.0\" x2=\"503.1\" y2=\"100.0\" />",
 				newLine.toXML());
 	}
+	
+	@Test
+	public void testMergeParallelLinesSweep() {
+		Random random = new Random(3);
+		List<SVGLine> lineList = new ArrayList<SVGLine>();
+		Map<Integer, RealRangeArray> rangesByY = new TreeMap<Integer, RealRangeArray>();
+		for (int i = 0; i < 500; i++) {
+			int y = random.nextInt(20) * 10;
+			double x = random.nextInt(100);
+			double length = 1 + random.nextInt(5);
+			lineList.add(new SVGLine(new Real2(x, y), new Real2(x + length, y)));
+			if (rangesByY.get(y) == null) {
+				rangesByY.put(y, new RealRangeArray());
+			}
+			rangesByY.get(y).add(new RealRange(x, x + length));
+		}
+		SVGLine diagonal = new SVGLine(new Real2(0, 0), new Real2(10, 10));
+		lineList.add(diagonal);
+		List<SVGLine> newLineList = SVGLine.mergeParallelLines(lineList, 0.1);
+		Assert.assertTrue(newLineList.contains(diagonal));
+		List<String> expected = new ArrayList<String>();
+		for (Integer y : rangesByY.keySet()) {
+			RealRangeArray ranges = rangesByY.get(y);
+			ranges.sortAndRemoveOverlapping();
+			for (RealRange range : ranges) {
+				expected.add(y+" "+range);
+			}
+		}
+		List<String> found = new ArrayList<String>();
+		for (SVGLine line : newLineList) {
+			if (line != diagonal) {
+				found.add((int) line.getXY(0).getY()+" "+line.getBoundingBox().getXRange());
+			}
+		}
+		Collections.sort(expected);
+		Collections.sort(found);
+		Assert.assertEquals(expected, found);
+	}
+
+	@Test
+	public void testCachedPredicatesMatchEuclidLine() {
+		Random random = new Random(5);
+		Angle angleEps = new Angle(0.05, Angle.Units.RADIANS);
+		List<SVGLine> lineList = new ArrayList<SVGLine>();
+		for (int i = 0; i < 200; i++) {
+			// small integer coordinates give exact horizontals, verticals, parallels and zero-length lines
+			lineList.add(new SVGLine(new Real2(random.nextInt(5), random.nextInt(5)),
+					new Real2(random.nextInt(5), random.nextInt(5))));
+		}
+		for (int i = 0; i < lineList.size(); i++) {
+			SVGLine line0 = lineList.get(i);
+			if (i % 3 == 0) {
+				line0.setXY(new Real2(random.nextInt(5), random.nextInt(5)), i % 2);
+			}
+			Line2 euclid0 = new Line2(line0.getXY(0), line0.getXY(1));
+			Assert.assertEquals(euclid0.getLength(), line0.getLength(), 1.0E-12);
+			Assert.assertTrue(euclid0.getXY(1).isEqualTo(line0.getEuclidLine().getXY(1), 1.0E-12));
+			for (int j = 0; j < 50; j++) {
+				SVGLine line1 = lineList.get(random.nextInt(lineList.size()));
+				Line2 euclid1 = new Line2(line1.getXY(0), line1.getXY(1));
+				Assert.assertEquals(euclid0.isParallelTo(euclid1, angleEps), line0.isParallelTo(line1, angleEps));
+				Assert.assertEquals(euclid0.isAntiParallelTo(euclid1, angleEps), line0.isAntiParallelTo(line1, angleEps));
+				Assert.assertEquals(Math.abs(euclid0.getAngleMadeWith(euclid1).cos()) < 0.01, line0.isPerpendicularTo(line1, 0.01));
+			}
+		}
+		SVGLine line = new SVGLine(new Real2(0, 0), new Real2(10, 0));
+		SVGLine vertical = new SVGLine(new Real2(10, -5), new Real2(10, 5));
+		Assert.assertEquals(LineDirection.HORIZONTAL, line.getOrCreateDirection(0.1));
+		Assert.assertTrue(line.makesTJointWith(vertical, 0.1));
+		line.addAttribute(new nu.xom.Attribute("y2", "10"));
+		Assert.assertEquals(10.0, line.getXY(1).getY(), 0.0);
+		Assert.assertNull(line.getOrCreateDirection(0.1));
+		Assert.assertFalse(line.makesTJointWith(vertical, 0.1));
+		Assert.assertEquals(Math.sqrt(200.0), line.getLength(), 1.0E-12);
+	}
+
+	@Test
+	public void testFindAllIntersections() {
+		List<SVGLine> lineList = new ArrayList<SVGLine>();
+		for (int i = 0; i < 5; i++) {
+			lineList.add(new SVGLine(new Real2(0, 10 * i), new Real2(40, 10 * i)));
+			lineList.add(new SVGLine(new Real2(10 * i, 40), new Real2(10 * i, 0)));
+		}
+		// diagonal through the grid points, and a collinear duplicate of a horizontal
+		lineList.add(new SVGLine(new Real2(0, 0), new Real2(40, 40)));
+		lineList.add(new SVGLine(new Real2(20, 0.001), new Real2(60, 0.001)));
+		List<LineIntersection> intersections = SVGLine.findAllIntersections(lineList, 0.01);
+		int diagonal = 0;
+		for (LineIntersection intersection : intersections) {
+			Assert.assertTrue(intersection.getIndex0() < intersection.getIndex1());
+			Real2 point = intersection.getPoint();
+			Assert.assertNotNull(intersection.getLine0().getIntersection(intersection.getLine1()));
+			if (intersection.getIndex1() == 10) {
+				Assert.assertEquals(point.getX(), point.getY(), 1.0E-10);
+				diagonal++;
+			}
+		}
+		Assert.assertEquals(10, diagonal);
+		// verticals at x = 20, 30, 40 touch the extra horizontal
+		Assert.assertEquals(25 + 10 + 3, intersections.size());
+		LineIntersection first = intersections.get(0);
+		Assert.assertEquals(0, first.getIndex0());
+		Assert.assertEquals(1, first.getIndex1());
+		Assert.assertEquals(0.0, first.getPoint().getX(), 0.0);
+	}
 }
@@ -2,6 +2,7 @@ package org.xmlcml.graphics.svg;
 
 import java.awt.geom.GeneralPath;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Logger;
@@ -11,12 +12,17 @@ import org.junit.Test;
 import org.xmlcml.euclid.Angle;
 import org.xmlcml.euclid.Angle.Units;
 import org.xmlcml.euclid.EuclidTestUtils;
+import org.xmlcml.euclid.Real2;
 import org.xmlcml.euclid.Real2Array;
+import org.xmlcml.euclid.Real2Range;
+import org.xmlcml.euclid.Transform2;
+import org.xmlcml.euclid.Vector2;
 import org.xmlcml.graphics.svg.path.ClosePrimitive;
 import org.xmlcml.graphics.svg.path.CubicPrimitive;
 import org.xmlcml.graphics.svg.path.LinePrimitive;
 import org.xmlcml.graphics.svg.path.MovePrimitive;
 import org.xmlcml.graphics.svg.path.PathPrimitiveList;
+import org.xmlcml.graphics.svg.path.PathSegmentIterator;
 
 public class SVGPathTest {
 
@@ -242,4 +248,152 @@ public class SVGPathTest {
 	}
 
 
+
+	@Test
+	public void testSimplify() {
+		SVGPath path = new SVGPath("M0 0 L1 0.01 L2 0 L3 0 C4 1 5 1 6 0 L7 0 L8 0 L8 5 L8 10 Z M20 20 L21 20 L22 20");
+		Assert.assertEquals(5, path.simplify(0.1));
+		Assert.assertEquals("MLCLLZML", path.getSignature());
+		Assert.assertEquals(0, path.simplify(0.1));
+	}
+
+	@Test
+	public void testCachesFollowD() {
+		SVGPath path = new SVGPath("M0 0 L10 0 L10 5");
+		PathPrimitiveList primitives = path.ensurePrimitives();
+		Assert.assertSame(primitives, path.ensurePrimitives());
+		Assert.assertSame(path.getCoords(), path.getCoords());
+		Assert.assertEquals("MLL", path.getSignature());
+		Assert.assertEquals(10.0, path.getBoundingBox().getXMax(), 0.0);
+		path.setDString("M0 0 L20 0 L20 5 Z");
+		Assert.assertNotSame(primitives, path.ensurePrimitives());
+		Assert.assertEquals("MLLZ", path.getSignature());
+		Assert.assertEquals(20.0, path.getBoundingBox().getXMax(), 0.0);
+		path.applyTransform(new Transform2(new Vector2(1.0, 2.0)));
+		Assert.assertEquals(21.0, path.getBoundingBox().getXMax(), 0.0);
+		Assert.assertEquals(21.0, new SVGPath(path.getDString()).getBoundingBox().getXMax(), 0.0);
+		Assert.assertEquals(8, path.getGeometricCoordinates().length);
+	}
+
+	@Test
+	public void testPackedTransformAndFormat() {
+		String d = "M1.5 2.25 L10.125 3.0625 C11 12 13.5 14.5 15.75 16.875 L20 21 Z M30 31 L32.5 33.5";
+		Transform2 t2 = new Transform2(new double[] {0.5, -0.25, 3.0, 0.75, 1.5, -2.0, 0.0, 0.0, 1.0});
+		PathPrimitiveList expected = SVGPathPrimitive.parseDString(d);
+		for (SVGPathPrimitive primitive : expected) {
+			primitive.transformBy(t2);
+		}
+		SVGPath path = new SVGPath(d);
+		path.applyTransform(t2);
+		Assert.assertEquals(SVGPath.constructDString(expected), path.getDString());
+		List<SVGPath> pathList = new ArrayList<SVGPath>();
+		pathList.add(new SVGPath(d));
+		pathList.add(new SVGPath("M5 5 L6 6"));
+		SVGPath.applyTransform(pathList, t2);
+		Assert.assertEquals(path.getDString(), pathList.get(0).getDString());
+		Assert.assertEquals("M4.25 9.25 L4.5 11.5 ", pathList.get(1).getDString());
+
+		expected.format(1);
+		SVGPath.formatPaths(pathList, 1);
+		Assert.assertEquals(SVGPath.constructDString(expected), pathList.get(0).getDString());
+		path.format(1);
+		Assert.assertEquals(path.getDString(), pathList.get(0).getDString());
+	}
+
+	@Test
+	public void testFormatManyPlaces() {
+		String d = "M1.123456789012345 2.5 L3.000000000049 -4.987654321098765";
+		PathPrimitiveList primitives = SVGPathPrimitive.parseDString(d);
+		primitives.format(10);
+		Assert.assertEquals(1.123456789, primitives.get(0).getFirstCoord().getX(), 0.0);
+		Assert.assertEquals(3.0, primitives.get(1).getFirstCoord().getX(), 0.0);
+		Assert.assertEquals(-4.9876543211, primitives.get(1).getFirstCoord().getY(), 0.0);
+		// packed bulk path rounds the same way
+		double[] xy = new double[] {1.123456789012345, 2.5, 3.000000000049, -4.987654321098765};
+		SVGUtil.formatInterleavedXYArray(xy, 10);
+		double[] xy1 = new double[4];
+		primitives.getCoordinates(xy1, 0);
+		Assert.assertArrayEquals(xy1, xy, 0.0);
+		xy = new double[] {1.23456789012345, -0.000000000049};
+		SVGUtil.formatInterleavedXYArray(xy, 12);
+		Assert.assertEquals(1.234567890123, xy[0], 0.0);
+		Assert.assertEquals(-0.000000000049, xy[1], 0.0);
+	}
+
+	@Test
+	public void testCurveBoundingBoxAndFlattening() {
+		SVGPath cubic = new SVGPath("M0 0 C0 10 10 10 10 0");
+		Real2Range bbox = cubic.getBoundingBox();
+		Assert.assertEquals(0.0, bbox.getXMin(), 1.0e-10);
+		Assert.assertEquals(10.0, bbox.getXMax(), 1.0e-10);
+		Assert.assertEquals(0.0, bbox.getYMin(), 1.0e-10);
+		Assert.assertEquals(7.5, bbox.getYMax(), 1.0e-10);
+		Assert.assertEquals(5.0, new SVGPath("M0 0 Q5 10 10 0").getBoundingBox().getYMax(), 1.0e-10);
+
+		PathSegmentIterator iterator = cubic.ensurePrimitives().createSegmentIterator(0.01);
+		int count = 0;
+		double lastX = 0.0;
+		double maxY = 0.0;
+		while (iterator.next()) {
+			Assert.assertTrue(iterator.isCurve());
+			Assert.assertEquals(count == 0, iterator.isSubpathStart());
+			Assert.assertEquals(lastX, iterator.getX0(), 0.0);
+			lastX = iterator.getX1();
+			maxY = Math.max(maxY, iterator.getY1());
+			count++;
+		}
+		Assert.assertEquals(10.0, lastX, 0.0);
+		Assert.assertEquals(7.5, maxY, 0.01);
+		SVGPoly coarse = cubic.createFlattenedPolyline(1.0);
+		Assert.assertTrue(coarse.getReal2Array().size() < count + 1);
+		Assert.assertNull(cubic.createPolyline());
+
+		SVGPoly closed = new SVGPath("M0 0 L10 0 Q10 10 0 10 Z").createFlattenedPolyline(0.1);
+		Assert.assertTrue(closed.isClosed());
+		Assert.assertEquals(0.0, closed.getReal2Array().getLastElement().getX(), 0.0);
+		Assert.assertNull(new SVGPath("M0 0 L1 1 M2 2 L3 3").createFlattenedPolyline(0.1));
+	}
+
+	@Test
+	public void testTransformSubListLeavesSourceUnchanged() {
+		String d = "M0 0 L10 0 L10 10 Z M20 20 L30 20 L30 30 Z";
+		SVGPath path = new SVGPath(d);
+		PathPrimitiveList primitives = path.ensurePrimitives();
+		double[] xy = new double[primitives.getCoordinateCount() * 2];
+		primitives.getCoordinates(xy, 0);
+		Real2 zeroth = primitives.get(5).getZerothCoord();
+		SVGPath piece = new SVGPath();
+		piece.setPrimitives(primitives.getSubList(4, 8));
+		piece.applyTransform(new Transform2(new Vector2(100., 100.)));
+		Assert.assertEquals(120.0, piece.ensurePrimitives().get(0).getFirstCoord().getX(), 0.0);
+		Assert.assertEquals(120.0, piece.ensurePrimitives().get(1).getZerothCoord().getX(), 0.0);
+		double[] xy1 = new double[xy.length];
+		path.ensurePrimitives().getCoordinates(xy1, 0);
+		Assert.assertArrayEquals(xy, xy1, 0.0);
+		Assert.assertEquals(zeroth.getX(), primitives.get(5).getZerothCoord().getX(), 0.0);
+		path.format(1);
+		SVGPath unchanged = new SVGPath(d);
+		unchanged.format(1);
+		Assert.assertEquals(unchanged.getDString(), path.getDString());
+	}
+
+	@Test
+	public void testSetPrimitivesCopiesList() {
+		PathPrimitiveList primitives = SVGPathPrimitive.parseDString("M0.04 0 L10 0 L10 10");
+		SVGPath path = new SVGPath();
+		path.setPrimitives(primitives);
+		SVGPath path1 = new SVGPath(primitives, path);
+		path.applyTransform(new Transform2(new Vector2(100., 100.)));
+		path1.format(1);
+		Assert.assertEquals(100.04, path.ensurePrimitives().get(0).getFirstCoord().getX(), 1.0e-10);
+		Assert.assertEquals(0.0, path1.ensurePrimitives().get(0).getFirstCoord().getX(), 0.0);
+		Assert.assertEquals(0.04, primitives.get(0).getFirstCoord().getX(), 0.0);
+		Assert.assertEquals(10.0, primitives.get(2).getFirstCoord().getY(), 0.0);
+		// own list edited in place is kept
+		PathPrimitiveList own = path.ensurePrimitives();
+		own.remove(2);
+		path.setPrimitives(own);
+		Assert.assertSame(own, path.ensurePrimitives());
+		Assert.assertEquals(2, path.ensurePrimitives().size());
+	}
 }
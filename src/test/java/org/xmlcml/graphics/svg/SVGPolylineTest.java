@@ -16,14 +16,25 @@
 
 package org.xmlcml.graphics.svg;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.xmlcml.euclid.ArrayBase;
+import org.xmlcml.euclid.Axis.Axis2;
 import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Array;
+import org.xmlcml.euclid.RealArray.Monotonicity;
+import org.xmlcml.graphics.svg.linestuff.PolylineSegments;
+import org.xmlcml.graphics.svg.linestuff.PolylineSimplifier;
+
+import nu.xom.Attribute;
 
 public class SVGPolylineTest {
 	public static final Logger LOG = Logger.getLogger(SVGPolylineTest.class);
@@ -135,4 +146,114 @@ public class SVGPolylineTest {
 		poly1.createVerticalOrHorizontalLine(0.03);
 		
 	}
+
+	@Test
+	public void testNumericAttributesFollowAddAttribute() {
+		SVGRect rect = new SVGRect(new Real2(1.0, 2.0), new Real2(11.0, 7.0));
+		Assert.assertEquals(1.0, rect.getX(), 0.0);
+		Assert.assertEquals(10.0, rect.getWidth(), 0.0);
+		rect.setX(3.0);
+		rect.addAttribute(new Attribute("width", "4px"));
+		Assert.assertEquals(3.0, rect.getX(), 0.0);
+		Assert.assertEquals(4.0, rect.getWidth(), 0.0);
+		rect.removeAttribute(rect.getAttribute("height"));
+		Assert.assertNull(rect.getHeight());
+		SVGCircle circle = new SVGCircle(new Real2(0.0, 0.0), 2.0);
+		Assert.assertEquals(2.0, circle.getRad(), 0.0);
+		circle.setRad(5.0);
+		Assert.assertEquals(5.0, circle.getRad(), 0.0);
+
+		SVGPolyline polyline = new SVGPolyline(Real2Array.createFromPairs("0 0 10 5 20 -5", ArrayBase.ARRAY_REGEX));
+		Assert.assertEquals(6, polyline.getInterleavedXYArray().length);
+		Assert.assertEquals(20.0, polyline.getBoundingBox().getXMax(), 0.0);
+		Assert.assertEquals(-5.0, polyline.getBoundingBox().getYMin(), 0.0);
+		polyline.addAttribute(new Attribute(SVGPoly.POINTS, "1 1 2 2"));
+		Assert.assertEquals(2, polyline.getReal2Array().size());
+		Assert.assertEquals(2.0, polyline.getInterleavedXYArray()[3], 0.0);
+		polyline.add(new Real2(3.0, 3.0));
+		Assert.assertEquals(6, polyline.getInterleavedXYArray().length);
+	}
+
+	@Test
+	public void testSegmentsMatchLineList() {
+		Random random = new Random(7);
+		for (int trial = 0; trial < 200; trial++) {
+			Real2Array r2a = new Real2Array();
+			int npoints = 1 + random.nextInt(6);
+			for (int i = 0; i < npoints; i++) {
+				r2a.add(new Real2(random.nextInt(3), (trial % 2 == 0) ? i : random.nextInt(3)));
+			}
+			SVGPolyline polyline = new SVGPolyline(r2a);
+			polyline.setClosed(trial % 3 == 0);
+			PolylineSegments segments = polyline.getOrCreateSegments();
+			Assert.assertEquals(r2a.getXArray().getMonotonicity(), polyline.getMonotonicity(Axis2.X));
+			Assert.assertEquals(r2a.getYArray().getMonotonicity(), polyline.getMonotonicity(Axis2.Y));
+			int lineCount = polyline.getLineCount();
+			boolean aligned = polyline.isAlignedWithAxes(0.01);
+			List<SVGLine> lineList = polyline.createLineList();
+			Assert.assertEquals(lineList.size(), lineCount);
+			boolean alignedLines = true;
+			for (int i = 0; i < lineList.size(); i++) {
+				SVGLine line = lineList.get(i);
+				Assert.assertEquals(line.getLength(), segments.getLength(i), 1.0E-12);
+				Assert.assertEquals(line.isHorizontal(0.01), segments.isHorizontal(i, 0.01));
+				alignedLines &= line.isHorizontal(0.01) || line.isVertical(0.01);
+			}
+			Assert.assertEquals(alignedLines, aligned);
+		}
+		SVGPolyline zigzag = new SVGPolyline(Real2Array.createFromPairs("0 0 1 2 2 4 3 1 4 1 5 3", ArrayBase.ARRAY_REGEX));
+		PolylineSegments segments = zigzag.getOrCreateSegments();
+		Assert.assertEquals(Monotonicity.INCREASING, zigzag.getMonotonicity(Axis2.X));
+		Assert.assertNull(zigzag.getMonotonicity(Axis2.Y));
+		Assert.assertEquals("[0, 2, 4]", Arrays.toString(segments.getMonotonicRunStarts(Axis2.Y)));
+		Assert.assertEquals(Monotonicity.DECREASING, segments.getMonotonicRunDirections(Axis2.Y)[1]);
+		zigzag.add(new Real2(6.0, 0.0));
+		Assert.assertEquals(6, zigzag.getOrCreateSegments().size());
+	}
+
+	@Test
+	public void testSimplifyKeepsMaximumDeviation() {
+		Random random = new Random(11);
+		double tolerance = 0.5;
+		Real2Array r2a = new Real2Array();
+		for (int i = 0; i < 5000; i++) {
+			// noisy sine
+			r2a.add(new Real2(i * 0.1, 20.0 * Math.sin(i * 0.01) + 0.2 * random.nextGaussian()));
+		}
+		double[] xy = SVGUtil.createInterleavedXYArray(r2a);
+		SVGPolyline polyline = new SVGPolyline(r2a);
+		int removed = polyline.simplify(tolerance);
+		Real2Array simplified = polyline.getReal2Array();
+		Assert.assertEquals(5000, simplified.size() + removed);
+		Assert.assertTrue("removed "+removed, removed > 4500);
+		Assert.assertTrue(simplified.get(0).isEqualTo(r2a.get(0), 0.0001));
+		// every original point is within tolerance of the simplified polyline
+		int segment = 0;
+		for (int i = 0; i < xy.length / 2; i++) {
+			while (simplified.get(segment + 1).getX() < xy[2 * i]) {
+				segment++;
+			}
+			Real2 p0 = simplified.get(segment);
+			Real2 p1 = simplified.get(segment + 1);
+			double t = (xy[2 * i] - p0.getX()) / (p1.getX() - p0.getX());
+			double y = p0.getY() + t * (p1.getY() - p0.getY());
+			double slope = (p1.getY() - p0.getY()) / (p1.getX() - p0.getX());
+			double distance = Math.abs(xy[2 * i + 1] - y) / Math.sqrt(1 + slope * slope);
+			Assert.assertTrue(i+": "+distance, distance <= tolerance + 1.0E-9);
+		}
+		
+		SVGPolygon square = new SVGPolygon(Real2Array.createFromPairs("0 0 5 0 10 0 10 10 0 10 0 5", ArrayBase.ARRAY_REGEX));
+		Assert.assertEquals(2, square.simplify(0.01));
+		Assert.assertEquals(4, square.getReal2Array().size());
+		SVGPolygon thin = new SVGPolygon(Real2Array.createFromPairs("0 0 5 0.001 10 0", ArrayBase.ARRAY_REGEX));
+		Assert.assertEquals(0, thin.simplify(0.01));
+		
+		List<SVGElement> elements = new ArrayList<SVGElement>();
+		for (int i = 0; i < 20; i++) {
+			elements.add(new SVGPolyline(Real2Array.createFromPairs("0 0 1 1 2 2 3 3 3 4", ArrayBase.ARRAY_REGEX)));
+			elements.add(new SVGRect(0.0, 0.0, 1.0, 1.0));
+		}
+		Assert.assertEquals(40, PolylineSimplifier.simplify(elements, 0.01, true));
+		Assert.assertEquals(3, ((SVGPoly) elements.get(0)).getReal2Array().size());
+	}
 }
@@ -180,6 +180,98 @@ public class SVGUtilTest {
 		Assert.assertEquals("both just", 2, includedList.size());
 	}
 
+	@Test
+	public void testRemoveDuplicateShapes() {
+		List<SVGShape> shapeList = new ArrayList<SVGShape>();
+		shapeList.add(new SVGLine(new Real2(10., 20.), new Real2(30., 40.)));
+		shapeList.add(new SVGCircle(new Real2(10., 20.), 5.));
+		shapeList.add(new SVGLine(new Real2(10., 20.), new Real2(30., 40.)));
+		shapeList.add(new SVGPath("M10 20 L30 40 L50 20"));
+		shapeList.add(new SVGPath("M10.0 20.0 L30.0 40.0 L50.0 20.0"));
+		shapeList.add(new SVGPath("M10 20 L30 40 M50 20"));
+		shapeList.add(new SVGRect(new Real2(10., 20.), new Real2(30., 40.)));
+		shapeList.add(new SVGCircle(new Real2(10.001, 20.), 5.));
+		List<SVGShape> newList = SVGUtil.removeDuplicateShapes(shapeList);
+		Assert.assertEquals("exact", 6, newList.size());
+		Assert.assertEquals("same fingerprint", shapeList.get(3).getGeometricFingerprint(0.01), shapeList.get(4).getGeometricFingerprint(0.01));
+		Assert.assertTrue("different commands", shapeList.get(3).getGeometricFingerprint(0.01) != shapeList.get(5).getGeometricFingerprint(0.01));
+		newList = SVGUtil.removeNearDuplicateShapes(newList, 0.01);
+		Assert.assertEquals("near", 5, newList.size());
+	}
+
+	@Test
+	public void testRemoveDuplicateCubicsWithSameFirstControlPoint() {
+		List<SVGShape> shapeList = new ArrayList<SVGShape>();
+		shapeList.add(new SVGPath("M0 0 C 1 1 2 2 3 3"));
+		shapeList.add(new SVGPath("M0 0 C 1 1 50 50 90 90"));
+		shapeList.add(new SVGPath("M0.0 0.0 C 1.0 1.0 2.0 2.0 3.0 3.0"));
+		Assert.assertTrue("different curves", shapeList.get(0).getGeometricFingerprint(0.01) != shapeList.get(1).getGeometricFingerprint(0.01));
+		List<SVGShape> newList = SVGUtil.removeDuplicateShapes(shapeList);
+		Assert.assertEquals(2, newList.size());
+		Assert.assertSame(shapeList.get(1), newList.get(1));
+		Assert.assertEquals(2, SVGUtil.removeNearDuplicateShapes(newList, 0.01).size());
+	}
+
+	@Test
+	public void testGeometricFingerprintIsUpdated() {
+		SVGLine line = new SVGLine(new Real2(10., 20.), new Real2(30., 40.));
+		long fingerprint = line.getGeometricFingerprint(0.01);
+		line.setXY(new Real2(35., 40.), 1);
+		Assert.assertTrue("changed", fingerprint != line.getGeometricFingerprint(0.01));
+	}
+
+	@Test
+	public void testCreateNonOverlappingBoundingBoxList() {
+		List<SVGElement> elementList = new ArrayList<SVGElement>();
+		elementList.add(new SVGRect(new Real2(0., 0.), new Real2(1., 1.)));
+		elementList.add(new SVGRect(new Real2(0.5, 2.), new Real2(5., 3.)));
+		elementList.add(new SVGRect(new Real2(10., 10.), new Real2(11., 11.)));
+		// joins the second box, whose union then overlaps the first
+		elementList.add(new SVGRect(new Real2(3., 0.), new Real2(4., 2.5)));
+		// touches
+		elementList.add(new SVGRect(new Real2(11., 10.), new Real2(12., 10.5)));
+		List<Real2Range> bboxList = SVGUtil.createNonOverlappingBoundingBoxList(elementList);
+		Assert.assertEquals(2, bboxList.size());
+		Assert.assertEquals("((0.0,5.0),(0.0,3.0))", bboxList.get(0).toString());
+		Assert.assertEquals("((10.0,12.0),(10.0,11.0))", bboxList.get(1).toString());
+	}
+
+	@Test
+	public void testMergeOverlappingBoxesAgainstPairwise() {
+		java.util.Random random = new java.util.Random(17);
+		List<Real2Range> bboxList = new ArrayList<Real2Range>();
+		for (int i = 0; i < 300; i++) {
+			double x = random.nextDouble() * 100.;
+			double y = random.nextDouble() * 100.;
+			bboxList.add(new Real2Range(new RealRange(x, x + random.nextDouble() * 4.), new RealRange(y, y + random.nextDouble() * 4.)));
+		}
+		List<Real2Range> merged = SVGUtil.mergeOverlappingBoxes(bboxList);
+		List<Real2Range> expected = new ArrayList<Real2Range>(bboxList);
+		boolean change = true;
+		while (change) {
+			change = false;
+			outer:
+			for (int i = 1; i < expected.size(); i++) {
+				for (int j = 0; j < i; j++) {
+					if (expected.get(i).intersectionWith(expected.get(j)) != null) {
+						expected.set(j, expected.get(j).plus(expected.get(i)));
+						expected.remove(i);
+						change = true;
+						break outer;
+					}
+				}
+			}
+		}
+		Assert.assertEquals(expected.size(), merged.size());
+		for (Real2Range bbox : expected) {
+			boolean found = false;
+			for (Real2Range bbox1 : merged) {
+				found |= bbox.isEqualTo(bbox1, 0.000000001);
+			}
+			Assert.assertTrue(bbox.toString(), found);
+		}
+	}
+
 	// ================================================================
 	
 	private SVGRect createRect(Real2 xy0, Real2 xy1, String fill, String stroke, double strokeWidth) {
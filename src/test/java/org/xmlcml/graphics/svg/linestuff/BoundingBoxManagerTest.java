@@ -1,6 +1,9 @@
 package org.xmlcml.graphics.svg.linestuff;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.xmlcml.euclid.Real2Range;
@@ -98,6 +101,64 @@ public class BoundingBoxManagerTest {
 				emptyBoxYList, 0.001);
 	}
 
+	@Test
+	public void testEmptyRangeListWithinRange() {
+		BoundingBoxManager boundingBoxManager = new BoundingBoxManager();
+		boundingBoxManager.add(new Real2Range(new RealRange(0.,100.), new RealRange(0.,100.)));
+		boundingBoxManager.add(new Real2Range(new RealRange(200.,300.), new RealRange(250.,350.)));
+		boundingBoxManager.add(new Real2Range(new RealRange(350.,450.), new RealRange(500.,600.)));
+		boundingBoxManager.add(new Real2Range(new RealRange(250.,320.), new RealRange(0.,10.)));
+		List<RealRange> emptyRangeList = boundingBoxManager.createEmptyRangeList(BoxEdge.XMIN, new RealRange(50., 500.));
+		Assert.assertEquals(3, emptyRangeList.size());
+		Assert.assertTrue(new RealRange(100., 200.).isEqualTo(emptyRangeList.get(0), 0.001));
+		Assert.assertTrue(new RealRange(320., 350.).isEqualTo(emptyRangeList.get(1), 0.001));
+		Assert.assertTrue(new RealRange(450., 500.).isEqualTo(emptyRangeList.get(2), 0.001));
+		emptyRangeList = boundingBoxManager.createEmptyRangeList(BoxEdge.XMIN, new RealRange(210., 290.));
+		Assert.assertEquals(0, emptyRangeList.size());
+	}
+
+	@Test
+	public void testEmptyBoxListInRegion() {
+		BoundingBoxManager boundingBoxManager = new BoundingBoxManager();
+		boundingBoxManager.add(new Real2Range(new RealRange(0.,100.), new RealRange(0.,100.)));
+		boundingBoxManager.add(new Real2Range(new RealRange(200.,300.), new RealRange(250.,350.)));
+		boundingBoxManager.add(new Real2Range(new RealRange(120.,180.), new RealRange(500.,600.)));
+		// upper half of page; third box is outside
+		Real2Range region = new Real2Range(new RealRange(0., 400.), new RealRange(0., 400.));
+		List<Real2Range> emptyBoxList = boundingBoxManager.createEmptyBoxList(BoxEdge.XMIN, region);
+		checkReal2RangeList(
+				new Real2Range[] {
+						new Real2Range(new RealRange(100., 200.), new RealRange(0., 400)),
+						new Real2Range(new RealRange(300., 400.), new RealRange(0., 400)),
+				},
+				emptyBoxList, 0.001);
+	}
+
+	@Test
+	public void testBoundingBoxIndex() {
+		Random random = new Random(3);
+		List<Real2Range> bboxList = new ArrayList<Real2Range>();
+		for (int i = 0; i < 1000; i++) {
+			double x = random.nextDouble() * 500.;
+			double y = random.nextDouble() * 500.;
+			bboxList.add(i % 100 == 0 ? null : 
+				new Real2Range(new RealRange(x, x + random.nextDouble() * 10.), new RealRange(y, y + random.nextDouble() * 10.)));
+		}
+		BoundingBoxIndex index = new BoundingBoxIndex(bboxList);
+		for (int q = 0; q < 50; q++) {
+			double x = random.nextDouble() * 500.;
+			double y = random.nextDouble() * 500.;
+			Real2Range region = new Real2Range(new RealRange(x, x + 30.), new RealRange(y, y + 20.));
+			List<Integer> expected = new ArrayList<Integer>();
+			for (int i = 0; i < bboxList.size(); i++) {
+				if (bboxList.get(i) != null && bboxList.get(i).intersectionWith(region) != null) {
+					expected.add(i);
+				}
+			}
+			Assert.assertEquals(expected, index.findIntersecting(region));
+		}
+	}
+
 	public static void checkReal2RangeList(Real2Range[] refs, List<Real2Range> testList, double eps) {
 		Assert.assertNotNull("refs should not be null", refs);
 		Assert.assertNotNull("testList should not be null", testList);
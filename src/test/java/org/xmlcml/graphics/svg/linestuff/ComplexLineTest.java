@@ -1,7 +1,9 @@
 package org.xmlcml.graphics.svg.linestuff;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -528,6 +530,39 @@ public class ComplexLineTest {
 		Assert.assertEquals("hor0", plusEndedComplexLines.get(0).getBackbone().getId()); 
 	}
 
+	@Test
+	public void testCreateComplexLinesMatchesAddLines() {
+		Random random = new Random(17);
+		List<SVGLine> lines = new ArrayList<SVGLine>();
+		for (int i = 0; i < 300; i++) {
+			double x = random.nextInt(50) * 10;
+			double y = random.nextInt(50) * 10;
+			double length = 10 * (1 + random.nextInt(5));
+			double wobble = random.nextInt(3) * EPS / 2;
+			lines.add(random.nextBoolean() ? 
+				new SVGLine(new Real2(x, y), new Real2(x + length, y + wobble)) :
+				new SVGLine(new Real2(x + wobble, y + length), new Real2(x, y)));
+		}
+		List<SVGLine> hors = ComplexLine.createSubset(lines, LineOrientation.HORIZONTAL, EPS);
+		List<SVGLine> verts = ComplexLine.createSubset(lines, LineOrientation.VERTICAL, EPS);
+		List<ComplexLine> complexLines = ComplexLine.createComplexLines(hors, lines, EPS);
+		complexLines.addAll(ComplexLine.createComplexLines(verts, lines, EPS));
+		int joints = 0;
+		for (ComplexLine complexLine : complexLines) {
+			ComplexLine ref = ComplexLine.createComplexLineAndAddLines(complexLine.getBackbone(), lines, EPS);
+			List<Joint> jointList = complexLine.getJointList();
+			List<Joint> refList = ref.getJointList();
+			Assert.assertEquals(refList.size(), jointList.size());
+			for (int i = 0; i < refList.size(); i++) {
+				Assert.assertSame(refList.get(i).getLine(), jointList.get(i).getLine());
+				Assert.assertEquals(refList.get(i).getSideOrientation(), jointList.get(i).getSideOrientation());
+			}
+			Assert.assertEquals(ref.getCombType(), complexLine.getCombType());
+			joints += jointList.size();
+		}
+		Assert.assertTrue("joints "+joints, joints > 100);
+	}
+
 // ====================================================================================
 	
 //	public static List<SVGLine> extractLines(SVGElement svgElement) {
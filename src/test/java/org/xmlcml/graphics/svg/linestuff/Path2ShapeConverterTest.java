@@ -3,13 +3,17 @@ package org.xmlcml.graphics.svg.linestuff;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Array;
 import org.xmlcml.euclid.Real2Range;
 import org.xmlcml.graphics.svg.Fixtures;
 import org.xmlcml.graphics.svg.SVGCircle;
@@ -422,7 +426,7 @@ public class Path2ShapeConverterTest {
 		rect1.format(3);
 		Real2Range bbox = rect1.getBoundingBox();
 		bbox.format(3);
-		Assert.assertEquals("((133.58,203.029),(165.875,177.159))", bbox.toString());
+		Assert.assertEquals("((133.581,203.03),(165.875,177.159))", bbox.toString());
 		writeColouredShapes(shapes, new File("target/tables/rect2.svg"));
 	}
 		
@@ -457,4 +461,54 @@ public class Path2ShapeConverterTest {
 			}
 			SVGSVG.wrapAndWriteAsSVG(gg, file);
 		}
+
+		@Test
+		public void testFitCircle() {
+			Random random = new Random(13);
+			Real2Array arc = new Real2Array();
+			for (int i = 0; i < 40; i++) {
+				double angle = 0.05 * i;
+				arc.add(new Real2(100.0 + 20.0 * Math.cos(angle) + 0.01 * random.nextGaussian(),
+						50.0 + 20.0 * Math.sin(angle) + 0.01 * random.nextGaussian()));
+			}
+			SVGCircle circle = Path2ShapeConverter.findCircleFromPoints(arc, 0.1);
+			Assert.assertNotNull(circle);
+			Assert.assertEquals(100.0, circle.getCX(), 0.1);
+			Assert.assertEquals(50.0, circle.getCY(), 0.1);
+			Assert.assertEquals(20.0, circle.getRad(), 0.1);
+			Assert.assertNull(Path2ShapeConverter.findCircleFromPoints(
+					Real2Array.createFromPairs("0,0,5,0,10,0,10,10,0,10", ","), 0.1));
+			Assert.assertNull(Path2ShapeConverter.fitCircle(new double[] {0, 0, 1, 1, 2, 2, 3, 3}));
+
+			Path2ShapeConverter converter = new Path2ShapeConverter();
+			Real2Array octagon = new Real2Array();
+			for (int i = 0; i < 8; i++) {
+				octagon.add(new Real2(10.0 * Math.cos(i * Math.PI / 4), 10.0 * Math.sin(i * Math.PI / 4)));
+			}
+			circle = converter.convertToCircle(new SVGPolygon(octagon));
+			Assert.assertNotNull(circle);
+			Assert.assertEquals(10.0, circle.getRad(), 0.001);
+			SVGPolygon square = new SVGPolygon(Real2Array.createFromPairs("0,0,5,0,10,0,10,5,10,10,5,10,0,10,0,5", ","));
+			Assert.assertNull(converter.convertToCircle(square));
+		}
+
+		@Test
+		public void testRemoveRedundantCommandsInPlace() {
+			SVGPath path = new SVGPath("M 0 0 L 10 0 L 10 0 M 10 0 L 10 10 M 5 5");
+			Path2ShapeConverter converter = new Path2ShapeConverter();
+			List<SVGShape> shapes = converter.convertPathsToShapes(Arrays.asList(path));
+			Assert.assertEquals(1, shapes.size());
+			Assert.assertTrue(shapes.get(0) instanceof SVGPolyline);
+			Assert.assertEquals(3, ((SVGPolyline) shapes.get(0)).getReal2Array().size());
+			// path is rewritten, not replaced
+			Assert.assertEquals("MLL", path.getSignature());
+			Assert.assertEquals("M0.0 0.0 L10.0 0.0 L10.0 10.0 ", path.getDString());
+
+			path = new SVGPath("M 0 0 L 10 0 M 20 0 L 30 0");
+			List<List<SVGShape>> shapeListList = converter.convertPathsToShapesAndSplitAtMoves(Arrays.asList(path));
+			Assert.assertEquals(1, shapeListList.size());
+			Assert.assertEquals(2, shapeListList.get(0).size());
+			Assert.assertTrue(shapeListList.get(0).get(1) instanceof SVGLine);
+			Assert.assertEquals(20.0, ((SVGLine) shapeListList.get(0).get(1)).getXY(0).getX(), 0.0);
+		}
 }
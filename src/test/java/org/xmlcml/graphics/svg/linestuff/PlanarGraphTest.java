@@ -0,0 +1,92 @@
+package org.xmlcml.graphics.svg.linestuff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Array;
+import org.xmlcml.graphics.svg.SVGLine;
+import org.xmlcml.graphics.svg.SVGPoly;
+import org.xmlcml.graphics.svg.SVGPolyline;
+
+public class PlanarGraphTest {
+
+	@Test
+	public void testGridCells() {
+		List<SVGLine> lines = new ArrayList<SVGLine>();
+		for (int i = 0; i < 3; i++) {
+			lines.add(new SVGLine(new Real2(0, 10 * i), new Real2(20, 10 * i)));
+			// verticals slightly short of the outer rules; snapped by eps
+			lines.add(new SVGLine(new Real2(10 * i, 0.005), new Real2(10 * i, 19.995)));
+		}
+		// dangling tick below the grid
+		lines.add(new SVGLine(new Real2(10, 20), new Real2(10, 25)));
+		PlanarGraph graph = PlanarGraph.createGraph(lines, null, 0.01, true);
+		Assert.assertEquals(10, graph.getNodeCount());
+		Assert.assertEquals(13, graph.getEdgeCount());
+		List<Integer> cells = graph.getBoundedFaces(1.0);
+		Assert.assertEquals(4, cells.size());
+		for (int cell : cells) {
+			Assert.assertEquals(100.0, graph.getFaceArea(cell), 0.1);
+			Assert.assertEquals(4, graph.getFaceNodes(cell).length);
+		}
+		// 4 cells and the outside
+		Assert.assertEquals(5, graph.getFaceCount());
+
+		int centre = graph.findNode(10, 10);
+		Assert.assertTrue(centre >= 0);
+		Assert.assertEquals(4, graph.getDegree(centre));
+		int bottom = graph.findNode(10, 20.004);
+		Assert.assertEquals(4, graph.getDegree(bottom));
+		int tick = graph.getEdge(bottom, graph.findNode(10, 25));
+		Assert.assertTrue(tick >= 0);
+		Assert.assertSame(lines.get(6), graph.getEdgeSource(tick));
+		Assert.assertEquals(graph.getLeftFace(tick), graph.getRightFace(tick));
+		Assert.assertFalse(graph.isBounded(graph.getLeftFace(tick)));
+		Assert.assertEquals(-1, graph.findNode(5, 5));
+	}
+
+	@Test
+	public void testPolylinesShareEnds() {
+		List<SVGPoly> polys = new ArrayList<SVGPoly>();
+		polys.add(new SVGPolyline(new Real2Array(Arrays.asList(new Real2(0, 0), new Real2(10, 0), new Real2(10, 10)))));
+		polys.add(new SVGPolyline(new Real2Array(Arrays.asList(new Real2(10.001, 10), new Real2(0, 10), new Real2(0, 0.001)))));
+		PlanarGraph graph = PlanarGraph.createGraph(null, polys, 0.01, false);
+		Assert.assertEquals(4, graph.getNodeCount());
+		Assert.assertEquals(4, graph.getEdgeCount());
+		Assert.assertEquals(1, graph.getBoundedFaces(0.0).size());
+		int face = graph.getBoundedFaces(0.0).get(0);
+		Assert.assertEquals(4, graph.createPolygon(face).getReal2Array().size());
+		Assert.assertSame(polys.get(1), graph.getEdgeSource(graph.getEdge(graph.findNode(0, 10), graph.findNode(0, 0))));
+	}
+
+	@Test
+	public void testFindNodeDoesNotChangeGraph() {
+		List<SVGLine> lines = new ArrayList<SVGLine>();
+		// 16 nodes, so the node arrays are full
+		for (int i = 0; i < 4; i++) {
+			lines.add(new SVGLine(new Real2(0, 10 * i), new Real2(30, 10 * i)));
+			lines.add(new SVGLine(new Real2(10 * i, 0), new Real2(10 * i, 30)));
+		}
+		PlanarGraph graph = PlanarGraph.createGraph(lines, null, 0.01, true);
+		Assert.assertEquals(16, graph.getNodeCount());
+		int[] nodes = new int[2000];
+		IntStream.range(0, nodes.length).parallel().forEach(k ->
+				nodes[k] = graph.findNode(10 * (k % 4) + (k % 2 == 0 ? 0.005 : 5), 10 * (k / 4 % 4)));
+		for (int k = 0; k < nodes.length; k++) {
+			if (k % 2 == 0) {
+				Real2 xy = graph.getNodeXY(nodes[k]);
+				Assert.assertEquals(10 * (k % 4), xy.getX(), 0.0);
+				Assert.assertEquals(10 * (k / 4 % 4), xy.getY(), 0.0);
+			} else {
+				Assert.assertEquals(-1, nodes[k]);
+			}
+		}
+		Assert.assertEquals(16, graph.getNodeCount());
+		Assert.assertEquals(24, graph.getEdgeCount());
+	}
+}
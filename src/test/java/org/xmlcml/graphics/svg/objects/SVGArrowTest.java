@@ -3,12 +3,15 @@ package org.xmlcml.graphics.svg.objects;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Array;
 import org.xmlcml.graphics.svg.Fixtures;
 import org.xmlcml.graphics.svg.SVGElement;
 import org.xmlcml.graphics.svg.SVGG;
@@ -86,4 +89,28 @@ public class SVGArrowTest {
 		svg.appendChild(g);
 		SVGUtil.debug(svg, new FileOutputStream("target/arrows/multiTextBox.svg"), 1);
 	}
+
+	@Test
+	public void testArrowFactoryIndexed() {
+		List<SVGLine> lineList = new ArrayList<SVGLine>();
+		List<SVGTriangle> triangleList = new ArrayList<SVGTriangle>();
+		for (int i = 0; i < 100; i++) {
+			double y = 10.0 * i;
+			lineList.add(new SVGLine(new Real2(0.0, y), new Real2(10.0, y)));
+			// heads in reverse order so pairing cannot rely on list position
+			triangleList.add(0, new SVGTriangle(
+					Real2Array.createFromPairs("10.0,"+(y - 2)+",10.0,"+(y + 2)+",14.0,"+y, ",")));
+		}
+		// far from any line end
+		triangleList.add(new SVGTriangle(Real2Array.createFromPairs("500,500,500,504,504,502", ",")));
+		ArrowFactory arrowFactory = new ArrowFactory();
+		arrowFactory.readLinesTriangles(lineList, triangleList);
+		List<SVGArrow> arrowList = arrowFactory.createFirstComeArrows();
+		Assert.assertEquals(100, arrowList.size());
+		Assert.assertEquals(100, arrowFactory.getUsedLineList().size());
+		Assert.assertEquals(100, arrowFactory.getUsedTriangleList().size());
+		for (int i = 0; i < 100; i++) {
+			Assert.assertSame(triangleList.get(99 - i), arrowFactory.getUsedTriangleList().get(i));
+		}
+	}
 }
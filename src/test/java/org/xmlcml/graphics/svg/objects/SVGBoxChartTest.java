@@ -0,0 +1,46 @@
+package org.xmlcml.graphics.svg.objects;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.graphics.svg.Fixtures;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGRect;
+import org.xmlcml.graphics.svg.SVGShape;
+
+public class SVGBoxChartTest {
+
+	/** flow chart page; counts are those from the earlier linear-scan duplicate removal.
+	 */
+	@Test
+	public void testCreateChartPage6() {
+		SVGBoxChart chart = new SVGBoxChart(SVGElement.readAndCreateSVG(Fixtures.SVG_PAGE6_SVG));
+		chart.createChart();
+		Assert.assertEquals(172, chart.getSVGPathList().size());
+		int rectCount = 0;
+		for (List<SVGShape> shapeList : chart.getShapeListList()) {
+			for (SVGShape shape : shapeList) {
+				if (shape instanceof SVGRect) {
+					rectCount++;
+				}
+			}
+		}
+		// one rect is drawn twice
+		Assert.assertEquals(51, rectCount);
+		List<SVGRect> rectList = chart.getSVGRectList();
+		Assert.assertEquals(50, rectList.size());
+		for (int i = 0; i < rectList.size(); i++) {
+			for (int j = i + 1; j < rectList.size(); j++) {
+				Assert.assertFalse(i+" "+j, rectList.get(i).isEqual(rectList.get(j), chart.eps));
+			}
+		}
+		Assert.assertEquals(10, chart.getSVGRoundedBoxList().size());
+		Assert.assertEquals(51, chart.pathList.size());
+		Assert.assertEquals(47, chart.getSVGPolylineList().size());
+		Assert.assertEquals(146, chart.getSVGLineList().size());
+		Assert.assertEquals(0, chart.getSVGTriangleList().size());
+		Assert.assertEquals(9, chart.getTextBoxList().size());
+		Assert.assertEquals(31, chart.getSVGConnectorList().size());
+	}
+}
@@ -207,4 +207,27 @@ public class AxisAnalyzerTest {
 		}
 	}
 
+	@Test
+	public void testAxisValueTransform() {
+		RealArray pixels = new RealArray(new double[]{100.0, 137.5, 250.0, 400.0, 93.1});
+		RealArray ref = pixels.createScaledArrayToRange(100.0, 400.0, 0.0, 30.0);
+		AxisValueTransform transform = AxisValueTransform.createTransform(100.0, 400.0, 0.0, 30.0, false);
+		double[] xy = new double[2 * pixels.size()];
+		for (int i = 0; i < pixels.size(); i++) {
+			xy[2 * i] = pixels.elementAt(i);
+			xy[2 * i + 1] = -1.0;
+		}
+		transform.transform(xy, 0, xy, 0, pixels.size(), 2);
+		for (int i = 0; i < pixels.size(); i++) {
+			Assert.assertEquals(ref.elementAt(i), xy[2 * i], 0.0);
+			Assert.assertEquals(-1.0, xy[2 * i + 1], 0.0);
+		}
+		// log axis with 1, 10, 100 at 0, 50, 100 pixels
+		AxisValueTransform logTransform = AxisValueTransform.createTransform(0.0, 100.0, 1.0, 100.0, true);
+		Assert.assertEquals(10.0, logTransform.transform(50.0), 0.000001);
+		Assert.assertEquals(1000.0, logTransform.transform(150.0), 0.000001);
+		Assert.assertNull(AxisValueTransform.createTransform(0.0, 100.0, 0.0, 100.0, true));
+		Assert.assertNull(AxisValueTransform.createTransform(10.0, 10.0, 0.0, 100.0, false));
+	}
 }
+
@@ -0,0 +1,83 @@
+package org.xmlcml.graphics.svg.plot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.graphics.svg.Fixtures;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGG;
+import org.xmlcml.graphics.svg.SVGPath;
+import org.xmlcml.graphics.svg.SVGSVG;
+import org.xmlcml.graphics.svg.plot.PlotExtractionPipeline.PageResult;
+import org.xmlcml.graphics.svg.plot.PlotExtractionPipeline.Stage;
+import org.xmlcml.graphics.svg.plot.PlotExtractionPipeline.StageStatistics;
+
+public class PlotExtractionPipelineTest {
+
+	private static final Logger LOG = Logger.getLogger(PlotExtractionPipelineTest.class);
+
+	@Test
+	public void testPipeline() {
+		List<SVGElement> pages = new ArrayList<SVGElement>();
+		for (int i = 0; i < 12; i++) {
+			if (i % 3 == 0) {
+				SVGSVG svg = new SVGSVG();
+				svg.appendChild(new SVGPath("M 10 10 L 100 10 L 100 50 L 10 50 Z"));
+				svg.appendChild(new SVGPath("M 10 100 L 200 100"));
+				pages.add(svg);
+			} else {
+				pages.add(SVGG.createSVGGChunk(Fixtures.LINEPLOTS_10_2_SVG,  "./svg:g", 0));
+			}
+		}
+		PlotExtractionPipeline pipeline = new PlotExtractionPipeline();
+		pipeline.setQueueCapacity(2);
+		pipeline.setWorkerCount(Stage.SHAPES, 3);
+		pipeline.setWorkerCount(Stage.AXES, 2);
+		pipeline.setWorkerCount(Stage.POLYLINES, 1);
+		List<PageResult> resultList = pipeline.process(pages);
+		Assert.assertEquals(pages.size(), resultList.size());
+		for (int i = 0; i < resultList.size(); i++) {
+			PageResult result = resultList.get(i);
+			Assert.assertEquals(i, result.getPageIndex());
+			Assert.assertSame(pages.get(i), result.getPage());
+			Assert.assertNotNull(result.getShapeList());
+		}
+		Assert.assertEquals(2, resultList.get(0).getShapeList().size());
+		Assert.assertEquals(resultList.get(1).getShapeList().size(), resultList.get(2).getShapeList().size());
+		for (StageStatistics statistics : pipeline.getStageStatisticsList()) {
+			LOG.trace(statistics);
+			Assert.assertEquals(statistics.toString(), pages.size(), statistics.getPageCount());
+			Assert.assertEquals(statistics.toString(), 0, statistics.getFailureCount());
+		}
+		for (int i = 0; i < resultList.size(); i++) {
+			PageResult result = resultList.get(i);
+			Assert.assertNull(result.toString(), result.getError());
+			Assert.assertEquals(i % 3 == 0 ? 0 : 1, result.getPlotBoxList().size());
+			Assert.assertNotNull(result.getPolylineList());
+		}
+	}
+
+	@Test
+	public void testAxesAndPolylines() {
+		List<SVGElement> pages = new ArrayList<SVGElement>();
+		pages.add(SVGG.createSVGGChunk(Fixtures.LINEPLOTS_10_2_SVG,  "./svg:g", 0));
+		pages.add(SVGG.createSVGGChunk(Fixtures.SCATTERPLOT_7_2_SVG,  "./svg:g", 0));
+		PlotExtractionPipeline pipeline = new PlotExtractionPipeline();
+		List<PageResult> resultList = pipeline.process(pages);
+		for (PageResult result : resultList) {
+			Assert.assertNull(result.toString(), result.getError());
+			List<GraphPlotBox> plotBoxList = result.getPlotBoxList();
+			Assert.assertEquals(1, plotBoxList.size());
+			Assert.assertNotNull(plotBoxList.get(0).getHorizontalAxis());
+			Assert.assertNotNull(plotBoxList.get(0).getVerticalAxis());
+		}
+		Assert.assertEquals(65, resultList.get(0).getPolylineList().size());
+		Assert.assertEquals(0, pipeline.getStageStatistics(Stage.AXES).getFailureCount());
+		Assert.assertEquals(2, pipeline.getStageStatistics(Stage.POLYLINES).getPageCount());
+		Assert.assertEquals(0, pipeline.getStageStatistics(Stage.POLYLINES).getFailureCount());
+	}
+
+}
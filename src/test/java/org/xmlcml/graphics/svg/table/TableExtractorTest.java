@@ -0,0 +1,93 @@
+package org.xmlcml.graphics.svg.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.graphics.svg.SVGG;
+import org.xmlcml.graphics.svg.SVGLine;
+import org.xmlcml.graphics.svg.SVGText;
+
+public class TableExtractorTest {
+
+	@Test
+	public void testRuledGridWithSpan() {
+		SVGG page = createTable(0.0, 0.0);
+		List<TableGrid> tables = new TableExtractor().extractTables(page);
+		Assert.assertEquals(1, tables.size());
+		TableGrid table = tables.get(0);
+		Assert.assertEquals(3, table.getRowCount());
+		Assert.assertEquals(3, table.getColumnCount());
+		// header spans first two columns
+		Assert.assertEquals(8, table.getCellList().size());
+		TableCell header = table.getCell(0, 1);
+		Assert.assertSame(table.getCell(0, 0), header);
+		Assert.assertEquals(2, header.getColumnSpan());
+		Assert.assertEquals(1, header.getRowSpan());
+		String[][] values = table.getValues();
+		Assert.assertEquals("[Name and value, null, Unit]", Arrays.toString(values[0]));
+		Assert.assertEquals("[a, 12, mm]", Arrays.toString(values[1]));
+		Assert.assertEquals("[b, 3.5, ]", Arrays.toString(values[2]));
+		Assert.assertEquals(3, table.getRows().get(1).size());
+		Assert.assertNull(table.findCell(-1, 5));
+		// page lines are not changed
+		Assert.assertEquals(10, SVGLine.extractSelfAndDescendantLines(page).size());
+	}
+
+	@Test
+	public void testSeveralTables() {
+		List<SVGG> pages = new ArrayList<SVGG>();
+		for (int i = 0; i < 20; i++) {
+			SVGG page = createTable(0.0, 0.0);
+			page.appendChild(createTable(200.0, 100.0));
+			pages.add(page);
+		}
+		List<List<TableGrid>> tableLists = new TableExtractor().extractTables(pages, true);
+		Assert.assertEquals(20, tableLists.size());
+		for (List<TableGrid> tables : tableLists) {
+			Assert.assertEquals(2, tables.size());
+			for (TableGrid table : tables) {
+				Assert.assertEquals("mm", table.getCell(1, 2).getValue());
+			}
+		}
+	}
+
+	/** 3 x 3 grid of 30 x 10 cells with no rule between (0,0) and (0,1).
+	 */
+	private static SVGG createTable(double x0, double y0) {
+		SVGG g = new SVGG();
+		for (int i = 0; i < 4; i++) {
+			g.appendChild(new SVGLine(new Real2(x0, y0 + 10 * i), new Real2(x0 + 90, y0 + 10 * i)));
+		}
+		g.appendChild(new SVGLine(new Real2(x0, y0), new Real2(x0, y0 + 30)));
+		// split rule; merged before the grid is made
+		g.appendChild(new SVGLine(new Real2(x0 + 30, y0 + 10), new Real2(x0 + 30, y0 + 20)));
+		g.appendChild(new SVGLine(new Real2(x0 + 30, y0 + 20), new Real2(x0 + 30, y0 + 30)));
+		g.appendChild(new SVGLine(new Real2(x0 + 60, y0), new Real2(x0 + 60, y0 + 30)));
+		g.appendChild(new SVGLine(new Real2(x0 + 90, y0), new Real2(x0 + 90, y0 + 30)));
+		// not a rule
+		g.appendChild(new SVGLine(new Real2(x0 + 100, y0), new Real2(x0 + 110, y0 + 10)));
+		addText(g, x0 + 2, y0 + 8, "Name and");
+		addText(g, x0 + 35, y0 + 8, "value");
+		addText(g, x0 + 62, y0 + 8, "Unit");
+		addText(g, x0 + 2, y0 + 18, "a");
+		// single glyphs, out of order
+		addText(g, x0 + 34.3, y0 + 18, "2");
+		addText(g, x0 + 32, y0 + 18, "1");
+		addText(g, x0 + 62, y0 + 18, "mm");
+		addText(g, x0 + 2, y0 + 28, "b");
+		addText(g, x0 + 32, y0 + 28, "3.5");
+		// outside
+		addText(g, x0 + 120, y0 + 8, "note");
+		return g;
+	}
+
+	private static void addText(SVGG g, double x, double y, String s) {
+		SVGText text = new SVGText(new Real2(x, y), s);
+		text.setFontSize(4.0);
+		g.appendChild(text);
+	}
+}
@@ -0,0 +1,67 @@
+package org.xmlcml.graphics.svg.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.RealArray;
+import org.xmlcml.graphics.svg.Fixtures;
+import org.xmlcml.graphics.svg.SVGElement;
+import org.xmlcml.graphics.svg.SVGSVG;
+
+public class SVGWordPageListTest {
+
+	@Test
+	public void testSequentialAndPooledPhrasesAgree() {
+		List<List<String>> sequential = toStrings(readPageList().makePhrasesFromWords());
+		Assert.assertEquals(2, sequential.size());
+		Assert.assertEquals("[Figure 2., Growth of cultures, 0, 10, 20, 30, 40, 0.5, 1.0, 1.5, 2.0, Time (h), OD 600 nm]",
+				sequential.get(0).toString());
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			Assert.assertEquals(sequential, toStrings(readPageList().makePhrasesFromWords(pool)));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testSequentialAndPooledNumericValuesAgree() {
+		List<List<RealArray>> sequential = readPageList().getNumericValues();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		List<List<RealArray>> pooled;
+		try {
+			pooled = readPageList().getNumericValues(pool);
+		} finally {
+			pool.shutdown();
+		}
+		Assert.assertEquals(sequential.size(), pooled.size());
+		for (int page = 0; page < sequential.size(); page++) {
+			Assert.assertEquals(String.valueOf(sequential.get(page)), String.valueOf(pooled.get(page)));
+		}
+		// "12.5 13.0 14.25" is one phrase on page 2; "Table 3." is not numeric
+		Assert.assertEquals("(12.5,13.0,14.25)", sequential.get(1).get(2).toString());
+		Assert.assertNull(sequential.get(1).get(0));
+	}
+
+	private static SVGWordPageList readPageList() {
+		SVGSVG svg = (SVGSVG) SVGElement.readAndCreateSVG(Fixtures.WORD_PAGE_LIST_SVG);
+		SVGWordPageList pageList = svg.getSVGPageList();
+		Assert.assertEquals(2, pageList.getWordPageList().size());
+		return pageList;
+	}
+
+	private static List<List<String>> toStrings(List<List<SVGPhrase>> phraseListList) {
+		List<List<String>> stringListList = new ArrayList<List<String>>();
+		for (List<SVGPhrase> phraseList : phraseListList) {
+			List<String> stringList = new ArrayList<String>();
+			for (SVGPhrase phrase : phraseList) {
+				stringList.add(phrase.toString());
+			}
+			stringListList.add(stringList);
+		}
+		return stringListList;
+	}
+}
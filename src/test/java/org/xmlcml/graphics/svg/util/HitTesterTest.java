@@ -0,0 +1,85 @@
+package org.xmlcml.graphics.svg.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.euclid.Real2Array;
+import org.xmlcml.graphics.svg.SVGCircle;
+import org.xmlcml.graphics.svg.SVGG;
+import org.xmlcml.graphics.svg.SVGLine;
+import org.xmlcml.graphics.svg.SVGPath;
+import org.xmlcml.graphics.svg.SVGPolygon;
+import org.xmlcml.graphics.svg.SVGPolyline;
+import org.xmlcml.graphics.svg.SVGRect;
+import org.xmlcml.graphics.svg.SVGShape;
+
+public class HitTesterTest {
+
+	@Test
+	public void testFindShapesAt() {
+		SVGG g = new SVGG();
+		SVGRect rect = new SVGRect(0.0, 0.0, 100.0, 100.0);
+		rect.setFill("yellow");
+		g.appendChild(rect);
+		SVGLine line = new SVGLine(new Real2(10.0, 50.0), new Real2(90.0, 50.0));
+		line.setStroke("black");
+		line.setStrokeWidth(2.0);
+		g.appendChild(line);
+		// square with a hole (nonzero winding, inner ring reversed)
+		SVGPath ring = new SVGPath("M200 0 L300 0 L300 100 L200 100 Z M225 25 L225 75 L275 75 L275 25 Z");
+		ring.setFill("black");
+		g.appendChild(ring);
+		SVGCircle circle = new SVGCircle(new Real2(400.0, 50.0), 20.0);
+		circle.setFill("none");
+		g.appendChild(circle);
+
+		HitTester hitTester = new HitTester(g);
+		Assert.assertEquals(4, hitTester.getShapeList().size());
+		List<SVGShape> hits = hitTester.findShapesAt(50.0, 50.8);
+		Assert.assertEquals(2, hits.size());
+		Assert.assertSame(line, hits.get(1));
+		Assert.assertSame(line, hitTester.findTopShapeAt(50.0, 51.2));
+		Assert.assertSame(rect, hitTester.findTopShapeAt(50.0, 52.0));
+		Assert.assertSame(ring, hitTester.findTopShapeAt(210.0, 50.0));
+		Assert.assertNull(hitTester.findTopShapeAt(250.0, 50.0));
+		Assert.assertNull(hitTester.findTopShapeAt(150.0, 50.0));
+		Assert.assertSame(circle, hitTester.findTopShapeAt(420.3, 50.0));
+		Assert.assertNull(hitTester.findTopShapeAt(400.0, 50.0));
+
+		// edge tables follow the geometry after refresh
+		line.setXY(new Real2(10.0, 150.0), 0);
+		line.setXY(new Real2(90.0, 150.0), 1);
+		hitTester.refresh();
+		Assert.assertSame(rect, hitTester.findTopShapeAt(50.0, 50.8));
+		Assert.assertSame(line, hitTester.findTopShapeAt(50.0, 150.0));
+		ring.setDString("M200 0 L300 0 L300 100 L200 100 Z");
+		hitTester.refresh();
+		Assert.assertSame(ring, hitTester.findTopShapeAt(250.0, 50.0));
+	}
+
+	@Test
+	public void testOpenPolylineIsNotFilled() {
+		SVGPolyline polyline = new SVGPolyline(new Real2Array(Arrays.asList(
+				new Real2(0.0, 0.0), new Real2(100.0, 0.0), new Real2(100.0, 100.0))));
+		// no fill attribute
+		SVGPath openPath = new SVGPath("M200 0 L300 0 L300 100");
+		SVGPolygon polygon = new SVGPolygon(new Real2Array(Arrays.asList(
+				new Real2(400.0, 0.0), new Real2(500.0, 0.0), new Real2(500.0, 100.0))));
+		HitTester hitTester = new HitTester(Arrays.asList(polyline, openPath, polygon), 0.5);
+		Assert.assertNull(hitTester.findTopShapeAt(80.0, 20.0));
+		Assert.assertSame(polyline, hitTester.findTopShapeAt(80.0, 0.3));
+		Assert.assertNull(hitTester.findTopShapeAt(280.0, 20.0));
+		Assert.assertSame(polygon, hitTester.findTopShapeAt(480.0, 20.0));
+
+		// appended point changes the geometry without an attribute
+		int count = polyline.getModificationCount();
+		polyline.add(new Real2(0.0, 100.0));
+		Assert.assertTrue(polyline.getModificationCount() > count);
+		hitTester.refresh();
+		Assert.assertSame(polyline, hitTester.findTopShapeAt(50.0, 99.8));
+		Assert.assertNull(hitTester.findTopShapeAt(50.0, 50.0));
+	}
+}
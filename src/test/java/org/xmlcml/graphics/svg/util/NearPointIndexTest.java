@@ -0,0 +1,68 @@
+package org.xmlcml.graphics.svg.util;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlcml.euclid.Real2;
+import org.xmlcml.graphics.svg.SVGLine;
+
+public class NearPointIndexTest {
+
+	private static NearPointIndex<SVGLine> createLineIndex(double eps) {
+		return new NearPointIndex<SVGLine>(eps, 
+				line -> line.getXY(0), (line, line0) -> line.hasEqualCoordinates(line0, eps));
+	}
+
+	@Test
+	public void testNearAcrossCellBoundary() {
+		NearPointIndex<SVGLine> index = createLineIndex(2.0);
+		SVGLine line = new SVGLine(new Real2(1.9, 1.9), new Real2(10.0, 1.9));
+		Assert.assertTrue(index.addIfAbsent(line));
+		// first point in a neighbouring cell, within eps
+		SVGLine near = new SVGLine(new Real2(2.1, 2.1), new Real2(10.5, 2.5));
+		Assert.assertSame(line, index.find(near));
+		Assert.assertFalse(index.addIfAbsent(near));
+		Assert.assertEquals(1, index.size());
+	}
+
+	@Test
+	public void testEqualTestConfirmsCandidates() {
+		NearPointIndex<SVGLine> index = createLineIndex(2.0);
+		index.add(new SVGLine(new Real2(0.0, 0.0), new Real2(10.0, 0.0)));
+		// same anchor, different other end
+		SVGLine other = new SVGLine(new Real2(0.0, 0.0), new Real2(0.0, 10.0));
+		Assert.assertFalse(index.contains(other));
+		Assert.assertTrue(index.addIfAbsent(other));
+		// anchor just beyond eps
+		Assert.assertTrue(index.addIfAbsent(new SVGLine(new Real2(2.5, 0.0), new Real2(10.0, 0.0))));
+		Assert.assertEquals(3, index.size());
+	}
+
+	@Test
+	public void testZeroEpsAndNoAnchor() {
+		NearPointIndex<SVGLine> index = new NearPointIndex<SVGLine>(0.0, 
+				line -> line.getXY(0), (line, line0) -> Arrays.equals(line.getGeometricCoordinates(), line0.getGeometricCoordinates()));
+		Assert.assertTrue(index.addIfAbsent(new SVGLine(new Real2(-3.0, 4.0), new Real2(5.0, 6.0))));
+		Assert.assertFalse(index.addIfAbsent(new SVGLine(new Real2(-3.0, 4.0), new Real2(5.0, 6.0))));
+		Assert.assertTrue(index.addIfAbsent(new SVGLine(new Real2(-3.0, 4.000001), new Real2(5.0, 6.0))));
+
+		NearPointIndex<String> stringIndex = new NearPointIndex<String>(1.0, s -> null, (s, s0) -> s.equals(s0));
+		Assert.assertTrue(stringIndex.addIfAbsent("a"));
+		Assert.assertFalse(stringIndex.addIfAbsent("a"));
+		Assert.assertTrue(stringIndex.addIfAbsent("b"));
+		Assert.assertEquals(2, stringIndex.size());
+	}
+
+	@Test
+	public void testFindByPoint() {
+		NearPointIndex<SVGLine> index = createLineIndex(2.0);
+		SVGLine line = new SVGLine(new Real2(1.9, 1.9), new Real2(10.0, 1.9));
+		index.add(line);
+		index.add(new SVGLine(new Real2(3.0, 3.0), new Real2(3.0, 10.0)));
+		Assert.assertSame(line, index.find(new Real2(2.1, 2.1), l -> l.getXY(1).getX() == 10.0));
+		Assert.assertNull(index.find(new Real2(2.1, 2.1), l -> l.getXY(1).getX() == 20.0));
+		Assert.assertNull(index.find(new Real2(20.0, 20.0), l -> true));
+		Assert.assertEquals(2, index.size());
+	}
+}